@@ -5,6 +5,10 @@ plugins {
   alias(commonLibs.plugins.hypertrace.jacoco)
 }
 
+tasks.test {
+  useJUnitPlatform()
+}
+
 dependencies {
   api(projects.platformServiceFramework)
   api(commonLibs.grpc.api)
@@ -22,4 +26,7 @@ dependencies {
   implementation(commonLibs.grpc.netty)
   implementation(commonLibs.slf4j2.api)
   implementation(commonLibs.hypertrace.grpcutils.server)
+
+  testImplementation(commonLibs.junit.jupiter)
+  testRuntimeOnly(commonLibs.log4j.slf4j2.impl)
 }
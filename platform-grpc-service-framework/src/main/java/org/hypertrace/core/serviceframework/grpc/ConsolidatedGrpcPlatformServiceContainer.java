@@ -16,6 +16,7 @@ public abstract class ConsolidatedGrpcPlatformServiceContainer
     extends GrpcPlatformServiceContainer {
   private static final String AUTHORITY_OVERRIDE_PATH = "service.authorities";
   private static final String DEFAULT_PORT_PATH = "service.port";
+  private static final String LEAN_IN_PROCESS_PATH = "grpc.inProcess.lean";
 
   public ConsolidatedGrpcPlatformServiceContainer(ConfigClient configClient) {
     super(configClient);
@@ -35,6 +36,7 @@ public abstract class ConsolidatedGrpcPlatformServiceContainer
             .name("networked-" + this.getServiceName())
             .port(this.getServicePort())
             .serviceFactories(this.getServiceFactories())
+            .withConfig(this.getServerConfig())
             .build());
   }
 
@@ -57,6 +59,26 @@ public abstract class ConsolidatedGrpcPlatformServiceContainer
     return Collections.emptySet();
   }
 
+  /**
+   * Lean in-process mode, enabled with "grpc.inProcess.lean". Calls between the consolidated
+   * services then run directly on the calling thread on the server side, and are only measured by
+   * the client. Only for services that never block their calls.
+   */
+  @Override
+  protected boolean isLeanInProcessServer() {
+    return this.getAppConfig().hasPath(LEAN_IN_PROCESS_PATH)
+        && this.getAppConfig().getBoolean(LEAN_IN_PROCESS_PATH);
+  }
+
+  @Override
+  protected GrpcServerExecutorDefinition getInProcessServerExecutor() {
+    return this.isLeanInProcessServer()
+        ? GrpcServerExecutorDefinition.builder()
+            .type(GrpcServerExecutorDefinition.Type.DIRECT)
+            .build()
+        : super.getInProcessServerExecutor();
+  }
+
   protected Map<String, String> getAuthorityInProcessOverrideMap() {
     return this.getAuthoritiesToTreatAsInProcess().stream()
         .collect(
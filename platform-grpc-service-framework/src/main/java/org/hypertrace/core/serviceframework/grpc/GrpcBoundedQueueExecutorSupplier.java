@@ -0,0 +1,49 @@
+package org.hypertrace.core.serviceframework.grpc;
+
+import io.grpc.Metadata;
+import io.grpc.ServerCall;
+import io.grpc.ServerCallExecutorSupplier;
+import io.grpc.Status;
+import io.micrometer.core.instrument.Counter;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadPoolExecutor;
+import org.hypertrace.core.serviceframework.metrics.PlatformMetricsRegistry;
+
+/**
+ * Bounds the queue of a {@link GrpcServerExecutorDefinition.Type#FIXED} pool: a new call arriving
+ * while {@link GrpcServerExecutorDefinition#getMaxQueued()} tasks are queued is rejected with
+ * {@code RESOURCE_EXHAUSTED}, and counted in the "grpc.server.executor.rejected" counter.
+ *
+ * <p>The pool's own queue stays unbounded, as gRPC can't fail a call whose task is refused by its
+ * executor. Calls are admitted before they queue any task instead, so concurrent admissions may go
+ * slightly past the bound, and the later tasks of admitted calls are never refused.
+ */
+class GrpcBoundedQueueExecutorSupplier implements ServerCallExecutorSupplier {
+  private static final String REJECTED_COUNTER = "grpc.server.executor.rejected";
+  private static final Status QUEUE_FULL =
+      Status.RESOURCE_EXHAUSTED.withDescription("Too many queued calls");
+
+  private final ThreadPoolExecutor executor;
+  private final int maxQueued;
+  private final GrpcCallRejections rejections;
+  private final Counter rejected;
+
+  GrpcBoundedQueueExecutorSupplier(
+      String name, ThreadPoolExecutor executor, int maxQueued, GrpcCallRejections rejections) {
+    this.executor = executor;
+    this.maxQueued = maxQueued;
+    this.rejections = rejections;
+    this.rejected =
+        PlatformMetricsRegistry.registerCounter(REJECTED_COUNTER, Map.of("server", name));
+  }
+
+  @Override
+  public <ReqT, RespT> Executor getExecutor(ServerCall<ReqT, RespT> call, Metadata metadata) {
+    if (this.executor.getQueue().size() >= this.maxQueued) {
+      this.rejected.increment();
+      return this.rejections.reject(call, QUEUE_FULL);
+    }
+    return this.executor;
+  }
+}
@@ -0,0 +1,42 @@
+package org.hypertrace.core.serviceframework.grpc;
+
+import io.grpc.Metadata;
+import io.grpc.ServerCall;
+import io.grpc.ServerCallHandler;
+import io.grpc.ServerInterceptor;
+import io.grpc.Status;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+
+/**
+ * Closes the calls rejected by the {@link io.grpc.ServerCallExecutorSupplier} of a server. A
+ * supplier can't fail a call itself, so it returns the executor of {@link #reject} instead, and
+ * this interceptor, which must be the outermost one of the server, closes the call with the
+ * rejection status before any other interceptor or service code runs.
+ *
+ * <p>gRPC hands the same call object to the supplier and to the outermost interceptor, so rejected
+ * calls are tracked by identity, in state that clients can't set.
+ */
+class GrpcCallRejections implements ServerInterceptor {
+  private static final Executor REJECTION_EXECUTOR = Runnable::run;
+
+  private final ConcurrentMap<ServerCall<?, ?>, Status> rejectedCalls = new ConcurrentHashMap<>();
+
+  /** Marks the call as rejected, returning the executor to give it, only running the rejection. */
+  Executor reject(ServerCall<?, ?> call, Status status) {
+    this.rejectedCalls.put(call, status);
+    return REJECTION_EXECUTOR;
+  }
+
+  @Override
+  public <ReqT, RespT> ServerCall.Listener<ReqT> interceptCall(
+      ServerCall<ReqT, RespT> call, Metadata headers, ServerCallHandler<ReqT, RespT> next) {
+    Status status = this.rejectedCalls.isEmpty() ? null : this.rejectedCalls.remove(call);
+    if (status != null) {
+      call.close(status, new Metadata());
+      return new ServerCall.Listener<>() {};
+    }
+    return next.startCall(call, headers);
+  }
+}
@@ -0,0 +1,43 @@
+package org.hypertrace.core.serviceframework.grpc;
+
+import lombok.Builder;
+import lombok.Value;
+
+/**
+ * Adaptive limit of the calls a server processes concurrently. The limit follows the gradient
+ * between the long-term and the recent latency of the calls: it grows while latency is stable and
+ * shrinks as soon as calls start queueing. Calls beyond the limit are rejected right away with
+ * {@code RESOURCE_EXHAUSTED}, so that callers can retry elsewhere rather than waiting for their
+ * deadlines. The health service is never limited.
+ */
+@Value
+@Builder
+public class GrpcConcurrencyLimitDefinition {
+  public static final GrpcConcurrencyLimitDefinition DISABLED = builder().build();
+
+  public enum Scope {
+    /** A single limit shared by all the methods of the server. */
+    SERVER,
+    /** A limit per method, so that a slow method doesn't starve the others. */
+    METHOD
+  }
+
+  boolean enabled;
+
+  @Builder.Default Scope scope = Scope.SERVER;
+
+  @Builder.Default int initialLimit = 20;
+
+  @Builder.Default int minLimit = 4;
+
+  @Builder.Default int maxLimit = 1000;
+
+  /**
+   * Ratio of the recent latency to the long-term one tolerated before the limit shrinks, e.g. 2
+   * lets latency double without reducing the limit.
+   */
+  @Builder.Default double rttTolerance = 1.5;
+
+  /** Weight of every new estimate in the limit, between 0 and 1. */
+  @Builder.Default double smoothing = 0.2;
+}
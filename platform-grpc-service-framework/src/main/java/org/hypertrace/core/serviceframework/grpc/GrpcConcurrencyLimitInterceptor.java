@@ -0,0 +1,205 @@
+package org.hypertrace.core.serviceframework.grpc;
+
+import io.grpc.ForwardingServerCall.SimpleForwardingServerCall;
+import io.grpc.ForwardingServerCallListener.SimpleForwardingServerCallListener;
+import io.grpc.Metadata;
+import io.grpc.ServerCall;
+import io.grpc.ServerCallHandler;
+import io.grpc.ServerInterceptor;
+import io.grpc.Status;
+import io.grpc.health.v1.HealthGrpc;
+import io.micrometer.core.instrument.Counter;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import org.hypertrace.core.serviceframework.metrics.PlatformMetricsRegistry;
+
+/**
+ * Enforces the {@link GrpcConcurrencyLimitDefinition} of a server. Its limit, in-flight calls and
+ * rejections are reported as "grpc.server.concurrency.*" metrics, tagged with the server name and,
+ * when limited per method, the method name.
+ */
+class GrpcConcurrencyLimitInterceptor implements ServerInterceptor {
+  private static final String LIMIT_GAUGE = "grpc.server.concurrency.limit";
+  private static final String IN_FLIGHT_GAUGE = "grpc.server.concurrency.in.flight";
+  private static final String REJECTED_COUNTER = "grpc.server.concurrency.rejected";
+  private static final String SERVER_TAG = "server";
+  private static final String METHOD_TAG = "method";
+  private static final Status LIMIT_REACHED =
+      Status.RESOURCE_EXHAUSTED.withDescription("Server concurrency limit reached");
+
+  private final String serverName;
+  private final GrpcConcurrencyLimitDefinition definition;
+  private final Limiter serverLimiter;
+  private final ConcurrentMap<String, Limiter> methodLimiters = new ConcurrentHashMap<>();
+
+  GrpcConcurrencyLimitInterceptor(String serverName, GrpcConcurrencyLimitDefinition definition) {
+    this.serverName = serverName;
+    this.definition = definition;
+    this.serverLimiter =
+        definition.getScope() == GrpcConcurrencyLimitDefinition.Scope.SERVER
+            ? new Limiter(definition, Map.of(SERVER_TAG, serverName))
+            : null;
+  }
+
+  @Override
+  public <ReqT, RespT> ServerCall.Listener<ReqT> interceptCall(
+      ServerCall<ReqT, RespT> call, Metadata headers, ServerCallHandler<ReqT, RespT> next) {
+    if (HealthGrpc.SERVICE_NAME.equals(call.getMethodDescriptor().getServiceName())) {
+      return next.startCall(call, headers);
+    }
+    Limiter limiter = this.limiterFor(call.getMethodDescriptor().getFullMethodName());
+    int inFlight = limiter.tryAcquire();
+    if (inFlight < 0) {
+      limiter.rejected.increment();
+      call.close(LIMIT_REACHED, new Metadata());
+      return new ServerCall.Listener<>() {};
+    }
+
+    long startNanos = System.nanoTime();
+    ServerCall<ReqT, RespT> sampledCall =
+        new SimpleForwardingServerCall<>(call) {
+          @Override
+          public void close(Status status, Metadata trailers) {
+            limiter.onSample(System.nanoTime() - startNanos, inFlight);
+            super.close(status, trailers);
+          }
+        };
+    try {
+      return new SimpleForwardingServerCallListener<>(next.startCall(sampledCall, headers)) {
+        @Override
+        public void onComplete() {
+          try {
+            super.onComplete();
+          } finally {
+            limiter.release();
+          }
+        }
+
+        @Override
+        public void onCancel() {
+          try {
+            super.onCancel();
+          } finally {
+            limiter.release();
+          }
+        }
+      };
+    } catch (RuntimeException e) {
+      limiter.release();
+      throw e;
+    }
+  }
+
+  private Limiter limiterFor(String fullMethodName) {
+    if (this.serverLimiter != null) {
+      return this.serverLimiter;
+    }
+    return this.methodLimiters.computeIfAbsent(
+        fullMethodName,
+        unused ->
+            new Limiter(
+                this.definition, Map.of(SERVER_TAG, this.serverName, METHOD_TAG, fullMethodName)));
+  }
+
+  /**
+   * Gradient limit, as in Netflix's concurrency-limits: the limit is scaled by the ratio of the
+   * long-term to the recent average latency, bounded to [0.5, 1], plus a headroom of the square
+   * root of the limit letting it grow while latency holds.
+   *
+   * <p>Samples are applied by one completing call at a time. Those completing meanwhile are dropped
+   * rather than waited for, the averages barely move with a single sample anyway.
+   */
+  static final class Limiter {
+    private static final double RECENT_RTT_WEIGHT = 1 / 10d;
+    private static final double LONG_TERM_RTT_WEIGHT = 1 / 600d;
+
+    private final GrpcConcurrencyLimitDefinition definition;
+    private final AtomicInteger limit;
+    private final AtomicInteger inFlight;
+    private final Counter rejected;
+    private final ReentrantLock sampleLock = new ReentrantLock();
+    // Guarded by the sample lock
+    private double estimatedLimit;
+    private double recentRtt;
+    private double longTermRtt;
+
+    Limiter(GrpcConcurrencyLimitDefinition definition, Map<String, String> tags) {
+      this.definition = definition;
+      this.estimatedLimit = definition.getInitialLimit();
+      this.limit =
+          PlatformMetricsRegistry.registerGauge(
+              LIMIT_GAUGE, tags, new AtomicInteger(definition.getInitialLimit()));
+      this.inFlight =
+          PlatformMetricsRegistry.registerGauge(IN_FLIGHT_GAUGE, tags, new AtomicInteger());
+      this.rejected = PlatformMetricsRegistry.registerCounter(REJECTED_COUNTER, tags);
+    }
+
+    /** Returns the number of calls in flight including the acquiring one, or -1 if rejected. */
+    int tryAcquire() {
+      while (true) {
+        int current = this.inFlight.get();
+        if (current >= this.limit.get()) {
+          return -1;
+        }
+        if (this.inFlight.compareAndSet(current, current + 1)) {
+          return current + 1;
+        }
+      }
+    }
+
+    void release() {
+      this.inFlight.decrementAndGet();
+    }
+
+    int limit() {
+      return this.limit.get();
+    }
+
+    void onSample(long rttNanos, int inFlightAtStart) {
+      if (!this.sampleLock.tryLock()) {
+        return;
+      }
+      try {
+        this.applySample(rttNanos, inFlightAtStart);
+      } finally {
+        this.sampleLock.unlock();
+      }
+    }
+
+    private void applySample(long rttNanos, int inFlightAtStart) {
+      if (this.longTermRtt == 0) {
+        this.recentRtt = rttNanos;
+        this.longTermRtt = rttNanos;
+      } else {
+        this.recentRtt += (rttNanos - this.recentRtt) * RECENT_RTT_WEIGHT;
+        this.longTermRtt += (rttNanos - this.longTermRtt) * LONG_TERM_RTT_WEIGHT;
+      }
+      // Once latency has dropped for good, let the long-term average catch up faster
+      if (this.longTermRtt / this.recentRtt > 2) {
+        this.longTermRtt *= 0.95;
+      }
+      // Latency says nothing about the limit while far from using it
+      if (inFlightAtStart * 2 < this.estimatedLimit) {
+        return;
+      }
+
+      double gradient =
+          Math.max(
+              0.5,
+              Math.min(
+                  1.0, this.definition.getRttTolerance() * this.longTermRtt / this.recentRtt));
+      double newLimit = this.estimatedLimit * gradient + Math.sqrt(this.estimatedLimit);
+      double smoothing = this.definition.getSmoothing();
+      this.estimatedLimit =
+          Math.max(
+              this.definition.getMinLimit(),
+              Math.min(
+                  this.definition.getMaxLimit(),
+                  this.estimatedLimit * (1 - smoothing) + newLimit * smoothing));
+      this.limit.set((int) this.estimatedLimit);
+    }
+  }
+}
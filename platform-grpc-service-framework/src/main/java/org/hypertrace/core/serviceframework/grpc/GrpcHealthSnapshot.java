@@ -0,0 +1,131 @@
+package org.hypertrace.core.serviceframework.grpc;
+
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+import io.grpc.Channel;
+import io.grpc.Context;
+import io.grpc.Metadata;
+import io.grpc.health.v1.HealthCheckRequest;
+import io.grpc.health.v1.HealthCheckResponse;
+import io.grpc.health.v1.HealthCheckResponse.ServingStatus;
+import io.grpc.health.v1.HealthGrpc;
+import io.grpc.health.v1.HealthGrpc.HealthStub;
+import io.grpc.stub.MetadataUtils;
+import io.grpc.stub.StreamObserver;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Latest serving status of the watched services of a health server, kept up to date by a {@code
+ * Watch} stream per service, so that reading it costs no call. A service is unknown until the
+ * server sends its first status, and again while its stream is down: ended streams are opened
+ * again after a backoff, until the snapshot is closed.
+ *
+ * <p>The watches carry the {@link #SNAPSHOT_WATCH_KEY} header, for the server not to count them as
+ * calls in flight.
+ */
+@Slf4j
+class GrpcHealthSnapshot {
+  static final Metadata.Key<String> SNAPSHOT_WATCH_KEY =
+      Metadata.Key.of("x-health-snapshot-watch", Metadata.ASCII_STRING_MARSHALLER);
+  private static final long INITIAL_BACKOFF_NANOS = Duration.ofMillis(100).toNanos();
+  private static final long MAX_BACKOFF_NANOS = Duration.ofSeconds(10).toNanos();
+
+  private final HealthStub healthStub;
+  private final Map<String, ServingStatus> statuses = new ConcurrentHashMap<>();
+  // Every watch runs in this context, cancelling it ends them all
+  private final Context.CancellableContext watchContext = Context.current().withCancellation();
+  private final ScheduledExecutorService retryScheduler =
+      Executors.newSingleThreadScheduledExecutor(
+          GrpcServerExecutors.threadFactory("health-snapshot"));
+  private volatile boolean closed;
+
+  GrpcHealthSnapshot(Channel channel) {
+    Metadata headers = new Metadata();
+    headers.put(SNAPSHOT_WATCH_KEY, "true");
+    this.healthStub =
+        HealthGrpc.newStub(channel)
+            .withInterceptors(MetadataUtils.newAttachHeadersInterceptor(headers));
+  }
+
+  /** Returns the latest status of the service, empty while unknown or not watched. */
+  Optional<ServingStatus> getStatus(String service) {
+    return Optional.ofNullable(this.statuses.get(service))
+        .filter(status -> status != ServingStatus.SERVICE_UNKNOWN);
+  }
+
+  void watch(String service) {
+    this.watch(service, INITIAL_BACKOFF_NANOS);
+  }
+
+  /** Cancels the watches, keeping the latest statuses. */
+  void close() {
+    this.closed = true;
+    this.watchContext.cancel(null);
+    this.retryScheduler.shutdownNow();
+  }
+
+  private void watch(String service, long backoffNanos) {
+    if (this.closed) {
+      return;
+    }
+    this.watchContext.run(
+        () ->
+            this.healthStub.watch(
+                HealthCheckRequest.newBuilder().setService(service).build(),
+                new ServiceWatch(service, backoffNanos)));
+  }
+
+  private final class ServiceWatch implements StreamObserver<HealthCheckResponse> {
+    private final String service;
+    private final long backoffNanos;
+    private boolean received;
+
+    ServiceWatch(String service, long backoffNanos) {
+      this.service = service;
+      this.backoffNanos = backoffNanos;
+    }
+
+    @Override
+    public void onNext(HealthCheckResponse response) {
+      this.received = true;
+      statuses.put(this.service, response.getStatus());
+    }
+
+    @Override
+    public void onError(Throwable t) {
+      if (!closed) {
+        log.debug("Stopped watching the health of service [{}]", this.service, t);
+        this.rewatch();
+      }
+    }
+
+    @Override
+    public void onCompleted() {
+      this.rewatch();
+    }
+
+    private void rewatch() {
+      if (closed) {
+        return;
+      }
+      statuses.remove(this.service);
+      // Backs off from scratch once a stream delivered statuses
+      long delayNanos = this.received ? INITIAL_BACKOFF_NANOS : this.backoffNanos;
+      try {
+        retryScheduler.schedule(
+            () -> watch(this.service, Math.min(delayNanos * 2, MAX_BACKOFF_NANOS)),
+            delayNanos,
+            NANOSECONDS);
+      } catch (RejectedExecutionException e) {
+        // Closed meanwhile
+      }
+    }
+  }
+}
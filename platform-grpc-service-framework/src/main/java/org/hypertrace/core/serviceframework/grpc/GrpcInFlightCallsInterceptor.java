@@ -0,0 +1,77 @@
+package org.hypertrace.core.serviceframework.grpc;
+
+import io.grpc.ForwardingServerCallListener.SimpleForwardingServerCallListener;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor.MethodType;
+import io.grpc.ServerCall;
+import io.grpc.ServerCallHandler;
+import io.grpc.ServerInterceptor;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.hypertrace.core.serviceframework.metrics.PlatformMetricsRegistry;
+
+/**
+ * Tracks the calls of a server in flight, reported as "grpc.server.in.flight.calls" for unary calls
+ * and "grpc.server.in.flight.streams" for streaming ones, tagged with the server name. On the
+ * in-process server, the watches of the container's {@link GrpcHealthSnapshot} are left out: they
+ * stay open as long as the server runs.
+ */
+class GrpcInFlightCallsInterceptor implements ServerInterceptor {
+  private static final String IN_FLIGHT_CALLS_GAUGE = "grpc.server.in.flight.calls";
+  private static final String IN_FLIGHT_STREAMS_GAUGE = "grpc.server.in.flight.streams";
+  private static final String SERVER_TAG = "server";
+
+  private final AtomicInteger calls;
+  private final AtomicInteger streams;
+  private final boolean inProcess;
+
+  GrpcInFlightCallsInterceptor(String serverName, boolean inProcess) {
+    this.inProcess = inProcess;
+    Map<String, String> tags = Map.of(SERVER_TAG, serverName);
+    this.calls =
+        PlatformMetricsRegistry.registerGauge(IN_FLIGHT_CALLS_GAUGE, tags, new AtomicInteger());
+    this.streams =
+        PlatformMetricsRegistry.registerGauge(IN_FLIGHT_STREAMS_GAUGE, tags, new AtomicInteger());
+  }
+
+  /** Number of unary and streaming calls in flight. */
+  int getInFlight() {
+    return this.calls.get() + this.streams.get();
+  }
+
+  @Override
+  public <ReqT, RespT> ServerCall.Listener<ReqT> interceptCall(
+      ServerCall<ReqT, RespT> call, Metadata headers, ServerCallHandler<ReqT, RespT> next) {
+    // Only in-process callers can set the header there
+    if (this.inProcess && headers.containsKey(GrpcHealthSnapshot.SNAPSHOT_WATCH_KEY)) {
+      return next.startCall(call, headers);
+    }
+    AtomicInteger inFlight =
+        call.getMethodDescriptor().getType() == MethodType.UNARY ? this.calls : this.streams;
+    inFlight.incrementAndGet();
+    try {
+      return new SimpleForwardingServerCallListener<>(next.startCall(call, headers)) {
+        @Override
+        public void onComplete() {
+          try {
+            super.onComplete();
+          } finally {
+            inFlight.decrementAndGet();
+          }
+        }
+
+        @Override
+        public void onCancel() {
+          try {
+            super.onCancel();
+          } finally {
+            inFlight.decrementAndGet();
+          }
+        }
+      };
+    } catch (RuntimeException e) {
+      inFlight.decrementAndGet();
+      throw e;
+    }
+  }
+}
@@ -0,0 +1,142 @@
+package org.hypertrace.core.serviceframework.grpc;
+
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
+import com.typesafe.config.ConfigUtil;
+import java.time.Duration;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Latency bucket layouts of the gRPC call timers, read from the "metrics.latency" block of the
+ * service config. A layout can be given for all the calls, per server, per method, and per method
+ * of a server, the most specific one applying. Example:
+ *
+ * <pre>
+ * metrics.latency {
+ *   buckets { type = log-linear, min = 1ms, max = 10s, linearSteps = 9 }
+ *   servers {
+ *     "networked-my-service" { buckets { type = log-linear, min = 100us, max = 1s } }
+ *   }
+ *   methods {
+ *     "my.package.MyService/Export" { type = list, list = [100ms, 1s, 10s, 60s] }
+ *   }
+ * }
+ * </pre>
+ *
+ * <p>A log-linear layout has {@code linearSteps} evenly spaced buckets in each power of ten
+ * between {@code min} and {@code max}, e.g. 1, 2, ..., 9, 10, 20, ..., 90 with 9 steps. Without
+ * any layout, the buckets are the legacy ladder dividing "metrics.latency.bucket.max.duration" by
+ * 5 until reaching 10 milliseconds.
+ */
+final class GrpcLatencyBuckets {
+  private static final String LATENCY_CONFIG_PATH = "metrics.latency";
+  private static final String MAX_LATENCY_HISTOGRAM_BUCKET_DURATION = "bucket.max.duration";
+  private static final Duration DEFAULT_MAX_LATENCY_HISTOGRAM_BUCKET_DURATION =
+      Duration.ofSeconds(10);
+  private static final Duration DEFAULT_MIN_LATENCY_HISTOGRAM_BUCKET_DURATION =
+      Duration.ofMillis(10);
+  private static final int LATENCY_HISTOGRAM_BUCKET_FACTOR = 5;
+
+  private static final String BUCKETS = "buckets";
+  private static final String SERVERS = "servers";
+  private static final String METHODS = "methods";
+  private static final String TYPE = "type";
+  private static final String LIST = "list";
+  private static final String MIN = "min";
+  private static final String MAX = "max";
+  private static final String LINEAR_STEPS = "linearSteps";
+  private static final String LOG_LINEAR_TYPE = "log-linear";
+  private static final String LIST_TYPE = "list";
+  private static final int DEFAULT_LINEAR_STEPS = 9;
+
+  private final Config latencyConfig;
+  private final Duration[] defaultBuckets;
+
+  GrpcLatencyBuckets(Config appConfig) {
+    this.latencyConfig =
+        appConfig.hasPath(LATENCY_CONFIG_PATH)
+            ? appConfig.getConfig(LATENCY_CONFIG_PATH)
+            : ConfigFactory.empty();
+    this.defaultBuckets = this.layoutAt(BUCKETS).orElseGet(this::legacyBuckets);
+  }
+
+  /** Buckets of the given method's timers on the given server. */
+  Duration[] forServerMethod(String serverName, String fullMethodName) {
+    return this.layoutAt(ConfigUtil.joinPath(SERVERS, serverName, METHODS, fullMethodName))
+        .or(() -> this.layoutAt(ConfigUtil.joinPath(METHODS, fullMethodName)))
+        .or(() -> this.layoutAt(ConfigUtil.joinPath(SERVERS, serverName, BUCKETS)))
+        .orElse(this.defaultBuckets);
+  }
+
+  /** Buckets of the given method's timers on the client side. */
+  Duration[] forClientMethod(String fullMethodName) {
+    return this.layoutAt(ConfigUtil.joinPath(METHODS, fullMethodName)).orElse(this.defaultBuckets);
+  }
+
+  private Optional<Duration[]> layoutAt(String path) {
+    if (!this.latencyConfig.hasPath(path)) {
+      return Optional.empty();
+    }
+    Config layout = this.latencyConfig.getConfig(path);
+    String type = layout.hasPath(TYPE) ? layout.getString(TYPE) : LOG_LINEAR_TYPE;
+    switch (type) {
+      case LIST_TYPE:
+        return Optional.of(
+            layout.getDurationList(LIST).stream().sorted().distinct().toArray(Duration[]::new));
+      case LOG_LINEAR_TYPE:
+        return Optional.of(
+            logLinear(
+                layout.getDuration(MIN),
+                layout.getDuration(MAX),
+                layout.hasPath(LINEAR_STEPS)
+                    ? layout.getInt(LINEAR_STEPS)
+                    : DEFAULT_LINEAR_STEPS));
+      default:
+        throw new IllegalArgumentException(
+            "Unknown latency bucket layout type [" + type + "] at " + path);
+    }
+  }
+
+  static Duration[] logLinear(Duration min, Duration max, int linearSteps) {
+    if (min.isNegative() || min.isZero() || max.compareTo(min) < 0 || linearSteps < 1) {
+      throw new IllegalArgumentException(
+          "Invalid log-linear latency buckets, min: " + min + ", max: " + max);
+    }
+    long minNanos = min.toNanos();
+    long maxNanos = max.toNanos();
+    List<Duration> buckets = new ArrayList<>();
+    long decade = 1;
+    while (decade * 10 <= minNanos) {
+      decade *= 10;
+    }
+    for (; decade <= maxNanos; decade *= 10) {
+      for (int step = 0; step < linearSteps; step++) {
+        long bucketNanos = decade + decade * 9 * step / linearSteps;
+        if (bucketNanos >= minNanos && bucketNanos <= maxNanos) {
+          buckets.add(Duration.ofNanos(bucketNanos));
+        }
+      }
+    }
+    if (buckets.isEmpty() || !buckets.get(buckets.size() - 1).equals(max)) {
+      buckets.add(max);
+    }
+    return buckets.toArray(Duration[]::new);
+  }
+
+  private Duration[] legacyBuckets() {
+    List<Duration> histogramBuckets = new ArrayList<>();
+    Duration currDuration =
+        this.latencyConfig.hasPath(MAX_LATENCY_HISTOGRAM_BUCKET_DURATION)
+            ? this.latencyConfig.getDuration(MAX_LATENCY_HISTOGRAM_BUCKET_DURATION)
+            : DEFAULT_MAX_LATENCY_HISTOGRAM_BUCKET_DURATION;
+    while (currDuration.compareTo(DEFAULT_MIN_LATENCY_HISTOGRAM_BUCKET_DURATION) > 0) {
+      histogramBuckets.add(currDuration);
+      currDuration =
+          currDuration.dividedBy(LATENCY_HISTOGRAM_BUCKET_FACTOR).truncatedTo(ChronoUnit.MILLIS);
+    }
+    return histogramBuckets.toArray(Duration[]::new);
+  }
+}
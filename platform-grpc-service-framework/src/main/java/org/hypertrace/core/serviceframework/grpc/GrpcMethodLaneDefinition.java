@@ -0,0 +1,28 @@
+package org.hypertrace.core.serviceframework.grpc;
+
+import java.util.List;
+import lombok.Builder;
+import lombok.Singular;
+import lombok.Value;
+
+/**
+ * Methods of a server running on their own executor, isolated from the queueing of the other
+ * methods. Typically gives latency-sensitive methods a lane of their own, leaving the bulk methods
+ * to the server executor.
+ */
+@Value
+@Builder
+public class GrpcMethodLaneDefinition {
+  String name;
+
+  /**
+   * Full names of the methods of the lane, like "my.package.MyService/MyMethod", or
+   * "my.package.MyService/*" for all the methods of a service.
+   */
+  @Singular List<String> methods;
+
+  /** Executor of the lane, a fixed pool of as many threads as processors by default. */
+  @Builder.Default
+  GrpcServerExecutorDefinition executor =
+      GrpcServerExecutorDefinition.builder().type(GrpcServerExecutorDefinition.Type.FIXED).build();
+}
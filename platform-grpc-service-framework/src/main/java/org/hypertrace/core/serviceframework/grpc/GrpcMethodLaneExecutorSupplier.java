@@ -0,0 +1,66 @@
+package org.hypertrace.core.serviceframework.grpc;
+
+import io.grpc.Metadata;
+import io.grpc.ServerCall;
+import io.grpc.ServerCallExecutorSupplier;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+/**
+ * Runs the calls of the methods in a {@link GrpcMethodLaneDefinition} on the executor of their
+ * lane, and the other calls as the server would without lanes.
+ */
+class GrpcMethodLaneExecutorSupplier implements ServerCallExecutorSupplier {
+  private static final String ALL_METHODS_SUFFIX = "/*";
+
+  private final Map<String, ServerCallExecutorSupplier> methodExecutors = new HashMap<>();
+  private final Map<String, ServerCallExecutorSupplier> serviceExecutors = new HashMap<>();
+  private final ServerCallExecutorSupplier serverExecutorSupplier;
+
+  /**
+   * @param serverExecutorSupplier supplier of the calls outside any lane, null for the server
+   *     executor
+   */
+  GrpcMethodLaneExecutorSupplier(
+      Map<GrpcMethodLaneDefinition, ServerCallExecutorSupplier> laneExecutors,
+      ServerCallExecutorSupplier serverExecutorSupplier) {
+    laneExecutors.forEach(
+        (lane, executor) ->
+            lane.getMethods()
+                .forEach(
+                    method -> {
+                      if (method.endsWith(ALL_METHODS_SUFFIX)) {
+                        this.serviceExecutors.put(
+                            method.substring(0, method.length() - ALL_METHODS_SUFFIX.length()),
+                            executor);
+                      } else {
+                        this.methodExecutors.put(method, executor);
+                      }
+                    }));
+    this.serverExecutorSupplier = serverExecutorSupplier;
+  }
+
+  /** Returns the supplier of a lane whose calls are all run by the given executor. */
+  static ServerCallExecutorSupplier always(Executor executor) {
+    return new ServerCallExecutorSupplier() {
+      @Override
+      public <ReqT, RespT> Executor getExecutor(ServerCall<ReqT, RespT> call, Metadata metadata) {
+        return executor;
+      }
+    };
+  }
+
+  @Override
+  public <ReqT, RespT> Executor getExecutor(ServerCall<ReqT, RespT> call, Metadata metadata) {
+    ServerCallExecutorSupplier supplier =
+        this.methodExecutors.get(call.getMethodDescriptor().getFullMethodName());
+    if (supplier == null) {
+      supplier = this.serviceExecutors.get(call.getMethodDescriptor().getServiceName());
+    }
+    if (supplier == null) {
+      supplier = this.serverExecutorSupplier;
+    }
+    return supplier == null ? null : supplier.getExecutor(call, metadata);
+  }
+}
@@ -0,0 +1,514 @@
+package org.hypertrace.core.serviceframework.grpc;
+
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+import com.google.protobuf.MessageLite;
+import io.grpc.CallOptions;
+import io.grpc.Channel;
+import io.grpc.ClientCall;
+import io.grpc.ClientInterceptor;
+import io.grpc.Context;
+import io.grpc.Grpc;
+import io.grpc.ForwardingClientCall.SimpleForwardingClientCall;
+import io.grpc.ForwardingClientCallListener.SimpleForwardingClientCallListener;
+import io.grpc.ForwardingServerCall.SimpleForwardingServerCall;
+import io.grpc.ForwardingServerCallListener.SimpleForwardingServerCallListener;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.ServerCall;
+import io.grpc.ServerCallHandler;
+import io.grpc.ServerMethodDefinition;
+import io.grpc.ServerServiceDefinition;
+import io.grpc.ServerStreamTracer;
+import io.grpc.Status;
+import io.grpc.inprocess.AnonymousInProcessSocketAddress;
+import io.grpc.inprocess.InProcessSocketAddress;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import java.net.SocketAddress;
+import java.time.Duration;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Records the duration and message counts of gRPC calls, under the same meter names and tags as
+ * Micrometer's metric collecting interceptors.
+ *
+ * <p>On the server side, services are instrumented when they are added to a server: the meters of
+ * each method are created upfront and bound to its call handler, so calls never look meters up.
+ * On the client side, as a {@link ClientInterceptor}, the meters of a method are created on its
+ * first call. In both cases the timer of the OK status is registered with the other meters, and
+ * the timers of the other statuses on their first use.
+ *
+ * <p>Server side, the time a call waits for the server executor after arriving on the transport,
+ * and the time it then spends in its handler callbacks, are also recorded per method. The number
+ * of handler callbacks running is reported per server, as the occupancy of its executor. The
+ * uncompressed size of each message received and sent is recorded per method too, as reported by
+ * the transport of networked servers. In-process transports don't serialize messages, so there the
+ * serialized size of protobuf messages is computed instead.
+ */
+class GrpcMetricsInterceptor implements ClientInterceptor {
+  private static final String SERVER_DURATION_TIMER = "grpc.server.processing.duration";
+  private static final String SERVER_REQUESTS_COUNTER = "grpc.server.requests.received";
+  private static final String SERVER_RESPONSES_COUNTER = "grpc.server.responses.sent";
+  private static final String SERVER_QUEUE_WAIT_TIMER = "grpc.server.queue.wait";
+  private static final String SERVER_HANDLER_TIMER = "grpc.server.handler.duration";
+  private static final String SERVER_ACTIVE_HANDLERS_GAUGE = "grpc.server.handlers.active";
+  private static final String SERVER_REQUEST_SIZE_SUMMARY = "grpc.server.request.size";
+  private static final String SERVER_RESPONSE_SIZE_SUMMARY = "grpc.server.response.size";
+  private static final String CLIENT_DURATION_TIMER = "grpc.client.processing.duration";
+  private static final String CLIENT_REQUESTS_COUNTER = "grpc.client.requests.sent";
+  private static final String CLIENT_RESPONSES_COUNTER = "grpc.client.responses.received";
+
+  private static final Context.Key<CallTracer> CALL_TRACER = Context.key("grpc-call-tracer");
+  private static final ServerStreamTracer.Factory CALL_TRACER_FACTORY =
+      new ServerStreamTracer.Factory() {
+        @Override
+        public ServerStreamTracer newServerStreamTracer(String fullMethodName, Metadata headers) {
+          return new CallTracer();
+        }
+      };
+
+  private final MeterRegistry meterRegistry;
+  private final GrpcLatencyBuckets latencyBuckets;
+  private final ConcurrentMap<String, MethodMetrics> clientMethodMetrics =
+      new ConcurrentHashMap<>();
+  private final ConcurrentMap<String, AtomicInteger> activeHandlers = new ConcurrentHashMap<>();
+
+  GrpcMetricsInterceptor(MeterRegistry meterRegistry, GrpcLatencyBuckets latencyBuckets) {
+    this.meterRegistry = meterRegistry;
+    this.latencyBuckets = latencyBuckets;
+  }
+
+  /** Returns the service with all its methods recording their server side metrics. */
+  ServerServiceDefinition instrument(ServerServiceDefinition service, String serverName) {
+    ServerServiceDefinition.Builder builder =
+        ServerServiceDefinition.builder(service.getServiceDescriptor());
+    service
+        .getMethods()
+        .forEach(method -> builder.addMethod(this.instrument(method, serverName)));
+    return builder.build();
+  }
+
+  @Override
+  public <ReqT, RespT> ClientCall<ReqT, RespT> interceptCall(
+      MethodDescriptor<ReqT, RespT> method, CallOptions callOptions, Channel next) {
+    MethodMetrics metrics =
+        this.clientMethodMetrics.computeIfAbsent(
+            method.getFullMethodName(),
+            unused ->
+                new MethodMetrics(
+                    this.meterRegistry,
+                    method,
+                    this.latencyBuckets.forClientMethod(method.getFullMethodName()),
+                    CLIENT_DURATION_TIMER,
+                    "The total time taken for the client to complete the call, including network"
+                        + " delay",
+                    CLIENT_REQUESTS_COUNTER,
+                    "The total number of requests sent",
+                    CLIENT_RESPONSES_COUNTER,
+                    "The total number of responses received"));
+    return new MonitoringClientCall<>(next.newCall(method, callOptions), metrics);
+  }
+
+  /**
+   * Stream tracer to add to the servers whose services are instrumented, timestamping the arrival
+   * of their calls on the transport to measure how long they then wait for the server executor, and
+   * collecting the message sizes reported by the transport.
+   */
+  ServerStreamTracer.Factory callTracerFactory() {
+    return CALL_TRACER_FACTORY;
+  }
+
+  private <ReqT, RespT> ServerMethodDefinition<ReqT, RespT> instrument(
+      ServerMethodDefinition<ReqT, RespT> method, String serverName) {
+    MethodDescriptor<ReqT, RespT> descriptor = method.getMethodDescriptor();
+    Duration[] buckets =
+        this.latencyBuckets.forServerMethod(serverName, descriptor.getFullMethodName());
+    MethodMetrics metrics =
+        new MethodMetrics(
+            this.meterRegistry,
+            descriptor,
+            buckets,
+            SERVER_DURATION_TIMER,
+            "The total time taken for the server to complete the call",
+            SERVER_RESPONSES_COUNTER,
+            "The total number of responses sent",
+            SERVER_REQUESTS_COUNTER,
+            "The total number of requests received");
+    Timer queueWait =
+        Timer.builder(SERVER_QUEUE_WAIT_TIMER)
+            .description("The time between the arrival of the call and the start of its handling")
+            .tags(metrics.tags)
+            .serviceLevelObjectives(buckets)
+            .register(this.meterRegistry);
+    Timer handlerTime =
+        Timer.builder(SERVER_HANDLER_TIMER)
+            .description("The total time spent running the handler callbacks of the call")
+            .tags(metrics.tags)
+            .serviceLevelObjectives(buckets)
+            .register(this.meterRegistry);
+    MessageSizes messageSizes =
+        new MessageSizes(
+            DistributionSummary.builder(SERVER_REQUEST_SIZE_SUMMARY)
+                .description("The uncompressed size of the messages received")
+                .baseUnit("bytes")
+                .tags(metrics.tags)
+                .register(this.meterRegistry),
+            DistributionSummary.builder(SERVER_RESPONSE_SIZE_SUMMARY)
+                .description("The uncompressed size of the messages sent")
+                .baseUnit("bytes")
+                .tags(metrics.tags)
+                .register(this.meterRegistry));
+    AtomicInteger activeHandlers =
+        this.activeHandlers.computeIfAbsent(
+            serverName,
+            unused ->
+                this.meterRegistry.gauge(
+                    SERVER_ACTIVE_HANDLERS_GAUGE,
+                    Tags.of("server", serverName),
+                    new AtomicInteger()));
+    ServerCallHandler<ReqT, RespT> handler = method.getServerCallHandler();
+    return method.withServerCallHandler(
+        (call, headers) -> {
+          long startNanos = System.nanoTime();
+          CallTracer tracer = CALL_TRACER.get();
+          if (tracer != null) {
+            queueWait.record(startNanos - tracer.arrivalNanos, NANOSECONDS);
+          }
+          CallTracer sizeTracer = tracer == null || isInProcess(call) ? null : tracer;
+          MonitoringServerCall<ReqT, RespT> monitoringCall =
+              new MonitoringServerCall<>(call, metrics, messageSizes, sizeTracer);
+          HandlerTiming timing = new HandlerTiming(handlerTime, activeHandlers);
+          activeHandlers.incrementAndGet();
+          ServerCall.Listener<ReqT> listener;
+          try {
+            listener = handler.startCall(monitoringCall, headers);
+          } finally {
+            timing.exit(startNanos);
+          }
+          return new MonitoringServerCallListener<>(
+              listener, monitoringCall, metrics, messageSizes, sizeTracer, timing);
+        });
+  }
+
+  private static boolean isInProcess(ServerCall<?, ?> call) {
+    SocketAddress remoteAddress = call.getAttributes().get(Grpc.TRANSPORT_ATTR_REMOTE_ADDR);
+    return remoteAddress instanceof InProcessSocketAddress
+        || remoteAddress instanceof AnonymousInProcessSocketAddress;
+  }
+
+  /**
+   * Tracer of a server call, timestamping its arrival on the transport. It also sums the
+   * uncompressed sizes reported by the transport since the last message was recorded: inbound ones
+   * are reported before the message is handed to the call listener, and outbound ones while the
+   * message is being sent.
+   */
+  private static final class CallTracer extends ServerStreamTracer {
+    private final long arrivalNanos = System.nanoTime();
+    private final AtomicLong inboundBytes = new AtomicLong();
+    private final AtomicLong outboundBytes = new AtomicLong();
+
+    @Override
+    public Context filterContext(Context context) {
+      return context.withValue(CALL_TRACER, this);
+    }
+
+    @Override
+    public void inboundUncompressedSize(long bytes) {
+      this.inboundBytes.addAndGet(bytes);
+    }
+
+    @Override
+    public void outboundUncompressedSize(long bytes) {
+      this.outboundBytes.addAndGet(bytes);
+    }
+  }
+
+  /** Meters of a method, for either the server or the client side. */
+  private static final class MethodMetrics {
+    private final MeterRegistry meterRegistry;
+    private final Tags tags;
+    private final Duration[] buckets;
+    private final String timerName;
+    private final String timerDescription;
+    private final Counter inboundMessages;
+    private final Counter outboundMessages;
+    private final AtomicReferenceArray<Timer> timers =
+        new AtomicReferenceArray<>(Status.Code.values().length);
+
+    MethodMetrics(
+        MeterRegistry meterRegistry,
+        MethodDescriptor<?, ?> method,
+        Duration[] buckets,
+        String timerName,
+        String timerDescription,
+        String outboundCounterName,
+        String outboundCounterDescription,
+        String inboundCounterName,
+        String inboundCounterDescription) {
+      this.meterRegistry = meterRegistry;
+      this.tags =
+          Tags.of(
+              "service",
+              String.valueOf(method.getServiceName()),
+              "method",
+              String.valueOf(method.getBareMethodName()),
+              "methodType",
+              method.getType().name());
+      this.buckets = buckets;
+      this.timerName = timerName;
+      this.timerDescription = timerDescription;
+      this.outboundMessages =
+          Counter.builder(outboundCounterName)
+              .description(outboundCounterDescription)
+              .baseUnit("messages")
+              .tags(this.tags)
+              .register(meterRegistry);
+      this.inboundMessages =
+          Counter.builder(inboundCounterName)
+              .description(inboundCounterDescription)
+              .baseUnit("messages")
+              .tags(this.tags)
+              .register(meterRegistry);
+      this.timer(Status.Code.OK);
+    }
+
+    Timer timer(Status.Code code) {
+      Timer timer = this.timers.get(code.ordinal());
+      if (timer == null) {
+        // Registering twice concurrently is harmless, the registry returns the same timer
+        timer =
+            Timer.builder(this.timerName)
+                .description(this.timerDescription)
+                .tags(this.tags)
+                .tag("statusCode", code.name())
+                .serviceLevelObjectives(this.buckets)
+                .register(this.meterRegistry);
+        this.timers.set(code.ordinal(), timer);
+      }
+      return timer;
+    }
+  }
+
+  /** Sizes of the messages received and sent on the server side of a method. */
+  private static final class MessageSizes {
+    private final DistributionSummary inbound;
+    private final DistributionSummary outbound;
+
+    MessageSizes(DistributionSummary inbound, DistributionSummary outbound) {
+      this.inbound = inbound;
+      this.outbound = outbound;
+    }
+
+    /**
+     * Records the size reported by the transport since the previous message, or without any the
+     * serialized size of the message.
+     */
+    static void record(DistributionSummary sizes, AtomicLong reportedBytes, Object message) {
+      if (reportedBytes != null) {
+        sizes.record(reportedBytes.getAndSet(0));
+      } else if (message instanceof MessageLite) {
+        sizes.record(((MessageLite) message).getSerializedSize());
+      }
+    }
+  }
+
+  private static final class MonitoringServerCall<ReqT, RespT>
+      extends SimpleForwardingServerCall<ReqT, RespT> {
+    // Field updaters can only be created for the raw class
+    @SuppressWarnings("rawtypes")
+    private static final AtomicIntegerFieldUpdater<MonitoringServerCall> COMPLETED =
+        AtomicIntegerFieldUpdater.newUpdater(MonitoringServerCall.class, "completed");
+
+    private final MethodMetrics metrics;
+    private final MessageSizes messageSizes;
+    private final AtomicLong reportedBytes;
+    private final long startNanos = System.nanoTime();
+    private volatile int completed;
+
+    MonitoringServerCall(
+        ServerCall<ReqT, RespT> delegate,
+        MethodMetrics metrics,
+        MessageSizes messageSizes,
+        CallTracer sizeTracer) {
+      super(delegate);
+      this.metrics = metrics;
+      this.messageSizes = messageSizes;
+      this.reportedBytes = sizeTracer == null ? null : sizeTracer.outboundBytes;
+    }
+
+    @Override
+    public void sendMessage(RespT message) {
+      this.metrics.outboundMessages.increment();
+      super.sendMessage(message);
+      MessageSizes.record(this.messageSizes.outbound, this.reportedBytes, message);
+    }
+
+    @Override
+    public void close(Status status, Metadata trailers) {
+      this.complete(status.getCode());
+      super.close(status, trailers);
+    }
+
+    // A call is either closed by the server or cancelled, but both can race
+    void complete(Status.Code code) {
+      if (COMPLETED.compareAndSet(this, 0, 1)) {
+        this.metrics.timer(code).record(System.nanoTime() - this.startNanos, NANOSECONDS);
+      }
+    }
+  }
+
+  /**
+   * Time spent by a call in its handler callbacks, and number of callbacks running on a server.
+   * The callbacks of a call never run concurrently, and always with a happens-before relation.
+   */
+  private static final class HandlerTiming {
+    private final Timer handlerTime;
+    private final AtomicInteger activeHandlers;
+    private long handlerNanos;
+
+    HandlerTiming(Timer handlerTime, AtomicInteger activeHandlers) {
+      this.handlerTime = handlerTime;
+      this.activeHandlers = activeHandlers;
+    }
+
+    long enter() {
+      this.activeHandlers.incrementAndGet();
+      return System.nanoTime();
+    }
+
+    void exit(long enterNanos) {
+      this.handlerNanos += System.nanoTime() - enterNanos;
+      this.activeHandlers.decrementAndGet();
+    }
+
+    void record() {
+      this.handlerTime.record(this.handlerNanos, NANOSECONDS);
+    }
+  }
+
+  private static final class MonitoringServerCallListener<ReqT>
+      extends SimpleForwardingServerCallListener<ReqT> {
+    private final MonitoringServerCall<ReqT, ?> call;
+    private final MethodMetrics metrics;
+    private final MessageSizes messageSizes;
+    private final AtomicLong reportedBytes;
+    private final HandlerTiming timing;
+
+    MonitoringServerCallListener(
+        ServerCall.Listener<ReqT> delegate,
+        MonitoringServerCall<ReqT, ?> call,
+        MethodMetrics metrics,
+        MessageSizes messageSizes,
+        CallTracer sizeTracer,
+        HandlerTiming timing) {
+      super(delegate);
+      this.call = call;
+      this.metrics = metrics;
+      this.messageSizes = messageSizes;
+      this.reportedBytes = sizeTracer == null ? null : sizeTracer.inboundBytes;
+      this.timing = timing;
+    }
+
+    @Override
+    public void onMessage(ReqT message) {
+      this.metrics.inboundMessages.increment();
+      MessageSizes.record(this.messageSizes.inbound, this.reportedBytes, message);
+      long enterNanos = this.timing.enter();
+      try {
+        super.onMessage(message);
+      } finally {
+        this.timing.exit(enterNanos);
+      }
+    }
+
+    @Override
+    public void onHalfClose() {
+      long enterNanos = this.timing.enter();
+      try {
+        super.onHalfClose();
+      } finally {
+        this.timing.exit(enterNanos);
+      }
+    }
+
+    @Override
+    public void onReady() {
+      long enterNanos = this.timing.enter();
+      try {
+        super.onReady();
+      } finally {
+        this.timing.exit(enterNanos);
+      }
+    }
+
+    @Override
+    public void onCancel() {
+      this.call.complete(Status.Code.CANCELLED);
+      long enterNanos = this.timing.enter();
+      try {
+        super.onCancel();
+      } finally {
+        this.timing.exit(enterNanos);
+        this.timing.record();
+      }
+    }
+
+    @Override
+    public void onComplete() {
+      long enterNanos = this.timing.enter();
+      try {
+        super.onComplete();
+      } finally {
+        this.timing.exit(enterNanos);
+        this.timing.record();
+      }
+    }
+  }
+
+  private static final class MonitoringClientCall<ReqT, RespT>
+      extends SimpleForwardingClientCall<ReqT, RespT> {
+    private final MethodMetrics metrics;
+    private final long startNanos = System.nanoTime();
+
+    MonitoringClientCall(ClientCall<ReqT, RespT> delegate, MethodMetrics metrics) {
+      super(delegate);
+      this.metrics = metrics;
+    }
+
+    @Override
+    public void start(Listener<RespT> responseListener, Metadata headers) {
+      super.start(
+          new SimpleForwardingClientCallListener<>(responseListener) {
+            @Override
+            public void onMessage(RespT message) {
+              metrics.inboundMessages.increment();
+              super.onMessage(message);
+            }
+
+            @Override
+            public void onClose(Status status, Metadata trailers) {
+              metrics
+                  .timer(status.getCode())
+                  .record(System.nanoTime() - startNanos, NANOSECONDS);
+              super.onClose(status, trailers);
+            }
+          },
+          headers);
+    }
+
+    @Override
+    public void sendMessage(ReqT message) {
+      this.metrics.outboundMessages.increment();
+      super.sendMessage(message);
+    }
+  }
+}
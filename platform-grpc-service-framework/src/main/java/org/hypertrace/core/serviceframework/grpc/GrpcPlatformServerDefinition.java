@@ -1,5 +1,8 @@
 package org.hypertrace.core.serviceframework.grpc;
 
+import static com.typesafe.config.ConfigUtil.quoteString;
+
+import com.typesafe.config.Config;
 import io.grpc.ServerInterceptor;
 import java.time.Duration;
 import java.util.Collection;
@@ -20,6 +23,242 @@ public class GrpcPlatformServerDefinition {
   @Builder.Default int maxRstPerMinute = 500;
   @Builder.Default Duration maxConnectionAge = Duration.ZERO;
   @Builder.Default Duration maxConnectionAgeGrace = Duration.ZERO;
+  @Builder.Default GrpcServerExecutorDefinition executor = GrpcServerExecutorDefinition.DEFAULT;
+
+  /**
+   * HTTP/2 flow control window of each stream, in bytes. With adaptive flow control it is only the
+   * initial window, later resized from the measured bandwidth-delay product. Zero keeps gRPC's
+   * default of 1 MiB.
+   */
+  int flowControlWindow;
+
+  @Builder.Default boolean adaptiveFlowControl = true;
+
+  /** Zero allows an unlimited number of concurrent calls per connection. */
+  int maxConcurrentCallsPerConnection;
+
+  /** Time without reads after which the server pings the client. Zero keeps gRPC's default. */
+  @Builder.Default Duration keepAliveTime = Duration.ZERO;
+
+  /** Time the server waits for a ping ack before closing the connection. */
+  @Builder.Default Duration keepAliveTimeout = Duration.ZERO;
+
+  /**
+   * Most aggressive keepalive clients are permitted, clients pinging more often get GOAWAY. Zero
+   * keeps gRPC's default of 5 minutes.
+   */
+  @Builder.Default Duration permitKeepAliveTime = Duration.ZERO;
+
+  boolean permitKeepAliveWithoutCalls;
+
+  /** Maximum size of the metadata received, in bytes. Zero keeps gRPC's default of 8 KiB. */
+  int maxInboundMetadataSize;
+
+  @Builder.Default
+  GrpcConcurrencyLimitDefinition concurrencyLimit = GrpcConcurrencyLimitDefinition.DISABLED;
+
+  @Builder.Default
+  GrpcResourceAccountingDefinition resourceAccounting = GrpcResourceAccountingDefinition.DISABLED;
+
+  /** Methods running on executors of their own, rather than on the server executor. */
+  @Singular List<GrpcMethodLaneDefinition> methodLanes;
+
   @Singular Collection<GrpcPlatformServiceFactory> serviceFactories;
   @Singular List<ServerInterceptor> serverInterceptors;
+
+  public static class GrpcPlatformServerDefinitionBuilder {
+    private static final String MAX_INBOUND_MESSAGE_SIZE = "maxInboundMessageSize";
+    private static final String MAX_RST_PER_MINUTE = "maxRstPerMinute";
+    private static final String MAX_CONNECTION_AGE = "maxConnectionAge";
+    private static final String MAX_CONNECTION_AGE_GRACE = "maxConnectionAgeGrace";
+    private static final String EXECUTOR_TYPE = "executor.type";
+    private static final String EXECUTOR_THREADS = "executor.threads";
+    private static final String EXECUTOR_MAX_QUEUED = "executor.maxQueued";
+    private static final String EXECUTOR_MAX_QUEUED_PER_TENANT = "executor.maxQueuedPerTenant";
+    private static final String EXECUTOR_MAX_TENANT_SERIES = "executor.maxTenantSeries";
+    private static final String EXECUTOR_TENANT_WEIGHTS = "executor.tenantWeights";
+    private static final String FLOW_CONTROL_WINDOW = "flowControlWindow";
+    private static final String ADAPTIVE_FLOW_CONTROL = "adaptiveFlowControl";
+    private static final String MAX_CONCURRENT_CALLS_PER_CONNECTION =
+        "maxConcurrentCallsPerConnection";
+    private static final String KEEP_ALIVE_TIME = "keepAliveTime";
+    private static final String KEEP_ALIVE_TIMEOUT = "keepAliveTimeout";
+    private static final String PERMIT_KEEP_ALIVE_TIME = "permitKeepAliveTime";
+    private static final String PERMIT_KEEP_ALIVE_WITHOUT_CALLS = "permitKeepAliveWithoutCalls";
+    private static final String MAX_INBOUND_METADATA_SIZE = "maxInboundMetadataSize";
+    private static final String CONCURRENCY_LIMIT = "concurrencyLimit";
+    private static final String RESOURCE_ACCOUNTING = "resourceAccounting";
+    private static final String METHOD_LANES = "methodLanes";
+    private static final String METHODS = "methods";
+    private static final String ENABLED = "enabled";
+    private static final String SCOPE = "scope";
+    private static final String INITIAL_LIMIT = "initialLimit";
+    private static final String MIN_LIMIT = "minLimit";
+    private static final String MAX_LIMIT = "maxLimit";
+    private static final String RTT_TOLERANCE = "rttTolerance";
+    private static final String SMOOTHING = "smoothing";
+    private static final String PER_TENANT = "perTenant";
+    private static final String MAX_TENANT_SERIES = "maxTenantSeries";
+
+    /**
+     * Sets the server options present in the given config, e.g. the "grpc.server" block of the
+     * service config. Sizes accept units like "4MiB", durations like "30s". Example:
+     *
+     * <pre>
+     * grpc.server {
+     *   flowControlWindow = 4MiB
+     *   maxConcurrentCallsPerConnection = 1000
+     *   keepAliveTime = 1m
+     *   permitKeepAliveTime = 10s
+     *   executor { type = fixed, threads = 32, maxQueued = 1000 }
+     *   # or: executor { type = tenant-fair-queue, threads = 32, tenantWeights { tenant-a = 4 } }
+     *   concurrencyLimit { enabled = true, scope = method, maxLimit = 200 }
+     *   resourceAccounting { enabled = true, perTenant = true }
+     *   methodLanes {
+     *     critical { methods = ["my.package.MyService/*"], executor { type = fixed, threads = 4 } }
+     *   }
+     * }
+     * </pre>
+     */
+    public GrpcPlatformServerDefinitionBuilder withConfig(Config config) {
+      if (config.hasPath(MAX_INBOUND_MESSAGE_SIZE)) {
+        this.maxInboundMessageSize(config.getBytes(MAX_INBOUND_MESSAGE_SIZE).intValue());
+      }
+      if (config.hasPath(MAX_RST_PER_MINUTE)) {
+        this.maxRstPerMinute(config.getInt(MAX_RST_PER_MINUTE));
+      }
+      if (config.hasPath(MAX_CONNECTION_AGE)) {
+        this.maxConnectionAge(config.getDuration(MAX_CONNECTION_AGE));
+      }
+      if (config.hasPath(MAX_CONNECTION_AGE_GRACE)) {
+        this.maxConnectionAgeGrace(config.getDuration(MAX_CONNECTION_AGE_GRACE));
+      }
+      if (config.hasPath(EXECUTOR_TYPE)) {
+        this.executor(executorFromConfig(config));
+      }
+      if (config.hasPath(FLOW_CONTROL_WINDOW)) {
+        this.flowControlWindow(config.getBytes(FLOW_CONTROL_WINDOW).intValue());
+      }
+      if (config.hasPath(ADAPTIVE_FLOW_CONTROL)) {
+        this.adaptiveFlowControl(config.getBoolean(ADAPTIVE_FLOW_CONTROL));
+      }
+      if (config.hasPath(MAX_CONCURRENT_CALLS_PER_CONNECTION)) {
+        this.maxConcurrentCallsPerConnection(config.getInt(MAX_CONCURRENT_CALLS_PER_CONNECTION));
+      }
+      if (config.hasPath(KEEP_ALIVE_TIME)) {
+        this.keepAliveTime(config.getDuration(KEEP_ALIVE_TIME));
+      }
+      if (config.hasPath(KEEP_ALIVE_TIMEOUT)) {
+        this.keepAliveTimeout(config.getDuration(KEEP_ALIVE_TIMEOUT));
+      }
+      if (config.hasPath(PERMIT_KEEP_ALIVE_TIME)) {
+        this.permitKeepAliveTime(config.getDuration(PERMIT_KEEP_ALIVE_TIME));
+      }
+      if (config.hasPath(PERMIT_KEEP_ALIVE_WITHOUT_CALLS)) {
+        this.permitKeepAliveWithoutCalls(config.getBoolean(PERMIT_KEEP_ALIVE_WITHOUT_CALLS));
+      }
+      if (config.hasPath(MAX_INBOUND_METADATA_SIZE)) {
+        this.maxInboundMetadataSize(config.getBytes(MAX_INBOUND_METADATA_SIZE).intValue());
+      }
+      if (config.hasPath(CONCURRENCY_LIMIT)) {
+        this.concurrencyLimit(concurrencyLimitFromConfig(config.getConfig(CONCURRENCY_LIMIT)));
+      }
+      if (config.hasPath(RESOURCE_ACCOUNTING)) {
+        this.resourceAccounting(
+            resourceAccountingFromConfig(config.getConfig(RESOURCE_ACCOUNTING)));
+      }
+      if (config.hasPath(METHOD_LANES)) {
+        Config lanes = config.getConfig(METHOD_LANES);
+        lanes
+            .root()
+            .keySet()
+            .forEach(
+                lane ->
+                    this.methodLane(
+                        methodLaneFromConfig(lane, lanes.getConfig(quoteString(lane)))));
+      }
+      return this;
+    }
+
+    private static GrpcServerExecutorDefinition executorFromConfig(Config config) {
+      GrpcServerExecutorDefinition.Type type =
+          GrpcServerExecutorDefinition.Type.valueOf(
+              config.getString(EXECUTOR_TYPE).toUpperCase().replace('-', '_'));
+      if (type == GrpcServerExecutorDefinition.Type.VIRTUAL_THREAD
+          && !GrpcServerExecutors.virtualThreadsSupported()) {
+        throw new IllegalArgumentException(
+            "Executor type "
+                + config.getString(EXECUTOR_TYPE)
+                + " requires Java 21 or later, running on Java "
+                + Runtime.version().feature());
+      }
+      GrpcServerExecutorDefinition.GrpcServerExecutorDefinitionBuilder builder =
+          GrpcServerExecutorDefinition.builder()
+              .type(type)
+              .threads(config.hasPath(EXECUTOR_THREADS) ? config.getInt(EXECUTOR_THREADS) : 0);
+      if (config.hasPath(EXECUTOR_MAX_QUEUED)) {
+        builder.maxQueued(config.getInt(EXECUTOR_MAX_QUEUED));
+      }
+      if (config.hasPath(EXECUTOR_MAX_QUEUED_PER_TENANT)) {
+        builder.maxQueuedPerTenant(config.getInt(EXECUTOR_MAX_QUEUED_PER_TENANT));
+      }
+      if (config.hasPath(EXECUTOR_MAX_TENANT_SERIES)) {
+        builder.maxTenantSeries(config.getInt(EXECUTOR_MAX_TENANT_SERIES));
+      }
+      if (config.hasPath(EXECUTOR_TENANT_WEIGHTS)) {
+        Config weights = config.getConfig(EXECUTOR_TENANT_WEIGHTS);
+        weights
+            .root()
+            .keySet()
+            .forEach(tenant -> builder.tenantWeight(tenant, weights.getInt(quoteString(tenant))));
+      }
+      return builder.build();
+    }
+
+    private static GrpcMethodLaneDefinition methodLaneFromConfig(String name, Config config) {
+      GrpcMethodLaneDefinition.GrpcMethodLaneDefinitionBuilder builder =
+          GrpcMethodLaneDefinition.builder().name(name).methods(config.getStringList(METHODS));
+      if (config.hasPath(EXECUTOR_TYPE)) {
+        builder.executor(executorFromConfig(config));
+      }
+      return builder.build();
+    }
+
+    private static GrpcConcurrencyLimitDefinition concurrencyLimitFromConfig(Config config) {
+      GrpcConcurrencyLimitDefinition.GrpcConcurrencyLimitDefinitionBuilder builder =
+          GrpcConcurrencyLimitDefinition.builder()
+              .enabled(!config.hasPath(ENABLED) || config.getBoolean(ENABLED));
+      if (config.hasPath(SCOPE)) {
+        builder.scope(
+            GrpcConcurrencyLimitDefinition.Scope.valueOf(config.getString(SCOPE).toUpperCase()));
+      }
+      if (config.hasPath(INITIAL_LIMIT)) {
+        builder.initialLimit(config.getInt(INITIAL_LIMIT));
+      }
+      if (config.hasPath(MIN_LIMIT)) {
+        builder.minLimit(config.getInt(MIN_LIMIT));
+      }
+      if (config.hasPath(MAX_LIMIT)) {
+        builder.maxLimit(config.getInt(MAX_LIMIT));
+      }
+      if (config.hasPath(RTT_TOLERANCE)) {
+        builder.rttTolerance(config.getDouble(RTT_TOLERANCE));
+      }
+      if (config.hasPath(SMOOTHING)) {
+        builder.smoothing(config.getDouble(SMOOTHING));
+      }
+      return builder.build();
+    }
+
+    private static GrpcResourceAccountingDefinition resourceAccountingFromConfig(Config config) {
+      GrpcResourceAccountingDefinition.GrpcResourceAccountingDefinitionBuilder builder =
+          GrpcResourceAccountingDefinition.builder()
+              .enabled(!config.hasPath(ENABLED) || config.getBoolean(ENABLED))
+              .perTenant(config.hasPath(PER_TENANT) && config.getBoolean(PER_TENANT));
+      if (config.hasPath(MAX_TENANT_SERIES)) {
+        builder.maxTenantSeries(config.getInt(MAX_TENANT_SERIES));
+      }
+      return builder.build();
+    }
+  }
 }
@@ -3,34 +3,40 @@ package org.hypertrace.core.serviceframework.grpc;
 import static io.grpc.Deadline.after;
 import static java.util.Objects.nonNull;
 import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
 import static java.util.concurrent.TimeUnit.SECONDS;
 
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
 import io.grpc.Server;
 import io.grpc.ServerBuilder;
-import io.grpc.Status;
-import io.grpc.health.v1.HealthCheckRequest;
+import io.grpc.ServerCallExecutorSupplier;
+import io.grpc.ServerServiceDefinition;
 import io.grpc.health.v1.HealthCheckResponse.ServingStatus;
-import io.grpc.health.v1.HealthGrpc;
-import io.grpc.health.v1.HealthGrpc.HealthBlockingStub;
 import io.grpc.inprocess.InProcessServerBuilder;
 import io.grpc.netty.NettyServerBuilder;
 import io.grpc.protobuf.services.HealthStatusManager;
-import io.micrometer.core.instrument.binder.grpc.MetricCollectingClientInterceptor;
-import io.micrometer.core.instrument.binder.grpc.MetricCollectingServerInterceptor;
 import java.io.IOException;
 import java.time.Duration;
-import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Function;
-import java.util.function.UnaryOperator;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import lombok.Value;
@@ -39,7 +45,6 @@ import org.hypertrace.core.grpcutils.client.GrpcRegistryConfig;
 import org.hypertrace.core.grpcutils.client.InProcessGrpcChannelRegistry;
 import org.hypertrace.core.grpcutils.client.TimeoutVerifyingClientInterceptor;
 import org.hypertrace.core.grpcutils.server.InterceptorUtil;
-import org.hypertrace.core.grpcutils.server.ServerManagementUtil;
 import org.hypertrace.core.serviceframework.PlatformService;
 import org.hypertrace.core.serviceframework.config.ConfigClient;
 import org.hypertrace.core.serviceframework.metrics.PlatformMetricsRegistry;
@@ -50,19 +55,29 @@ abstract class GrpcPlatformServiceContainer extends PlatformService {
 
   private List<ConstructedServer> servers = Collections.emptyList();
   private final List<PlatformPeriodicTaskDefinition> taskDefinitions = new LinkedList<>();
-  private final List<ScheduledFuture<?>> scheduledFutures = new LinkedList<>();
+  private final List<ManagedPeriodicTask> managedPeriodicTasks = new CopyOnWriteArrayList<>();
   private ScheduledExecutorService periodicTaskExecutor;
+  private ExecutorService periodicTaskWorkers;
+  private final List<ExecutorService> serverExecutors = new ArrayList<>();
+  private SharedEventLoopGroups eventLoopGroups;
 
   private final HealthStatusManager healthStatusManager = new HealthStatusManager();
   private InProcessGrpcChannelRegistry grpcChannelRegistry;
-  private HealthBlockingStub healthClient;
-  private static final String MAX_LATENCY_HISTOGRAM_BUCKET_DURATION =
-      "metrics.latency.bucket.max.duration";
-  private static final Duration DEFAULT_MAX_LATENCY_HISTOGRAM_BUCKET_DURATION =
-      Duration.ofSeconds(10);
-  private static final Duration DEFAULT_MIN_LATENCY_HISTOGRAM_BUCKET_DURATION =
-      Duration.ofMillis(10);
-  private static final int LATENCY_HISTOGRAM_BUCKET_FACTOR = 5;
+  private volatile GrpcHealthSnapshot healthSnapshot;
+  private final Map<String, GrpcInFlightCallsInterceptor> inFlightCalls =
+      new ConcurrentHashMap<>();
+  private GrpcMetricsInterceptor metricsInterceptor;
+  private static final String SERVER_CONFIG_PATH = "grpc.server";
+  private static final String OVERALL_HEALTH_SERVICE = "";
+  private static final String STARTUP_PARALLELISM_CONFIG = "grpc.startup.parallelism";
+  private static final String FACTORY_STARTUP_TIMER = "grpc.startup.factory.duration";
+  private static final String SERVER_STARTUP_TIMER = "grpc.startup.server.duration";
+  private static final String SERVER_DRAIN_TIMER = "grpc.server.drain.duration";
+  private static final String SHUTDOWN_PROPAGATION_DELAY = "grpc.shutdown.propagationDelay";
+  private static final String SHUTDOWN_DRAIN_TIMEOUT = "grpc.shutdown.drainTimeout";
+  private static final Duration DEFAULT_SHUTDOWN_DRAIN_TIMEOUT = Duration.ofSeconds(30);
+  private static final String SERVER_TAG = "server";
+  private static final String FACTORY_TAG = "factory";
 
   public GrpcPlatformServiceContainer(ConfigClient configClient) {
     super(configClient);
@@ -70,22 +85,68 @@ abstract class GrpcPlatformServiceContainer extends PlatformService {
 
   @Override
   protected void doInit() {
+    this.metricsInterceptor =
+        new GrpcMetricsInterceptor(
+            PlatformMetricsRegistry.getMeterRegistry(),
+            new GrpcLatencyBuckets(this.getAppConfig()));
     this.grpcChannelRegistry = this.buildChannelRegistry();
+    List<GrpcPlatformServerDefinition> serverDefinitions = this.getServerDefinitions();
+    if (!serverDefinitions.isEmpty()) {
+      this.eventLoopGroups = SharedEventLoopGroups.acquire(this.getAppConfig());
+    }
     Map<GrpcPlatformServerDefinition, ServerBuilder<?>> serverBuilderMap =
-        this.getServerDefinitions().stream()
-            .collect(Collectors.toUnmodifiableMap(Function.identity(), this::initializeBuilder));
+        serverDefinitions.stream()
+            .collect(
+                Collectors.toMap(
+                    Function.identity(),
+                    this::initializeBuilder,
+                    (first, second) -> {
+                      throw new IllegalArgumentException("Duplicate server definition: " + first);
+                    },
+                    LinkedHashMap::new));
+    ServerServiceDefinition healthService =
+        this.healthStatusManager.getHealthService().bindService();
     final ServerBuilder<?> inProcessServerBuilder =
         InProcessServerBuilder.forName(this.getInProcessServerName())
-            .intercept(
-                new MetricCollectingServerInterceptor(
-                    PlatformMetricsRegistry.getMeterRegistry(),
-                    UnaryOperator.identity(),
-                    timerBuilder ->
-                        timerBuilder.serviceLevelObjectives(generateLatencyHistogramBuckets()),
-                    Status.Code.OK))
-            .addService(this.healthStatusManager.getHealthService());
+            .addService(
+                this.isLeanInProcessServer()
+                    ? healthService
+                    : this.metricsInterceptor.instrument(
+                        healthService, this.getInProcessServerName()));
+    inProcessServerBuilder
+        .intercept(this.trackInFlightCalls(this.getInProcessServerName(), true))
+        .addStreamTracerFactory(this.metricsInterceptor.callTracerFactory());
+    GrpcCallRejections inProcessRejections = new GrpcCallRejections();
+    this.applyExecutor(
+        inProcessServerBuilder,
+        this.getInProcessServerName(),
+        this.getInProcessServerExecutor(),
+        inProcessRejections);
+    // Added last to run first, closing the calls rejected by the executor
+    inProcessServerBuilder.intercept(inProcessRejections);
     final GrpcServiceContainerEnvironment serviceContainerEnvironment =
         this.buildContainerEnvironment(this.grpcChannelRegistry, this.healthStatusManager);
+    // Factories may build concurrently, but their services are added in definition order
+    List<ServiceFactoryDefinition> factoryDefinitions =
+        serverDefinitions.stream()
+            .flatMap(
+                serverDefinition ->
+                    serverDefinition.getServiceFactories().stream()
+                        .map(factory -> new ServiceFactoryDefinition(serverDefinition, factory)))
+            .collect(Collectors.toUnmodifiableList());
+    List<Collection<GrpcPlatformService>> factoryServices =
+        GrpcStartupTasks.runAll(
+            factoryDefinitions,
+            this.getStartupParallelism(),
+            definition -> this.buildServices(definition, serviceContainerEnvironment));
+    Map<GrpcPlatformServerDefinition, List<GrpcPlatformService>> servicesByServer =
+        new HashMap<>();
+    for (int i = 0; i < factoryDefinitions.size(); i++) {
+      servicesByServer
+          .computeIfAbsent(
+              factoryDefinitions.get(i).getServerDefinition(), unused -> new ArrayList<>())
+          .addAll(factoryServices.get(i));
+    }
     List<ConstructedServer> providedServers =
         serverBuilderMap.entrySet().stream()
             .map(
@@ -94,7 +155,7 @@ abstract class GrpcPlatformServiceContainer extends PlatformService {
                         entry.getKey(),
                         entry.getValue(),
                         inProcessServerBuilder,
-                        serviceContainerEnvironment))
+                        servicesByServer.getOrDefault(entry.getKey(), List.of())))
             .collect(Collectors.toUnmodifiableList());
 
     // Servers are processed in order. We want in process to be the last to start (so health check
@@ -107,74 +168,135 @@ abstract class GrpcPlatformServiceContainer extends PlatformService {
                     new ConstructedServer(
                         this.getInProcessServerName(), inProcessServerBuilder.build())))
             .collect(Collectors.toUnmodifiableList());
-
-    this.healthClient =
-        HealthGrpc.newBlockingStub(this.grpcChannelRegistry.forName(this.getInProcessServerName()));
   }
 
   private ConstructedServer constructServer(
       GrpcPlatformServerDefinition serverDefinition,
       ServerBuilder<?> networkedBuilder,
       ServerBuilder<?> inProcessServerBuilder,
-      GrpcServiceContainerEnvironment containerEnvironment) {
+      List<GrpcPlatformService> services) {
     log.info(
         "Building server [{}] on port [{}]",
         serverDefinition.getName(),
         serverDefinition.getPort());
-    serverDefinition.getServiceFactories().stream()
-        .map(factory -> factory.buildServices(containerEnvironment))
-        .flatMap(Collection::stream)
+    services.stream()
         .map(GrpcPlatformService::getGrpcServiceDefinition)
         .map(InterceptorUtil::wrapInterceptors)
         .forEach(
             service -> {
+              // Instrumented once per server definition, the in-process calls share the same
+              // meters unless already recorded by the in-process clients
+              ServerServiceDefinition instrumentedService =
+                  this.metricsInterceptor.instrument(service, serverDefinition.getName());
               log.info(
                   "Adding service [{}] to server [{}]",
                   service.getServiceDescriptor().getName(),
                   serverDefinition.getName());
-              networkedBuilder.addService(service);
+              networkedBuilder.addService(instrumentedService);
               log.info(
                   "Adding service [{}] to in-process server [{}]",
                   service.getServiceDescriptor().getName(),
                   getInProcessServerName());
-              inProcessServerBuilder.addService(service);
+              inProcessServerBuilder.addService(
+                  this.isLeanInProcessServer() ? service : instrumentedService);
             });
 
     return new ConstructedServer(serverDefinition.getName(), networkedBuilder.build());
   }
 
+  private Collection<GrpcPlatformService> buildServices(
+      ServiceFactoryDefinition factoryDefinition,
+      GrpcServiceContainerEnvironment containerEnvironment) {
+    String serverName = factoryDefinition.getServerDefinition().getName();
+    String factoryName = factoryDefinition.getFactory().getClass().getSimpleName();
+    long startNanos = System.nanoTime();
+    Collection<GrpcPlatformService> services =
+        factoryDefinition.getFactory().buildServices(containerEnvironment);
+    Duration duration = Duration.ofNanos(System.nanoTime() - startNanos);
+    PlatformMetricsRegistry.registerTimer(
+            FACTORY_STARTUP_TIMER, Map.of(SERVER_TAG, serverName, FACTORY_TAG, factoryName))
+        .record(duration);
+    log.info(
+        "Built services of factory [{}] for server [{}] in {} ms",
+        factoryName,
+        serverName,
+        duration.toMillis());
+    return services;
+  }
+
   @Override
   protected void doStart() {
     log.info("Starting all services: [{}]", getServiceName());
     this.startManagedPeriodicTasks();
-    this.servers.forEach(this::startServer);
+    // The networked servers may bind concurrently, in-process is the last to start
+    GrpcStartupTasks.runAll(
+        this.servers.subList(0, this.servers.size() - 1),
+        this.getStartupParallelism(),
+        server -> {
+          this.startServer(server);
+          return server;
+        });
+    ConstructedServer inProcessServer = this.servers.get(this.servers.size() - 1);
+    this.startServer(inProcessServer);
+    this.watchHealth(inProcessServer.getServer());
     this.servers.forEach(this::awaitServerTermination);
   }
 
+  private void watchHealth(Server inProcessServer) {
+    GrpcHealthSnapshot snapshot =
+        new GrpcHealthSnapshot(this.grpcChannelRegistry.forName(this.getInProcessServerName()));
+    snapshot.watch(OVERALL_HEALTH_SERVICE);
+    inProcessServer.getServices().stream()
+        .map(service -> service.getServiceDescriptor().getName())
+        .distinct()
+        .forEach(snapshot::watch);
+    this.healthSnapshot = snapshot;
+  }
+
   private void startManagedPeriodicTasks() {
     this.periodicTaskExecutor = this.buildTaskExecutor(this.taskDefinitions.size());
+    if (this.periodicTaskExecutor instanceof ScheduledThreadPoolExecutor) {
+      // The timeouts of the runs are cancelled as they end, long before they are due
+      ((ScheduledThreadPoolExecutor) this.periodicTaskExecutor).setRemoveOnCancelPolicy(true);
+    }
+    this.periodicTaskWorkers = Executors.newCachedThreadPool(this.periodicTaskThreadFactory());
     this.taskDefinitions.forEach(this::startManagedPeriodicTask);
     this.taskDefinitions.clear();
   }
 
   private void startManagedPeriodicTask(PlatformPeriodicTaskDefinition taskDefinition) {
     log.info(
-        "Starting managed periodic task [{}] with an initial delay of {} and period of {}",
+        "Starting managed periodic task [{}] with an initial delay of {} and {} period of {}",
         taskDefinition.getName(),
         taskDefinition.getInitialDelay(),
+        taskDefinition.getSchedule(),
         taskDefinition.getPeriod());
-    this.scheduledFutures.add(
-        this.periodicTaskExecutor.scheduleAtFixedRate(
-            taskDefinition.getRunnable(),
-            taskDefinition.getInitialDelay().toMillis(),
-            taskDefinition.getPeriod().toMillis(),
-            MILLISECONDS));
+    ManagedPeriodicTask task =
+        new ManagedPeriodicTask(
+            taskDefinition, this.periodicTaskExecutor, this.periodicTaskWorkers);
+    this.managedPeriodicTasks.add(task);
+    task.start();
+  }
+
+  private ThreadFactory periodicTaskThreadFactory() {
+    AtomicInteger threadCount = new AtomicInteger();
+    return runnable -> {
+      Thread thread = new Thread(runnable, "periodic-task-" + threadCount.getAndIncrement());
+      thread.setDaemon(true);
+      return thread;
+    };
   }
 
   private void startServer(ConstructedServer constructedServer) {
     try {
       log.info("Starting server [{}]", constructedServer.getName());
+      long startNanos = System.nanoTime();
       constructedServer.getServer().start();
+      Duration duration = Duration.ofNanos(System.nanoTime() - startNanos);
+      PlatformMetricsRegistry.registerTimer(
+              SERVER_STARTUP_TIMER, Map.of(SERVER_TAG, constructedServer.getName()))
+          .record(duration);
+      log.info("Started server [{}] in {} ms", constructedServer.getName(), duration.toMillis());
     } catch (IOException e) {
       log.error("Fail to start the server.");
       throw new RuntimeException(e);
@@ -193,63 +315,185 @@ abstract class GrpcPlatformServiceContainer extends PlatformService {
   @Override
   protected void doStop() {
     healthStatusManager.enterTerminalState();
-    this.scheduledFutures.forEach(future -> future.cancel(true));
-    this.servers.forEach(
-        constructedServer ->
-            ServerManagementUtil.shutdownServer(
-                constructedServer.getServer(), constructedServer.getName(), after(30, SECONDS)));
+    if (nonNull(this.healthSnapshot)) {
+      // Only a started container was ever seen serving
+      this.awaitReadinessPropagation();
+    }
+    this.managedPeriodicTasks.forEach(ManagedPeriodicTask::cancel);
+    if (nonNull(this.periodicTaskExecutor)) {
+      // Drops the pending timeouts too, its threads would otherwise keep the JVM alive
+      this.periodicTaskExecutor.shutdownNow();
+    }
+    if (nonNull(this.periodicTaskWorkers)) {
+      this.periodicTaskWorkers.shutdown();
+    }
+    this.drainServers();
+    // Servers are terminated, or past their shutdown deadline, so no more calls get scheduled
+    this.serverExecutors.forEach(ExecutorService::shutdown);
+    if (nonNull(this.eventLoopGroups)) {
+      SharedEventLoopGroups.release(this.eventLoopGroups);
+      this.eventLoopGroups = null;
+    }
     if (nonNull(grpcChannelRegistry)) {
       grpcChannelRegistry.shutdown(after(10, SECONDS));
     }
   }
 
-  @Override
-  public boolean healthCheck() {
+  // Gives load balancers and probes the time to see the service not serving before it stops
+  // accepting calls
+  private void awaitReadinessPropagation() {
+    Duration propagationDelay = this.getShutdownDuration(SHUTDOWN_PROPAGATION_DELAY, Duration.ZERO);
+    if (propagationDelay.isZero()) {
+      return;
+    }
+    log.info("Waiting {} for the not serving status to propagate", propagationDelay);
+    try {
+      Thread.sleep(propagationDelay.toMillis());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * Sends GOAWAY on all the networked servers at once, then on the in-process server once they
+   * are drained, as their calls may still call it. All the servers share a single drain deadline,
+   * past which their remaining calls are cancelled.
+   */
+  private void drainServers() {
+    if (this.servers.isEmpty()) {
+      // Failed to initialize, nothing to drain
+      return;
+    }
+    Duration drainTimeout =
+        this.getShutdownDuration(SHUTDOWN_DRAIN_TIMEOUT, DEFAULT_SHUTDOWN_DRAIN_TIMEOUT);
+    long deadlineNanos = System.nanoTime() + drainTimeout.toNanos();
+    List<ConstructedServer> networkedServers = this.servers.subList(0, this.servers.size() - 1);
+    long drainStartNanos = System.nanoTime();
+    networkedServers.forEach(this::shutdownServer);
+    networkedServers.forEach(server -> this.awaitDrain(server, drainStartNanos, deadlineNanos));
+    ConstructedServer inProcessServer = this.servers.get(this.servers.size() - 1);
+    GrpcHealthSnapshot snapshot = this.healthSnapshot;
+    if (nonNull(snapshot)) {
+      // Its watches never end on their own, they would hold the in-process server until the
+      // deadline
+      snapshot.close();
+    }
+    long inProcessDrainStartNanos = System.nanoTime();
+    this.shutdownServer(inProcessServer);
+    this.awaitDrain(inProcessServer, inProcessDrainStartNanos, deadlineNanos);
+  }
+
+  private void shutdownServer(ConstructedServer constructedServer) {
+    GrpcInFlightCallsInterceptor inFlightCalls =
+        this.inFlightCalls.get(constructedServer.getName());
+    log.info(
+        "Shutting down server [{}] with {} calls in flight",
+        constructedServer.getName(),
+        nonNull(inFlightCalls) ? inFlightCalls.getInFlight() : 0);
+    constructedServer.getServer().shutdown();
+  }
+
+  private void awaitDrain(
+      ConstructedServer constructedServer, long drainStartNanos, long deadlineNanos) {
+    Server server = constructedServer.getServer();
     try {
-      return this.healthClient
-          .withDeadlineAfter(10, SECONDS)
-          .check(HealthCheckRequest.getDefaultInstance())
-          .getStatus()
-          .equals(ServingStatus.SERVING);
-    } catch (Exception e) {
-      log.error("Health check error", e);
-      return false;
+      long remainingNanos = Math.max(0, deadlineNanos - System.nanoTime());
+      if (!server.awaitTermination(remainingNanos, NANOSECONDS)) {
+        GrpcInFlightCallsInterceptor inFlightCalls =
+            this.inFlightCalls.get(constructedServer.getName());
+        log.warn(
+            "Server [{}] not drained before the shutdown deadline, cancelling {} calls in flight",
+            constructedServer.getName(),
+            nonNull(inFlightCalls) ? inFlightCalls.getInFlight() : 0);
+        server.shutdownNow();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      server.shutdownNow();
     }
+    Duration drainDuration = Duration.ofNanos(System.nanoTime() - drainStartNanos);
+    PlatformMetricsRegistry.registerTimer(
+            SERVER_DRAIN_TIMER, Map.of(SERVER_TAG, constructedServer.getName()))
+        .record(drainDuration);
+    log.info("Server [{}] drained in {} ms", constructedServer.getName(), drainDuration.toMillis());
+  }
+
+  private Duration getShutdownDuration(String path, Duration defaultDuration) {
+    return this.getAppConfig().hasPath(path)
+        ? this.getAppConfig().getDuration(path)
+        : defaultDuration;
+  }
+
+  @Override
+  public boolean healthCheck() {
+    return this.healthCheck(OVERALL_HEALTH_SERVICE).orElse(false);
   }
 
-  private Duration[] generateLatencyHistogramBuckets() {
-    ArrayList<Duration> histogramBuckets = new ArrayList<>();
-    Duration currDuration =
-        getAppConfig().hasPath(MAX_LATENCY_HISTOGRAM_BUCKET_DURATION)
-            ? getAppConfig().getDuration(MAX_LATENCY_HISTOGRAM_BUCKET_DURATION)
-            : DEFAULT_MAX_LATENCY_HISTOGRAM_BUCKET_DURATION;
-    while (currDuration.compareTo(DEFAULT_MIN_LATENCY_HISTOGRAM_BUCKET_DURATION) > 0) {
-      histogramBuckets.add(currDuration);
-      currDuration =
-          currDuration.dividedBy(LATENCY_HISTOGRAM_BUCKET_FACTOR).truncatedTo(ChronoUnit.MILLIS);
+  /**
+   * Health of one of the gRPC services of the container, as last reported to the health service.
+   * Answers from a snapshot kept up to date by the health service, without making any call.
+   */
+  @Override
+  public Optional<Boolean> healthCheck(String serviceName) {
+    GrpcHealthSnapshot snapshot = this.healthSnapshot;
+    if (snapshot == null) {
+      // Not started yet
+      return Optional.of(false);
     }
-    return histogramBuckets.toArray(new Duration[histogramBuckets.size()]);
+    return snapshot.getStatus(serviceName).map(ServingStatus.SERVING::equals);
   }
 
   protected InProcessGrpcChannelRegistry buildChannelRegistry() {
     return new InProcessGrpcChannelRegistry(
         this.getAuthorityInProcessOverrideMap(),
         GrpcRegistryConfig.builder()
-            .defaultInterceptor(
-                new MetricCollectingClientInterceptor(
-                    PlatformMetricsRegistry.getMeterRegistry(),
-                    UnaryOperator.identity(),
-                    timerBuilder ->
-                        timerBuilder.serviceLevelObjectives(generateLatencyHistogramBuckets()),
-                    Status.Code.OK))
+            .defaultInterceptor(this.metricsInterceptor)
             .defaultInterceptor(new TimeoutVerifyingClientInterceptor())
             .build());
   }
 
+  /**
+   * Options of the networked servers, to be applied with {@link
+   * GrpcPlatformServerDefinition.GrpcPlatformServerDefinitionBuilder#withConfig(Config)}. Empty
+   * when the service config has no "grpc.server" block.
+   */
+  protected Config getServerConfig() {
+    return this.getAppConfig().hasPath(SERVER_CONFIG_PATH)
+        ? this.getAppConfig().getConfig(SERVER_CONFIG_PATH)
+        : ConfigFactory.empty();
+  }
+
   protected String getInProcessServerName() {
     return this.getServiceName();
   }
 
+  /**
+   * Executor of the in-process server. Defaults to gRPC's default executor, override it to give
+   * in-process calls the same kind of executor as the networked servers.
+   */
+  protected GrpcServerExecutorDefinition getInProcessServerExecutor() {
+    return GrpcServerExecutorDefinition.DEFAULT;
+  }
+
+  /**
+   * Whether the in-process server leaves the call metrics to the in-process clients, which already
+   * record every call it receives, instead of recording them a second time.
+   */
+  protected boolean isLeanInProcessServer() {
+    return false;
+  }
+
+  /**
+   * Maximum number of service factories built, and of networked servers started, concurrently.
+   * Reads "grpc.startup.parallelism", defaulting to 1: factories share the container environment,
+   * so only raise it once all the factories of the service can build concurrently.
+   */
+  protected int getStartupParallelism() {
+    return this.getAppConfig().hasPath(STARTUP_PARALLELISM_CONFIG)
+        ? this.getAppConfig().getInt(STARTUP_PARALLELISM_CONFIG)
+        : 1;
+  }
+
   protected ScheduledExecutorService buildTaskExecutor(int taskCount) {
     // Between 1-4 threads
     return Executors.newScheduledThreadPool(Math.max(1, Math.min(taskCount, 4)));
@@ -278,7 +522,11 @@ abstract class GrpcPlatformServiceContainer extends PlatformService {
       InProcessGrpcChannelRegistry channelRegistry, HealthStatusManager healthStatusManager);
 
   private ServerBuilder<?> initializeBuilder(GrpcPlatformServerDefinition serverDefinition) {
-    NettyServerBuilder builder = NettyServerBuilder.forPort(serverDefinition.getPort());
+    NettyServerBuilder builder =
+        NettyServerBuilder.forPort(serverDefinition.getPort())
+            .bossEventLoopGroup(this.eventLoopGroups.getBossGroup())
+            .workerEventLoopGroup(this.eventLoopGroups.getWorkerGroup())
+            .channelType(this.eventLoopGroups.getChannelType());
 
     if (serverDefinition.getMaxInboundMessageSize() > 0) {
       builder.maxInboundMessageSize(serverDefinition.getMaxInboundMessageSize());
@@ -293,18 +541,163 @@ abstract class GrpcPlatformServiceContainer extends PlatformService {
       builder.maxConnectionAgeGrace(
           serverDefinition.getMaxConnectionAgeGrace().toMillis(), MILLISECONDS);
     }
-    // add micrometer-grpc interceptor to collect server metrics.
-    builder.intercept(
-        new MetricCollectingServerInterceptor(
-            PlatformMetricsRegistry.getMeterRegistry(),
-            UnaryOperator.identity(),
-            timerBuilder -> timerBuilder.serviceLevelObjectives(generateLatencyHistogramBuckets()),
-            Status.Code.OK));
-
+    int flowControlWindow =
+        serverDefinition.getFlowControlWindow() > 0
+            ? serverDefinition.getFlowControlWindow()
+            : NettyServerBuilder.DEFAULT_FLOW_CONTROL_WINDOW;
+    if (serverDefinition.isAdaptiveFlowControl()) {
+      builder.initialFlowControlWindow(flowControlWindow);
+    } else {
+      builder.flowControlWindow(flowControlWindow);
+    }
+    if (serverDefinition.getMaxConcurrentCallsPerConnection() > 0) {
+      builder.maxConcurrentCallsPerConnection(
+          serverDefinition.getMaxConcurrentCallsPerConnection());
+    }
+    if (!serverDefinition.getKeepAliveTime().isZero()) {
+      builder.keepAliveTime(serverDefinition.getKeepAliveTime().toMillis(), MILLISECONDS);
+    }
+    if (!serverDefinition.getKeepAliveTimeout().isZero()) {
+      builder.keepAliveTimeout(serverDefinition.getKeepAliveTimeout().toMillis(), MILLISECONDS);
+    }
+    if (!serverDefinition.getPermitKeepAliveTime().isZero()) {
+      builder.permitKeepAliveTime(
+          serverDefinition.getPermitKeepAliveTime().toMillis(), MILLISECONDS);
+    }
+    builder.permitKeepAliveWithoutCalls(serverDefinition.isPermitKeepAliveWithoutCalls());
+    if (serverDefinition.getMaxInboundMetadataSize() > 0) {
+      builder.maxInboundMetadataSize(serverDefinition.getMaxInboundMetadataSize());
+    }
+    // Added first to run last, accounting only for the handlers and the interceptors of services
+    if (serverDefinition.getResourceAccounting().isEnabled()) {
+      builder.intercept(
+          new GrpcResourceAccountingInterceptor(
+              PlatformMetricsRegistry.getMeterRegistry(),
+              serverDefinition.getResourceAccounting()));
+    }
     serverDefinition.getServerInterceptors().forEach(builder::intercept);
+    builder.intercept(this.trackInFlightCalls(serverDefinition.getName(), false));
+    builder.addStreamTracerFactory(this.metricsInterceptor.callTracerFactory());
+    // Added last to run first, rejecting calls before any other work is done for them
+    if (serverDefinition.getConcurrencyLimit().isEnabled()) {
+      builder.intercept(
+          new GrpcConcurrencyLimitInterceptor(
+              serverDefinition.getName(), serverDefinition.getConcurrencyLimit()));
+    }
+    GrpcCallRejections rejections = new GrpcCallRejections();
+    ServerCallExecutorSupplier executorSupplier =
+        this.applyExecutor(
+            builder, serverDefinition.getName(), serverDefinition.getExecutor(), rejections);
+    if (!serverDefinition.getMethodLanes().isEmpty()) {
+      this.applyMethodLanes(builder, serverDefinition, executorSupplier, rejections);
+    }
+    // Added last to run first, closing the calls rejected by the executors
+    builder.intercept(rejections);
     return builder;
   }
 
+  private GrpcInFlightCallsInterceptor trackInFlightCalls(String serverName, boolean inProcess) {
+    GrpcInFlightCallsInterceptor interceptor =
+        new GrpcInFlightCallsInterceptor(serverName, inProcess);
+    this.inFlightCalls.put(serverName, interceptor);
+    return interceptor;
+  }
+
+  /** Returns the call executor supplier installed on the builder, if any. */
+  private ServerCallExecutorSupplier applyExecutor(
+      ServerBuilder<?> builder,
+      String serverName,
+      GrpcServerExecutorDefinition executorDefinition,
+      GrpcCallRejections rejections) {
+    switch (executorDefinition.getType()) {
+      case DEFAULT:
+        return null;
+      case DIRECT:
+        log.info("Server [{}] runs its calls directly on the transport threads", serverName);
+        builder.directExecutor();
+        return null;
+      case TENANT_FAIR_QUEUE:
+        log.info("Server [{}] queues the calls of every tenant separately", serverName);
+        GrpcTenantFairQueueExecutor fairQueueExecutor =
+            new GrpcTenantFairQueueExecutor(serverName, executorDefinition, rejections);
+        this.serverExecutors.add(fairQueueExecutor);
+        // Calls are queued from the transport threads, rather than after a hop through the default
+        // executor
+        builder.directExecutor().callExecutor(fairQueueExecutor);
+        return fairQueueExecutor;
+      default:
+        ExecutorService executor = this.buildExecutor(serverName, executorDefinition);
+        ServerCallExecutorSupplier boundedSupplier =
+            this.boundQueue(serverName, executor, executorDefinition, rejections);
+        if (boundedSupplier == null) {
+          builder.executor(executor);
+        } else {
+          // Calls are admitted before queueing anything, from the transport threads
+          builder.directExecutor().callExecutor(boundedSupplier);
+        }
+        return boundedSupplier;
+    }
+  }
+
+  private void applyMethodLanes(
+      ServerBuilder<?> builder,
+      GrpcPlatformServerDefinition serverDefinition,
+      ServerCallExecutorSupplier serverExecutorSupplier,
+      GrpcCallRejections rejections) {
+    Map<GrpcMethodLaneDefinition, ServerCallExecutorSupplier> laneExecutors =
+        new LinkedHashMap<>();
+    for (GrpcMethodLaneDefinition lane : serverDefinition.getMethodLanes()) {
+      String laneName = serverDefinition.getName() + "-" + lane.getName();
+      log.info(
+          "Server [{}] runs methods {} in lane [{}]",
+          serverDefinition.getName(),
+          lane.getMethods(),
+          lane.getName());
+      if (lane.getExecutor().getType() == GrpcServerExecutorDefinition.Type.DIRECT) {
+        laneExecutors.put(lane, GrpcMethodLaneExecutorSupplier.always(Runnable::run));
+        continue;
+      }
+      ExecutorService executor = this.buildExecutor(laneName, lane.getExecutor());
+      ServerCallExecutorSupplier boundedSupplier =
+          this.boundQueue(laneName, executor, lane.getExecutor(), rejections);
+      laneExecutors.put(
+          lane,
+          boundedSupplier != null
+              ? boundedSupplier
+              : GrpcMethodLaneExecutorSupplier.always(executor));
+    }
+    // Replaces the supplier of the server executor, if any, falling back to it
+    builder.callExecutor(new GrpcMethodLaneExecutorSupplier(laneExecutors, serverExecutorSupplier));
+  }
+
+  /** Returns the supplier bounding the queue of the executor, if it is a bounded fixed pool. */
+  private ServerCallExecutorSupplier boundQueue(
+      String name,
+      ExecutorService executor,
+      GrpcServerExecutorDefinition executorDefinition,
+      GrpcCallRejections rejections) {
+    if (!(executor instanceof ThreadPoolExecutor) || executorDefinition.getMaxQueued() <= 0) {
+      return null;
+    }
+    return new GrpcBoundedQueueExecutorSupplier(
+        name, (ThreadPoolExecutor) executor, executorDefinition.getMaxQueued(), rejections);
+  }
+
+  private ExecutorService buildExecutor(
+      String name, GrpcServerExecutorDefinition executorDefinition) {
+    ExecutorService executor = GrpcServerExecutors.build(name, executorDefinition);
+    PlatformMetricsRegistry.monitorExecutorService(name + "-executor", executor, null);
+    this.serverExecutors.add(executor);
+    return executor;
+  }
+
+  @Value
+  private static class ServiceFactoryDefinition {
+
+    GrpcPlatformServerDefinition serverDefinition;
+    GrpcPlatformServiceFactory factory;
+  }
+
   @Value
   private static class ConstructedServer {
 
@@ -0,0 +1,23 @@
+package org.hypertrace.core.serviceframework.grpc;
+
+import lombok.Builder;
+import lombok.Value;
+
+/**
+ * Accounting of the CPU time and heap allocations of the unary calls of a server, sampled from the
+ * {@link java.lang.management.ThreadMXBean} around their handler callbacks. See {@link
+ * GrpcResourceAccountingInterceptor} for the metrics reported.
+ */
+@Value
+@Builder
+public class GrpcResourceAccountingDefinition {
+  public static final GrpcResourceAccountingDefinition DISABLED = builder().build();
+
+  boolean enabled;
+
+  /** Whether the usage is also broken down by tenant, as read from the "x-tenant-id" header. */
+  boolean perTenant;
+
+  /** Number of tenants reported with their own series, the others sharing the "other" tenant. */
+  @Builder.Default int maxTenantSeries = 50;
+}
@@ -0,0 +1,221 @@
+package org.hypertrace.core.serviceframework.grpc;
+
+import io.grpc.ForwardingServerCallListener.SimpleForwardingServerCallListener;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.MethodDescriptor.MethodType;
+import io.grpc.ServerCall;
+import io.grpc.ServerCallHandler;
+import io.grpc.ServerInterceptor;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Accounts for the CPU time and heap allocations of the unary calls of a server, per method and
+ * optionally per tenant, as configured by its {@link GrpcResourceAccountingDefinition}. The usage
+ * is summed over the handler callbacks of each call, on whatever thread they run, and reported as
+ * the "grpc.server.cpu.time" and "grpc.server.allocated.bytes" counters, and per call as the
+ * "grpc.server.call.cpu.time" and "grpc.server.call.allocated.bytes" distribution summaries.
+ *
+ * <p>Allocations are only accounted on JVMs exposing them through {@code
+ * com.sun.management.ThreadMXBean}, like HotSpot.
+ */
+class GrpcResourceAccountingInterceptor implements ServerInterceptor {
+  private static final ThreadMXBean THREAD_MX_BEAN = ManagementFactory.getThreadMXBean();
+  private static final boolean CPU_TIME_SUPPORTED =
+      THREAD_MX_BEAN.isCurrentThreadCpuTimeSupported() && THREAD_MX_BEAN.isThreadCpuTimeEnabled();
+  private static final com.sun.management.ThreadMXBean ALLOCATION_MX_BEAN =
+      allocationMxBean(THREAD_MX_BEAN);
+  private static final String CPU_TIME_COUNTER = "grpc.server.cpu.time";
+  private static final String ALLOCATED_BYTES_COUNTER = "grpc.server.allocated.bytes";
+  private static final String CALL_CPU_TIME_SUMMARY = "grpc.server.call.cpu.time";
+  private static final String CALL_ALLOCATED_BYTES_SUMMARY = "grpc.server.call.allocated.bytes";
+  private static final double NANOS_PER_SECOND = 1e9;
+
+  private final MeterRegistry meterRegistry;
+  private final GrpcResourceAccountingDefinition definition;
+  private final ConcurrentMap<String, MethodUsage> methodUsages = new ConcurrentHashMap<>();
+  private final GrpcTenantTags tenantTags;
+
+  GrpcResourceAccountingInterceptor(
+      MeterRegistry meterRegistry, GrpcResourceAccountingDefinition definition) {
+    this.meterRegistry = meterRegistry;
+    this.definition = definition;
+    this.tenantTags = new GrpcTenantTags(definition.getMaxTenantSeries());
+  }
+
+  @Override
+  public <ReqT, RespT> ServerCall.Listener<ReqT> interceptCall(
+      ServerCall<ReqT, RespT> call, Metadata headers, ServerCallHandler<ReqT, RespT> next) {
+    MethodDescriptor<ReqT, RespT> method = call.getMethodDescriptor();
+    if (method.getType() != MethodType.UNARY) {
+      return next.startCall(call, headers);
+    }
+    UsageMeters meters =
+        this.methodUsages
+            .computeIfAbsent(method.getFullMethodName(), unused -> new MethodUsage(method))
+            .metersFor(headers);
+    CallUsage usage = new CallUsage();
+    long[] sample = usage.enter();
+    ServerCall.Listener<ReqT> listener;
+    try {
+      listener = next.startCall(call, headers);
+    } finally {
+      usage.exit(sample);
+    }
+    return new SimpleForwardingServerCallListener<>(listener) {
+      @Override
+      public void onMessage(ReqT message) {
+        long[] sample = usage.enter();
+        try {
+          super.onMessage(message);
+        } finally {
+          usage.exit(sample);
+        }
+      }
+
+      @Override
+      public void onHalfClose() {
+        long[] sample = usage.enter();
+        try {
+          super.onHalfClose();
+        } finally {
+          usage.exit(sample);
+        }
+      }
+
+      @Override
+      public void onCancel() {
+        long[] sample = usage.enter();
+        try {
+          super.onCancel();
+        } finally {
+          usage.exit(sample);
+          meters.record(usage);
+        }
+      }
+
+      @Override
+      public void onComplete() {
+        long[] sample = usage.enter();
+        try {
+          super.onComplete();
+        } finally {
+          usage.exit(sample);
+          meters.record(usage);
+        }
+      }
+    };
+  }
+
+  private static com.sun.management.ThreadMXBean allocationMxBean(ThreadMXBean threadMxBean) {
+    if (threadMxBean instanceof com.sun.management.ThreadMXBean) {
+      com.sun.management.ThreadMXBean allocationMxBean =
+          (com.sun.management.ThreadMXBean) threadMxBean;
+      if (allocationMxBean.isThreadAllocatedMemorySupported()
+          && allocationMxBean.isThreadAllocatedMemoryEnabled()) {
+        return allocationMxBean;
+      }
+    }
+    return null;
+  }
+
+  /** Usage of a call, summed over its callbacks, which never run concurrently. */
+  private static final class CallUsage {
+    private long cpuNanos;
+    private long allocatedBytes;
+
+    long[] enter() {
+      return new long[] {currentThreadCpuTime(), currentThreadAllocatedBytes()};
+    }
+
+    void exit(long[] sample) {
+      this.cpuNanos += currentThreadCpuTime() - sample[0];
+      this.allocatedBytes += currentThreadAllocatedBytes() - sample[1];
+    }
+
+    private static long currentThreadCpuTime() {
+      return CPU_TIME_SUPPORTED ? THREAD_MX_BEAN.getCurrentThreadCpuTime() : 0;
+    }
+
+    private static long currentThreadAllocatedBytes() {
+      return ALLOCATION_MX_BEAN != null
+          ? ALLOCATION_MX_BEAN.getThreadAllocatedBytes(Thread.currentThread().getId())
+          : 0;
+    }
+  }
+
+  private final class MethodUsage {
+    private final Tags tags;
+    private final UsageMeters meters;
+    // By tenant tag
+    private final ConcurrentMap<String, UsageMeters> tenantMeters = new ConcurrentHashMap<>();
+
+    MethodUsage(MethodDescriptor<?, ?> method) {
+      this.tags =
+          Tags.of(
+              "service",
+              String.valueOf(method.getServiceName()),
+              "method",
+              String.valueOf(method.getBareMethodName()));
+      this.meters = definition.isPerTenant() ? null : new UsageMeters(meterRegistry, this.tags);
+    }
+
+    UsageMeters metersFor(Metadata headers) {
+      if (this.meters != null) {
+        return this.meters;
+      }
+      return this.tenantMeters.computeIfAbsent(
+          tenantTags.tagFor(GrpcTenantTags.tenantOf(headers)),
+          tag -> new UsageMeters(meterRegistry, this.tags.and("tenant", tag)));
+    }
+  }
+
+  private static final class UsageMeters {
+    private final Counter cpuTime;
+    private final Counter allocatedBytes;
+    private final DistributionSummary callCpuTime;
+    private final DistributionSummary callAllocatedBytes;
+
+    UsageMeters(MeterRegistry meterRegistry, Tags tags) {
+      this.cpuTime =
+          Counter.builder(CPU_TIME_COUNTER)
+              .description("The CPU time spent handling calls")
+              .baseUnit("seconds")
+              .tags(tags)
+              .register(meterRegistry);
+      this.allocatedBytes =
+          Counter.builder(ALLOCATED_BYTES_COUNTER)
+              .description("The heap memory allocated handling calls")
+              .baseUnit("bytes")
+              .tags(tags)
+              .register(meterRegistry);
+      this.callCpuTime =
+          DistributionSummary.builder(CALL_CPU_TIME_SUMMARY)
+              .description("The CPU time spent handling a call")
+              .baseUnit("seconds")
+              .tags(tags)
+              .register(meterRegistry);
+      this.callAllocatedBytes =
+          DistributionSummary.builder(CALL_ALLOCATED_BYTES_SUMMARY)
+              .description("The heap memory allocated handling a call")
+              .baseUnit("bytes")
+              .tags(tags)
+              .register(meterRegistry);
+    }
+
+    void record(CallUsage usage) {
+      double cpuSeconds = usage.cpuNanos / NANOS_PER_SECOND;
+      this.cpuTime.increment(cpuSeconds);
+      this.callCpuTime.record(cpuSeconds);
+      this.allocatedBytes.increment(usage.allocatedBytes);
+      this.callAllocatedBytes.record(usage.allocatedBytes);
+    }
+  }
+}
@@ -0,0 +1,70 @@
+package org.hypertrace.core.serviceframework.grpc;
+
+import java.util.Map;
+import lombok.Builder;
+import lombok.Singular;
+import lombok.Value;
+
+/**
+ * Executor running the calls of a gRPC server. Unless {@link Type#DEFAULT}, executors are created
+ * for their server when it is built, reported through the platform metrics registry and shut down
+ * with the server.
+ */
+@Value
+@Builder
+public class GrpcServerExecutorDefinition {
+  public static final GrpcServerExecutorDefinition DEFAULT = builder().build();
+
+  public enum Type {
+    /** gRPC's default executor, an unbounded cached thread pool shared by all the servers. */
+    DEFAULT,
+    /**
+     * A fixed number of threads, with the calls beyond it queued, up to {@link #getMaxQueued()}.
+     */
+    FIXED,
+    /** A work-stealing {@link java.util.concurrent.ForkJoinPool}, in async mode. */
+    FORK_JOIN,
+    /**
+     * A new virtual thread per call, which requires running on Java 21 or later. Rejected when
+     * read from the config of an older JDK, and built as a {@link #FIXED} pool otherwise.
+     */
+    VIRTUAL_THREAD,
+    /**
+     * Calls run on the transport threads. Only for services that never block, as any blocking
+     * stalls all the calls of the connection.
+     */
+    DIRECT,
+    /**
+     * A fixed number of threads serving the calls of every tenant in turn, from a bounded queue per
+     * tenant. See {@link GrpcTenantFairQueueExecutor}.
+     */
+    TENANT_FAIR_QUEUE
+  }
+
+  @Builder.Default Type type = Type.DEFAULT;
+
+  /**
+   * Number of threads of a {@link Type#FIXED} or {@link Type#TENANT_FAIR_QUEUE} pool, or
+   * parallelism of a {@link Type#FORK_JOIN} pool. Defaults to the number of available processors
+   * when not positive.
+   */
+  int threads;
+
+  /**
+   * Queued tasks of a {@link Type#FIXED} pool past which new calls are rejected with {@code
+   * RESOURCE_EXHAUSTED}. Not positive for an unbounded queue.
+   */
+  @Builder.Default int maxQueued = 1000;
+
+  /** Queued tasks of a tenant past which its new calls are rejected, for tenant fair queueing. */
+  @Builder.Default int maxQueuedPerTenant = 1000;
+
+  /** Number of tenants reported with their own queue metrics, for tenant fair queueing. */
+  @Builder.Default int maxTenantSeries = 50;
+
+  /**
+   * Number of tasks run for a tenant in each turn, for tenant fair queueing. Tenants without a
+   * weight have a weight of 1.
+   */
+  @Singular Map<String, Integer> tenantWeights;
+}
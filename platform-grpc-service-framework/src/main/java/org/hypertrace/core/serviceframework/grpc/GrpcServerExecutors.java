@@ -0,0 +1,100 @@
+package org.hypertrace.core.serviceframework.grpc;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicInteger;
+import lombok.extern.slf4j.Slf4j;
+
+@Slf4j
+final class GrpcServerExecutors {
+
+  private GrpcServerExecutors() {}
+
+  /**
+   * Builds the executor of the given server, for the definition types backed by an executor
+   * service: {@link GrpcServerExecutorDefinition.Type#FIXED}, {@link
+   * GrpcServerExecutorDefinition.Type#FORK_JOIN} and {@link
+   * GrpcServerExecutorDefinition.Type#VIRTUAL_THREAD}. Virtual threads fall back to a fixed pool
+   * on JDKs without them.
+   *
+   * <p>Fixed pools are {@link ThreadPoolExecutor}s with an unbounded queue, their queue being
+   * bounded when admitting calls, by {@link GrpcBoundedQueueExecutorSupplier}.
+   */
+  static ExecutorService build(String serverName, GrpcServerExecutorDefinition definition) {
+    int threads =
+        definition.getThreads() > 0
+            ? definition.getThreads()
+            : Runtime.getRuntime().availableProcessors();
+    switch (definition.getType()) {
+      case FIXED:
+        log.info("Building a fixed executor of {} threads for server [{}]", threads, serverName);
+        return newFixedExecutor(serverName, threads);
+      case FORK_JOIN:
+        log.info(
+            "Building a fork join executor of {} threads for server [{}]", threads, serverName);
+        return new ForkJoinPool(threads, forkJoinThreadFactory(serverName), null, true);
+      case VIRTUAL_THREAD:
+        if (!virtualThreadsSupported()) {
+          log.warn(
+              "Virtual threads require Java 21 or later, building a fixed executor of {} threads"
+                  + " for server [{}] instead",
+              threads,
+              serverName);
+          return newFixedExecutor(serverName, threads);
+        }
+        log.info("Building a virtual thread per call executor for server [{}]", serverName);
+        return newVirtualThreadPerTaskExecutor();
+      default:
+        throw new IllegalArgumentException(
+            "No executor service to build for executor type " + definition.getType());
+    }
+  }
+
+  /** Whether the running JDK has virtual threads, i.e. is Java 21 or later. */
+  static boolean virtualThreadsSupported() {
+    return Runtime.version().feature() >= 21;
+  }
+
+  private static ThreadPoolExecutor newFixedExecutor(String serverName, int threads) {
+    return new ThreadPoolExecutor(
+        threads, threads, 0, MILLISECONDS, new LinkedBlockingQueue<>(), threadFactory(serverName));
+  }
+
+  static ThreadFactory threadFactory(String serverName) {
+    AtomicInteger threadCount = new AtomicInteger();
+    return runnable -> {
+      Thread thread =
+          new Thread(runnable, serverName + "-executor-" + threadCount.getAndIncrement());
+      thread.setDaemon(true);
+      return thread;
+    };
+  }
+
+  private static ForkJoinPool.ForkJoinWorkerThreadFactory forkJoinThreadFactory(
+      String serverName) {
+    return pool -> {
+      ForkJoinWorkerThread thread =
+          ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+      thread.setName(serverName + "-executor-" + thread.getPoolIndex());
+      return thread;
+    };
+  }
+
+  static ExecutorService newVirtualThreadPerTaskExecutor() {
+    try {
+      // Looked up reflectively, so that the framework keeps building and running on older JDKs
+      return (ExecutorService)
+          Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+    } catch (ReflectiveOperationException e) {
+      throw new UnsupportedOperationException(
+          "Virtual thread executors require Java 21 or later", e);
+    }
+  }
+}
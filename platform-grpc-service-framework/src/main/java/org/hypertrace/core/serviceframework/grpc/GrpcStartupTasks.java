@@ -0,0 +1,69 @@
+package org.hypertrace.core.serviceframework.grpc;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/** Runs the startup work of a container, like building services, on a bounded pool. */
+final class GrpcStartupTasks {
+  private static final String THREAD_NAME_PREFIX = "grpc-startup-";
+
+  private GrpcStartupTasks() {}
+
+  /**
+   * Applies the task to all the inputs, at most {@code parallelism} at a time, and returns the
+   * results in the order of the inputs. The first failure, in input order, is rethrown once all
+   * the tasks are over.
+   */
+  static <T, R> List<R> runAll(List<T> inputs, int parallelism, Function<T, R> task) {
+    int threads = Math.min(inputs.size(), parallelism);
+    if (threads <= 1) {
+      return inputs.stream().map(task).collect(Collectors.toUnmodifiableList());
+    }
+    ExecutorService executor = Executors.newFixedThreadPool(threads, threadFactory());
+    try {
+      List<Future<R>> futures = new ArrayList<>(inputs.size());
+      inputs.forEach(input -> futures.add(executor.submit(() -> task.apply(input))));
+      executor.shutdown();
+      List<R> results = new ArrayList<>(inputs.size());
+      RuntimeException failure = null;
+      for (Future<R> future : futures) {
+        try {
+          results.add(future.get());
+        } catch (ExecutionException e) {
+          if (failure == null) {
+            failure =
+                e.getCause() instanceof RuntimeException
+                    ? (RuntimeException) e.getCause()
+                    : new RuntimeException(e.getCause());
+          }
+        }
+      }
+      if (failure != null) {
+        throw failure;
+      }
+      return results;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException(e);
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  private static ThreadFactory threadFactory() {
+    AtomicInteger threadCount = new AtomicInteger();
+    return runnable -> {
+      Thread thread = new Thread(runnable, THREAD_NAME_PREFIX + threadCount.getAndIncrement());
+      thread.setDaemon(true);
+      return thread;
+    };
+  }
+}
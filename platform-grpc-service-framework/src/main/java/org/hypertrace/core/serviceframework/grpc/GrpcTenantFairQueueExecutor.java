@@ -0,0 +1,265 @@
+package org.hypertrace.core.serviceframework.grpc;
+
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+import io.grpc.Metadata;
+import io.grpc.ServerCall;
+import io.grpc.ServerCallExecutorSupplier;
+import io.grpc.Status;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Timer;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import lombok.extern.slf4j.Slf4j;
+import org.hypertrace.core.serviceframework.metrics.PlatformMetricsRegistry;
+
+/**
+ * Executor of {@link GrpcServerExecutorDefinition.Type#TENANT_FAIR_QUEUE} servers. The work of
+ * every call is queued per tenant, as read from the "x-tenant-id" header, and the worker threads
+ * serve the tenants with queued work in turn, taking as many tasks from each as its weight. A new
+ * call of a tenant whose queue is full is rejected with {@code RESOURCE_EXHAUSTED}.
+ *
+ * <p>It is the {@link ServerCallExecutorSupplier} of the server, picking the queue of each call,
+ * and leaves closing the calls it rejects to the server's {@link GrpcCallRejections}.
+ *
+ * <p>Queue depth, wait time and rejections are reported as "grpc.server.tenant.queue.*" metrics
+ * tagged with the server and tenant names. Past {@link
+ * GrpcServerExecutorDefinition#getMaxTenantSeries()} tenants, the others share the "other" tenant
+ * tag.
+ */
+@Slf4j
+class GrpcTenantFairQueueExecutor extends AbstractExecutorService
+    implements ServerCallExecutorSupplier {
+  private static final String QUEUE_DEPTH_GAUGE = "grpc.server.tenant.queue.depth";
+  private static final String QUEUE_WAIT_TIMER = "grpc.server.tenant.queue.wait";
+  private static final String REJECTED_COUNTER = "grpc.server.tenant.queue.rejected";
+  private static final Status QUEUE_FULL =
+      Status.RESOURCE_EXHAUSTED.withDescription("Too many queued calls for the tenant");
+
+  private final String serverName;
+  private final GrpcServerExecutorDefinition definition;
+  private final GrpcCallRejections rejections;
+  private final GrpcTenantTags tenantTags;
+  private final ExecutorService workers;
+  private final ReentrantLock lock = new ReentrantLock();
+  private final Condition notEmpty = this.lock.newCondition();
+  // Guarded by the lock
+  private final Map<String, TenantQueue> queues = new HashMap<>();
+  // Tenants with queued tasks, in serving order. Guarded by the lock
+  private final ArrayDeque<TenantQueue> activeQueues = new ArrayDeque<>();
+  // By tenant tag
+  private final ConcurrentMap<String, TenantMetrics> tenantMetrics = new ConcurrentHashMap<>();
+  private volatile boolean shutdown;
+
+  GrpcTenantFairQueueExecutor(
+      String serverName, GrpcServerExecutorDefinition definition, GrpcCallRejections rejections) {
+    this.serverName = serverName;
+    this.definition = definition;
+    this.rejections = rejections;
+    this.tenantTags = new GrpcTenantTags(definition.getMaxTenantSeries());
+    int threads =
+        definition.getThreads() > 0
+            ? definition.getThreads()
+            : Runtime.getRuntime().availableProcessors();
+    this.workers =
+        Executors.newFixedThreadPool(threads, GrpcServerExecutors.threadFactory(serverName));
+    for (int i = 0; i < threads; i++) {
+      this.workers.execute(this::work);
+    }
+  }
+
+  @Override
+  public <ReqT, RespT> Executor getExecutor(ServerCall<ReqT, RespT> call, Metadata metadata) {
+    String tenant = GrpcTenantTags.tenantOf(metadata);
+    if (this.queuedTasks(tenant) >= this.definition.getMaxQueuedPerTenant()) {
+      this.metricsFor(tenant).rejected.increment();
+      return this.rejections.reject(call, QUEUE_FULL);
+    }
+    return task -> this.enqueue(tenant, task);
+  }
+
+  /** Runs the task as part of the calls without tenant. */
+  @Override
+  public void execute(Runnable command) {
+    this.enqueue(GrpcTenantTags.NO_TENANT, command);
+  }
+
+  @Override
+  public void shutdown() {
+    this.shutdown = true;
+    this.lock.lock();
+    try {
+      this.notEmpty.signalAll();
+    } finally {
+      this.lock.unlock();
+    }
+    this.workers.shutdown();
+  }
+
+  @Override
+  public List<Runnable> shutdownNow() {
+    this.shutdown();
+    this.workers.shutdownNow();
+    return List.of();
+  }
+
+  @Override
+  public boolean isShutdown() {
+    return this.shutdown;
+  }
+
+  @Override
+  public boolean isTerminated() {
+    return this.workers.isTerminated();
+  }
+
+  @Override
+  public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+    return this.workers.awaitTermination(timeout, unit);
+  }
+
+  private int queuedTasks(String tenant) {
+    this.lock.lock();
+    try {
+      TenantQueue queue = this.queues.get(tenant);
+      return queue == null ? 0 : queue.tasks.size();
+    } finally {
+      this.lock.unlock();
+    }
+  }
+
+  private void enqueue(String tenant, Runnable task) {
+    if (this.shutdown) {
+      throw new RejectedExecutionException("Executor of server " + this.serverName + " shut down");
+    }
+    TenantMetrics metrics = this.metricsFor(tenant);
+    this.lock.lock();
+    try {
+      TenantQueue queue = this.queues.computeIfAbsent(tenant, this::newQueue);
+      queue.tasks.add(new QueuedTask(task, System.nanoTime(), metrics));
+      metrics.depth.incrementAndGet();
+      if (queue.tasks.size() == 1) {
+        this.activeQueues.add(queue);
+        this.notEmpty.signal();
+      }
+    } finally {
+      this.lock.unlock();
+    }
+  }
+
+  private QueuedTask take() throws InterruptedException {
+    this.lock.lock();
+    try {
+      while (this.activeQueues.isEmpty()) {
+        if (this.shutdown) {
+          return null;
+        }
+        this.notEmpty.await();
+      }
+      TenantQueue queue = this.activeQueues.peekFirst();
+      QueuedTask task = queue.tasks.poll();
+      if (queue.tasks.isEmpty()) {
+        // Idle tenants don't keep a queue, nor any credit
+        this.activeQueues.pollFirst();
+        this.queues.remove(queue.tenant);
+      } else if (--queue.credit == 0) {
+        queue.credit = queue.weight;
+        this.activeQueues.addLast(this.activeQueues.pollFirst());
+      }
+      return task;
+    } finally {
+      this.lock.unlock();
+    }
+  }
+
+  private void work() {
+    try {
+      QueuedTask task;
+      while ((task = this.take()) != null) {
+        task.metrics.depth.decrementAndGet();
+        task.metrics.wait.record(System.nanoTime() - task.enqueuedNanos, NANOSECONDS);
+        try {
+          task.runnable.run();
+        } catch (RuntimeException e) {
+          log.error("Uncaught exception running a call of server [{}]", this.serverName, e);
+        } catch (Error e) {
+          log.error("Uncaught error running a call of server [{}]", this.serverName, e);
+          // The error ends this thread, another one takes over the loop
+          this.resumeWork();
+          throw e;
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private void resumeWork() {
+    try {
+      this.workers.execute(this::work);
+    } catch (RejectedExecutionException e) {
+      // Shut down meanwhile
+    }
+  }
+
+  private TenantQueue newQueue(String tenant) {
+    return new TenantQueue(tenant, this.definition.getTenantWeights().getOrDefault(tenant, 1));
+  }
+
+  private TenantMetrics metricsFor(String tenant) {
+    return this.tenantMetrics.computeIfAbsent(
+        this.tenantTags.tagFor(tenant), tag -> new TenantMetrics(this.serverName, tag));
+  }
+
+  private static final class TenantQueue {
+    private final String tenant;
+    private final int weight;
+    private final ArrayDeque<QueuedTask> tasks = new ArrayDeque<>();
+    private int credit;
+
+    TenantQueue(String tenant, int weight) {
+      this.tenant = tenant;
+      this.weight = Math.max(1, weight);
+      this.credit = this.weight;
+    }
+  }
+
+  private static final class QueuedTask {
+    private final Runnable runnable;
+    private final long enqueuedNanos;
+    private final TenantMetrics metrics;
+
+    QueuedTask(Runnable runnable, long enqueuedNanos, TenantMetrics metrics) {
+      this.runnable = runnable;
+      this.enqueuedNanos = enqueuedNanos;
+      this.metrics = metrics;
+    }
+  }
+
+  private static final class TenantMetrics {
+    private final AtomicInteger depth;
+    private final Timer wait;
+    private final Counter rejected;
+
+    TenantMetrics(String serverName, String tenant) {
+      Map<String, String> tags = Map.of("server", serverName, "tenant", tenant);
+      this.depth =
+          PlatformMetricsRegistry.registerGauge(QUEUE_DEPTH_GAUGE, tags, new AtomicInteger());
+      this.wait = PlatformMetricsRegistry.registerTimer(QUEUE_WAIT_TIMER, tags);
+      this.rejected = PlatformMetricsRegistry.registerCounter(REJECTED_COUNTER, tags);
+    }
+  }
+}
@@ -0,0 +1,48 @@
+package org.hypertrace.core.serviceframework.grpc;
+
+import io.grpc.Metadata;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Tenant tag values of the metrics of a server, as read from the "x-tenant-id" header of its calls.
+ * The first tenants seen keep a tag of their own, up to the given maximum, and the later ones share
+ * the "other" tag, so that meters can be kept per tag without growing with the tenants. Calls
+ * without tenant are tagged "none".
+ */
+final class GrpcTenantTags {
+  static final Metadata.Key<String> TENANT_ID_KEY =
+      Metadata.Key.of("x-tenant-id", Metadata.ASCII_STRING_MARSHALLER);
+  static final String NO_TENANT = "none";
+  static final String OTHER_TENANTS = "other";
+
+  private final int maxTenants;
+  private final Set<String> tenants = ConcurrentHashMap.newKeySet();
+
+  GrpcTenantTags(int maxTenants) {
+    this.maxTenants = maxTenants;
+  }
+
+  /** Returns the tenant of the call with the given headers, "none" without any. */
+  static String tenantOf(Metadata headers) {
+    String tenantId = headers.get(TENANT_ID_KEY);
+    return tenantId == null ? NO_TENANT : tenantId;
+  }
+
+  /** Returns the tag of the given tenant. */
+  String tagFor(String tenant) {
+    if (this.tenants.contains(tenant)) {
+      return tenant;
+    }
+    if (this.tenants.size() >= this.maxTenants) {
+      return OTHER_TENANTS;
+    }
+    synchronized (this) {
+      if (this.tenants.contains(tenant) || this.tenants.size() < this.maxTenants) {
+        this.tenants.add(tenant);
+        return tenant;
+      }
+    }
+    return OTHER_TENANTS;
+  }
+}
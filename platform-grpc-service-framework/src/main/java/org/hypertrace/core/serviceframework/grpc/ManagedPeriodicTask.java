@@ -0,0 +1,216 @@
+package org.hypertrace.core.serviceframework.grpc;
+
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Timer;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicReference;
+import lombok.extern.slf4j.Slf4j;
+import org.hypertrace.core.serviceframework.grpc.PlatformPeriodicTaskDefinition.Schedule;
+import org.hypertrace.core.serviceframework.metrics.PlatformMetricsRegistry;
+
+/**
+ * Schedules the runs of a {@link PlatformPeriodicTaskDefinition}. The scheduler only triggers the
+ * runs and enforces their timeout, the runs themselves execute on the worker executor.
+ */
+@Slf4j
+class ManagedPeriodicTask {
+  private static final String RUN_DURATION_TIMER = "periodic.task.run.duration";
+  private static final String LAG_TIMER = "periodic.task.lag";
+  private static final String FAILURES_COUNTER = "periodic.task.failures";
+  private static final String OVERRUNS_COUNTER = "periodic.task.overruns";
+  private static final String SKIPPED_COUNTER = "periodic.task.skipped";
+  private static final String TIMEOUTS_COUNTER = "periodic.task.timeouts";
+  private static final String TASK_TAG = "task";
+  private static final Future<?> RUN_OVER = CompletableFuture.completedFuture(null);
+
+  private final PlatformPeriodicTaskDefinition definition;
+  private final ScheduledExecutorService scheduler;
+  private final ExecutorService workers;
+  private final boolean ownsWorkers;
+  private final long periodNanos;
+  private final Timer runDuration;
+  private final Timer lag;
+  private final Counter failures;
+  private final Counter overruns;
+  private final Counter skipped;
+  private final Counter timeouts;
+  private volatile long nextRunNanos;
+  // Whether a run is submitted and not over yet, and the fixed-rate runs delayed meanwhile.
+  // Guarded by this
+  private boolean running;
+  private int delayedRuns;
+  private long delayedRunNanos;
+  private volatile Future<?> trigger;
+  private volatile Future<?> currentRun;
+  private volatile boolean cancelled;
+
+  ManagedPeriodicTask(
+      PlatformPeriodicTaskDefinition definition,
+      ScheduledExecutorService scheduler,
+      ExecutorService platformThreadWorkers) {
+    this.definition = definition;
+    this.scheduler = scheduler;
+    this.ownsWorkers = definition.isVirtualThreads();
+    this.workers =
+        this.ownsWorkers
+            ? GrpcServerExecutors.newVirtualThreadPerTaskExecutor()
+            : platformThreadWorkers;
+    this.periodNanos = definition.getPeriod().toNanos();
+    Map<String, String> tags = Map.of(TASK_TAG, definition.getName());
+    this.runDuration = PlatformMetricsRegistry.registerTimer(RUN_DURATION_TIMER, tags);
+    this.lag = PlatformMetricsRegistry.registerTimer(LAG_TIMER, tags);
+    this.failures = PlatformMetricsRegistry.registerCounter(FAILURES_COUNTER, tags);
+    this.overruns = PlatformMetricsRegistry.registerCounter(OVERRUNS_COUNTER, tags);
+    this.skipped = PlatformMetricsRegistry.registerCounter(SKIPPED_COUNTER, tags);
+    this.timeouts = PlatformMetricsRegistry.registerCounter(TIMEOUTS_COUNTER, tags);
+  }
+
+  void start() {
+    long delayNanos = this.definition.getInitialDelay().toNanos();
+    long jitterNanos = this.definition.getStartJitter().toNanos();
+    if (jitterNanos > 0) {
+      delayNanos += ThreadLocalRandom.current().nextLong(jitterNanos);
+    }
+    this.nextRunNanos = System.nanoTime() + delayNanos;
+    this.trigger =
+        this.definition.getSchedule() == Schedule.FIXED_RATE
+            ? this.scheduler.scheduleAtFixedRate(
+                this::trigger, delayNanos, this.periodNanos, NANOSECONDS)
+            : this.scheduler.schedule(this::trigger, delayNanos, NANOSECONDS);
+  }
+
+  void cancel() {
+    this.cancelled = true;
+    Future<?> trigger = this.trigger;
+    if (trigger != null) {
+      trigger.cancel(false);
+    }
+    Future<?> currentRun = this.currentRun;
+    if (currentRun != null) {
+      currentRun.cancel(true);
+    }
+    if (this.ownsWorkers) {
+      this.workers.shutdown();
+    }
+  }
+
+  // Never runs concurrently with itself: fixed-rate triggers are serialized by the scheduler, and
+  // a fixed-delay trigger is only scheduled once the previous run is over
+  private void trigger() {
+    long scheduledNanos = this.nextRunNanos;
+    if (this.definition.getSchedule() == Schedule.FIXED_RATE) {
+      this.nextRunNanos = scheduledNanos + this.periodNanos;
+    }
+    synchronized (this) {
+      if (this.running) {
+        if (this.definition.isSkipIfRunning()) {
+          log.warn(
+              "Skipping run of managed periodic task [{}], the previous one is still running",
+              this.definition.getName());
+          this.skipped.increment();
+        } else if (this.delayedRuns++ == 0) {
+          this.delayedRunNanos = scheduledNanos;
+        }
+        return;
+      }
+      this.running = true;
+    }
+    this.submit(scheduledNanos);
+  }
+
+  private void submit(long scheduledNanos) {
+    // Holds the timeout of the run until the run is over, then RUN_OVER
+    AtomicReference<Future<?>> timeout = new AtomicReference<>();
+    try {
+      Future<?> run = this.workers.submit(() -> this.run(scheduledNanos, timeout));
+      this.currentRun = run;
+      if (!this.definition.getTimeout().isZero()) {
+        Future<?> timeoutFuture =
+            this.scheduler.schedule(
+                () -> this.timeOut(run), this.definition.getTimeout().toNanos(), NANOSECONDS);
+        if (!timeout.compareAndSet(null, timeoutFuture)) {
+          timeoutFuture.cancel(false);
+        }
+      }
+    } catch (RejectedExecutionException e) {
+      // Only once the container is stopping
+      synchronized (this) {
+        this.running = false;
+      }
+    }
+  }
+
+  private void run(long scheduledNanos, AtomicReference<Future<?>> timeout) {
+    long startNanos = System.nanoTime();
+    this.lag.record(Math.max(0, startNanos - scheduledNanos), NANOSECONDS);
+    try {
+      this.definition.getRunnable().run();
+    } catch (Exception e) {
+      this.failures.increment();
+      log.error("Managed periodic task [{}] failed", this.definition.getName(), e);
+    } finally {
+      Future<?> timeoutFuture = timeout.getAndSet(RUN_OVER);
+      if (timeoutFuture != null) {
+        timeoutFuture.cancel(false);
+      }
+      long durationNanos = System.nanoTime() - startNanos;
+      this.runDuration.record(durationNanos, NANOSECONDS);
+      if (durationNanos > this.periodNanos) {
+        this.overruns.increment();
+      }
+      if (this.definition.getSchedule() == Schedule.FIXED_DELAY) {
+        synchronized (this) {
+          this.running = false;
+        }
+        this.scheduleNextRun();
+      } else {
+        this.runDelayedOrFinish();
+      }
+    }
+  }
+
+  // Fixed-rate runs triggered during a run start right after it, as late as they are
+  private void runDelayedOrFinish() {
+    long scheduledNanos;
+    synchronized (this) {
+      if (this.cancelled || this.delayedRuns == 0) {
+        this.running = false;
+        return;
+      }
+      this.delayedRuns--;
+      scheduledNanos = this.delayedRunNanos;
+      this.delayedRunNanos += this.periodNanos;
+    }
+    this.submit(scheduledNanos);
+  }
+
+  private void scheduleNextRun() {
+    if (this.cancelled) {
+      return;
+    }
+    this.nextRunNanos = System.nanoTime() + this.periodNanos;
+    try {
+      this.trigger = this.scheduler.schedule(this::trigger, this.periodNanos, NANOSECONDS);
+    } catch (RejectedExecutionException e) {
+      // Only once the container is stopping
+    }
+  }
+
+  private void timeOut(Future<?> run) {
+    if (run.cancel(true)) {
+      log.warn(
+          "Interrupted managed periodic task [{}] after {}",
+          this.definition.getName(),
+          this.definition.getTimeout());
+      this.timeouts.increment();
+    }
+  }
+}
@@ -4,11 +4,44 @@ import java.time.Duration;
 import lombok.Builder;
 import lombok.Value;
 
+/**
+ * A task run periodically by its container once started. Runs execute off the scheduling threads,
+ * so a slow task doesn't delay the others, and a failed run doesn't cancel the next ones. Each
+ * task reports its run durations, lag, failures, overruns, skipped runs and timeouts as
+ * "periodic.task.*" metrics tagged with its name.
+ */
 @Value
 @Builder
 public class PlatformPeriodicTaskDefinition {
+  public enum Schedule {
+    /** Runs start every period, whatever the duration of the previous run. */
+    FIXED_RATE,
+    /** Runs start a period after the end of the previous run. */
+    FIXED_DELAY
+  }
+
   Runnable runnable;
   Duration initialDelay;
   Duration period;
   String name;
+
+  @Builder.Default Schedule schedule = Schedule.FIXED_RATE;
+
+  /**
+   * Upper bound of a random delay added to the initial delay, spreading the runs of replicas
+   * started together. Zero adds none.
+   */
+  @Builder.Default Duration startJitter = Duration.ZERO;
+
+  /** Duration after which a run is interrupted. Zero lets runs take as long as they need. */
+  @Builder.Default Duration timeout = Duration.ZERO;
+
+  /**
+   * Whether a fixed-rate run is skipped while the previous one is still running, rather than
+   * delayed until it's over. Runs never overlap either way.
+   */
+  boolean skipIfRunning;
+
+  /** Whether runs execute on virtual threads, which requires running on Java 21 or later. */
+  boolean virtualThreads;
 }
@@ -0,0 +1,148 @@
+package org.hypertrace.core.serviceframework.grpc;
+
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.ServerChannel;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import java.lang.reflect.Constructor;
+import java.util.Optional;
+import java.util.concurrent.ThreadFactory;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Netty event loop groups shared by all the networked gRPC servers of the process, so that
+ * consolidated containers and multi-server definitions don't each start their own event loops.
+ * The native epoll transport is used when it is on the classpath and supported by the platform,
+ * with a fallback to NIO. The groups are shut down once released by all the servers using them.
+ *
+ * <p>The groups are sized from the "grpc.server.eventLoop" config of the first container acquiring
+ * them. The worker group defaults to one thread per available processor, which the JVM derives
+ * from the container's CPU quota.
+ */
+@Slf4j
+final class SharedEventLoopGroups {
+  static final String EVENT_LOOP_CONFIG_PATH = "grpc.server.eventLoop";
+  private static final String BOSS_THREADS_CONFIG = "bossThreads";
+  private static final String WORKER_THREADS_CONFIG = "workerThreads";
+  private static final String NATIVE_TRANSPORT_CONFIG = "nativeTransport";
+  private static final int DEFAULT_BOSS_THREADS = 1;
+
+  private static SharedEventLoopGroups instance;
+  private static int references;
+
+  private final EventLoopGroup bossGroup;
+  private final EventLoopGroup workerGroup;
+  private final Class<? extends ServerChannel> channelType;
+
+  private SharedEventLoopGroups(
+      EventLoopGroup bossGroup,
+      EventLoopGroup workerGroup,
+      Class<? extends ServerChannel> channelType) {
+    this.bossGroup = bossGroup;
+    this.workerGroup = workerGroup;
+    this.channelType = channelType;
+  }
+
+  static synchronized SharedEventLoopGroups acquire(Config appConfig) {
+    if (instance == null) {
+      instance = create(appConfig);
+    }
+    references++;
+    return instance;
+  }
+
+  static synchronized void release(SharedEventLoopGroups groups) {
+    if (groups != instance || --references > 0) {
+      return;
+    }
+    log.info("Shutting down the shared gRPC event loop groups");
+    instance.bossGroup.shutdownGracefully();
+    instance.workerGroup.shutdownGracefully();
+    instance = null;
+  }
+
+  EventLoopGroup getBossGroup() {
+    return bossGroup;
+  }
+
+  EventLoopGroup getWorkerGroup() {
+    return workerGroup;
+  }
+
+  Class<? extends ServerChannel> getChannelType() {
+    return channelType;
+  }
+
+  private static SharedEventLoopGroups create(Config appConfig) {
+    Config config =
+        appConfig.hasPath(EVENT_LOOP_CONFIG_PATH)
+            ? appConfig.getConfig(EVENT_LOOP_CONFIG_PATH)
+            : ConfigFactory.empty();
+    int bossThreads =
+        config.hasPath(BOSS_THREADS_CONFIG)
+            ? config.getInt(BOSS_THREADS_CONFIG)
+            : DEFAULT_BOSS_THREADS;
+    int workerThreads =
+        config.hasPath(WORKER_THREADS_CONFIG)
+            ? config.getInt(WORKER_THREADS_CONFIG)
+            : Runtime.getRuntime().availableProcessors();
+    boolean nativeTransport =
+        !config.hasPath(NATIVE_TRANSPORT_CONFIG) || config.getBoolean(NATIVE_TRANSPORT_CONFIG);
+
+    Optional<SharedEventLoopGroups> epollGroups =
+        nativeTransport ? createEpoll(bossThreads, workerThreads) : Optional.empty();
+    if (epollGroups.isPresent()) {
+      log.info(
+          "Using the epoll transport with {} boss and {} worker threads for gRPC servers",
+          bossThreads,
+          workerThreads);
+      return epollGroups.get();
+    }
+    log.info(
+        "Using the NIO transport with {} boss and {} worker threads for gRPC servers",
+        bossThreads,
+        workerThreads);
+    return new SharedEventLoopGroups(
+        new NioEventLoopGroup(bossThreads, threadFactory("grpc-boss")),
+        new NioEventLoopGroup(workerThreads, threadFactory("grpc-worker")),
+        NioServerSocketChannel.class);
+  }
+
+  // The epoll transport is an optional runtime dependency, so it's only accessed reflectively
+  private static Optional<SharedEventLoopGroups> createEpoll(int bossThreads, int workerThreads) {
+    try {
+      Class<?> epoll = Class.forName("io.netty.channel.epoll.Epoll");
+      if (!(boolean) epoll.getMethod("isAvailable").invoke(null)) {
+        log.info(
+            "Native epoll transport is not available",
+            (Throwable) epoll.getMethod("unavailabilityCause").invoke(null));
+        return Optional.empty();
+      }
+      Constructor<? extends EventLoopGroup> groupConstructor =
+          Class.forName("io.netty.channel.epoll.EpollEventLoopGroup")
+              .asSubclass(EventLoopGroup.class)
+              .getConstructor(int.class, ThreadFactory.class);
+      Class<? extends ServerChannel> channelType =
+          Class.forName("io.netty.channel.epoll.EpollServerSocketChannel")
+              .asSubclass(ServerChannel.class);
+      return Optional.of(
+          new SharedEventLoopGroups(
+              groupConstructor.newInstance(bossThreads, threadFactory("grpc-boss")),
+              groupConstructor.newInstance(workerThreads, threadFactory("grpc-worker")),
+              channelType));
+    } catch (ClassNotFoundException e) {
+      log.debug("Native epoll transport is not on the classpath");
+      return Optional.empty();
+    } catch (ReflectiveOperationException | RuntimeException e) {
+      log.warn("Failed to create the native epoll transport, falling back to NIO", e);
+      return Optional.empty();
+    }
+  }
+
+  private static ThreadFactory threadFactory(String poolName) {
+    return new DefaultThreadFactory(poolName, true);
+  }
+}
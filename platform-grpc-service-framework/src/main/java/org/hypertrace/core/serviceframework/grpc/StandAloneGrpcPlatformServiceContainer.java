@@ -33,6 +33,7 @@ public abstract class StandAloneGrpcPlatformServiceContainer extends GrpcPlatfor
             .name("networked-" + this.getServiceName())
             .port(this.getServicePort())
             .serviceFactory(this.getServiceFactory())
+            .withConfig(this.getServerConfig())
             .build());
   }
 
@@ -0,0 +1,134 @@
+package org.hypertrace.core.serviceframework.grpc;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import io.grpc.CallOptions;
+import io.grpc.ManagedChannel;
+import io.grpc.MethodDescriptor;
+import io.grpc.Server;
+import io.grpc.ServerInterceptors;
+import io.grpc.ServerServiceDefinition;
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+import io.grpc.health.v1.HealthCheckRequest;
+import io.grpc.health.v1.HealthCheckResponse;
+import io.grpc.health.v1.HealthCheckResponse.ServingStatus;
+import io.grpc.health.v1.HealthGrpc;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+import io.grpc.stub.ClientCalls;
+import io.grpc.stub.ServerCalls;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+/** Unit tests for {@link GrpcConcurrencyLimitInterceptor} */
+public class GrpcConcurrencyLimitInterceptorTest {
+  // The health check method, under a service name which is limited
+  private static final MethodDescriptor<HealthCheckRequest, HealthCheckResponse> LIMITED_METHOD =
+      HealthGrpc.getCheckMethod().toBuilder().setFullMethodName("test.Limited/Check").build();
+  private static final GrpcConcurrencyLimitDefinition SINGLE_CALL_LIMIT =
+      GrpcConcurrencyLimitDefinition.builder().enabled(true).initialLimit(1).minLimit(1).build();
+
+  private Server server;
+  private ManagedChannel channel;
+
+  @AfterEach
+  public void tearDown() throws Exception {
+    if (this.server != null) {
+      this.channel.shutdownNow().awaitTermination(10, TimeUnit.SECONDS);
+      this.server.shutdownNow().awaitTermination(10, TimeUnit.SECONDS);
+    }
+  }
+
+  @Test
+  public void testCallsPastTheLimitAreRejectedWithResourceExhausted() throws Exception {
+    CountDownLatch release = new CountDownLatch(1);
+    TestHealthService limitedService = new TestHealthService(release);
+    this.start(limitedService, new TestHealthService());
+
+    ListenableFuture<HealthCheckResponse> running = this.callLimited();
+    limitedService.awaitStarted();
+    StatusRuntimeException exception =
+        assertThrows(
+            StatusRuntimeException.class,
+            () ->
+                ClientCalls.blockingUnaryCall(
+                    this.channel, LIMITED_METHOD, CallOptions.DEFAULT, TestHealthService.REQUEST));
+    assertEquals(Status.Code.RESOURCE_EXHAUSTED, exception.getStatus().getCode());
+
+    release.countDown();
+    assertEquals(ServingStatus.SERVING, running.get(10, TimeUnit.SECONDS).getStatus());
+    // The slot of the completed call is available again
+    assertEquals(ServingStatus.SERVING, this.callLimited().get(10, TimeUnit.SECONDS).getStatus());
+  }
+
+  @Test
+  public void testHealthServiceIsNotLimited() throws Exception {
+    CountDownLatch release = new CountDownLatch(1);
+    TestHealthService limitedService = new TestHealthService(release);
+    this.start(limitedService, new TestHealthService());
+
+    ListenableFuture<HealthCheckResponse> running = this.callLimited();
+    limitedService.awaitStarted();
+    assertEquals(
+        ServingStatus.SERVING,
+        HealthGrpc.newBlockingStub(this.channel).check(TestHealthService.REQUEST).getStatus());
+
+    release.countDown();
+    running.get(10, TimeUnit.SECONDS);
+  }
+
+  @Test
+  public void testLimitGrowsWithStableLatencyAndShrinksWhenLatencyRises() {
+    GrpcConcurrencyLimitInterceptor.Limiter limiter =
+        new GrpcConcurrencyLimitInterceptor.Limiter(
+            GrpcConcurrencyLimitDefinition.builder().enabled(true).build(),
+            Map.of("server", "limiter-test"));
+    assertEquals(20, limiter.limit());
+
+    for (int i = 0; i < 50; i++) {
+      limiter.onSample(TimeUnit.MILLISECONDS.toNanos(1), limiter.limit());
+    }
+    int grownLimit = limiter.limit();
+    assertTrue(grownLimit > 20, "Limit " + grownLimit + " should have grown");
+
+    for (int i = 0; i < 50; i++) {
+      limiter.onSample(TimeUnit.MILLISECONDS.toNanos(20), limiter.limit());
+    }
+    assertTrue(
+        limiter.limit() < grownLimit,
+        "Limit " + limiter.limit() + " should have shrunk from " + grownLimit);
+    assertTrue(limiter.limit() >= 4);
+  }
+
+  private void start(TestHealthService limitedService, TestHealthService healthService)
+      throws Exception {
+    ServerServiceDefinition limited =
+        ServerServiceDefinition.builder("test.Limited")
+            .addMethod(
+                LIMITED_METHOD,
+                ServerCalls.asyncUnaryCall(
+                    (request, responseObserver) -> limitedService.check(request, responseObserver)))
+            .build();
+    GrpcConcurrencyLimitInterceptor interceptor =
+        new GrpcConcurrencyLimitInterceptor("limit-test", SINGLE_CALL_LIMIT);
+    this.server =
+        InProcessServerBuilder.forName("limit-test")
+            .addService(ServerInterceptors.intercept(limited, interceptor))
+            .addService(ServerInterceptors.intercept(healthService, interceptor))
+            .build()
+            .start();
+    this.channel = InProcessChannelBuilder.forName("limit-test").build();
+  }
+
+  private ListenableFuture<HealthCheckResponse> callLimited() {
+    return ClientCalls.futureUnaryCall(
+        this.channel.newCall(LIMITED_METHOD, CallOptions.DEFAULT), TestHealthService.REQUEST);
+  }
+}
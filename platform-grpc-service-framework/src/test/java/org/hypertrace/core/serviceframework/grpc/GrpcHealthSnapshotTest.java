@@ -0,0 +1,98 @@
+package org.hypertrace.core.serviceframework.grpc;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import io.grpc.BindableService;
+import io.grpc.ManagedChannel;
+import io.grpc.Server;
+import io.grpc.ServerInterceptors;
+import io.grpc.Status;
+import io.grpc.health.v1.HealthCheckRequest;
+import io.grpc.health.v1.HealthCheckResponse;
+import io.grpc.health.v1.HealthCheckResponse.ServingStatus;
+import io.grpc.health.v1.HealthGrpc;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+import io.grpc.protobuf.services.HealthStatusManager;
+import io.grpc.stub.StreamObserver;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+/** Unit tests for {@link GrpcHealthSnapshot} */
+public class GrpcHealthSnapshotTest {
+  private Server server;
+  private ManagedChannel channel;
+  private GrpcHealthSnapshot snapshot;
+
+  @AfterEach
+  public void tearDown() throws Exception {
+    this.snapshot.close();
+    this.channel.shutdownNow().awaitTermination(10, TimeUnit.SECONDS);
+    this.server.shutdownNow().awaitTermination(10, TimeUnit.SECONDS);
+  }
+
+  @Test
+  public void testWatchesAreOpenedAgainOnceEnded() throws Exception {
+    AtomicInteger watches = new AtomicInteger();
+    this.start(
+        new HealthGrpc.HealthImplBase() {
+          @Override
+          public void watch(
+              HealthCheckRequest request, StreamObserver<HealthCheckResponse> responseObserver) {
+            if (watches.incrementAndGet() == 1) {
+              responseObserver.onError(Status.UNAVAILABLE.asRuntimeException());
+              return;
+            }
+            responseObserver.onNext(
+                HealthCheckResponse.newBuilder().setStatus(ServingStatus.SERVING).build());
+          }
+        },
+        false);
+
+    this.snapshot.watch("");
+    this.awaitStatus(ServingStatus.SERVING);
+    assertEquals(2, watches.get());
+  }
+
+  @Test
+  public void testClosingCancelsTheWatches() throws Exception {
+    GrpcInFlightCallsInterceptor inFlightCalls =
+        this.start(new HealthStatusManager().getHealthService(), true);
+
+    this.snapshot.watch("");
+    this.awaitStatus(ServingStatus.SERVING);
+    assertEquals(0, inFlightCalls.getInFlight());
+
+    this.snapshot.close();
+    this.server.shutdown();
+    assertTrue(this.server.awaitTermination(5, TimeUnit.SECONDS));
+    // The latest status is kept
+    assertEquals(Optional.of(ServingStatus.SERVING), this.snapshot.getStatus(""));
+  }
+
+  private GrpcInFlightCallsInterceptor start(BindableService healthService, boolean inProcess)
+      throws Exception {
+    GrpcInFlightCallsInterceptor inFlightCalls =
+        new GrpcInFlightCallsInterceptor("snapshot-test", inProcess);
+    this.server =
+        InProcessServerBuilder.forName("snapshot-test")
+            .addService(ServerInterceptors.intercept(healthService, inFlightCalls))
+            .build()
+            .start();
+    this.channel = InProcessChannelBuilder.forName("snapshot-test").build();
+    this.snapshot = new GrpcHealthSnapshot(this.channel);
+    return inFlightCalls;
+  }
+
+  private void awaitStatus(ServingStatus status) throws InterruptedException {
+    long deadlineNanos = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+    while (!this.snapshot.getStatus("").equals(Optional.of(status))) {
+      assertTrue(System.nanoTime() < deadlineNanos, "Status not " + status);
+      Thread.sleep(10);
+    }
+  }
+}
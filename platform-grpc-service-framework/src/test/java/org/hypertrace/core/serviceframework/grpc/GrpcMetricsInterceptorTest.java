@@ -0,0 +1,165 @@
+package org.hypertrace.core.serviceframework.grpc;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import com.google.common.collect.ImmutableList;
+import com.typesafe.config.ConfigFactory;
+import io.grpc.ManagedChannel;
+import io.grpc.Server;
+import io.grpc.health.v1.HealthCheckRequest;
+import io.grpc.health.v1.HealthCheckResponse;
+import io.grpc.health.v1.HealthGrpc;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+import io.grpc.netty.NettyChannelBuilder;
+import io.grpc.netty.NettyServerBuilder;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/** Unit tests for {@link GrpcMetricsInterceptor} */
+public class GrpcMetricsInterceptorTest {
+  private static final HealthCheckRequest SIZED_REQUEST =
+      HealthCheckRequest.newBuilder().setService("metrics-test").build();
+
+  private SimpleMeterRegistry meterRegistry;
+  private GrpcMetricsInterceptor interceptor;
+  private Server server;
+  private ManagedChannel channel;
+
+  @BeforeEach
+  public void setUp() throws Exception {
+    this.meterRegistry = new SimpleMeterRegistry();
+    this.interceptor =
+        new GrpcMetricsInterceptor(
+            this.meterRegistry, new GrpcLatencyBuckets(ConfigFactory.empty()));
+    this.server =
+        InProcessServerBuilder.forName("metrics-test")
+            .directExecutor()
+            .addService(this.interceptor.instrument(new TestHealthService().bindService(), "test"))
+            .addStreamTracerFactory(this.interceptor.callTracerFactory())
+            .build()
+            .start();
+    this.channel =
+        InProcessChannelBuilder.forName("metrics-test")
+            .directExecutor()
+            .intercept(this.interceptor)
+            .build();
+  }
+
+  @AfterEach
+  public void tearDown() throws Exception {
+    this.channel.shutdownNow().awaitTermination(10, TimeUnit.SECONDS);
+    this.server.shutdownNow().awaitTermination(10, TimeUnit.SECONDS);
+    this.meterRegistry.close();
+  }
+
+  @Test
+  public void testUnaryCallMessageCounts() {
+    HealthGrpc.newBlockingStub(this.channel).check(TestHealthService.REQUEST);
+
+    assertEquals(1, this.count("grpc.server.requests.received", "Check"));
+    assertEquals(1, this.count("grpc.server.responses.sent", "Check"));
+    assertEquals(1, this.count("grpc.client.requests.sent", "Check"));
+    assertEquals(1, this.count("grpc.client.responses.received", "Check"));
+  }
+
+  @Test
+  public void testServerStreamingCallMessageCounts() {
+    List<HealthCheckResponse> responses =
+        ImmutableList.copyOf(
+            HealthGrpc.newBlockingStub(this.channel).watch(TestHealthService.REQUEST));
+    assertEquals(2, responses.size());
+
+    assertEquals(1, this.count("grpc.server.requests.received", "Watch"));
+    assertEquals(2, this.count("grpc.server.responses.sent", "Watch"));
+    assertEquals(1, this.count("grpc.client.requests.sent", "Watch"));
+    assertEquals(2, this.count("grpc.client.responses.received", "Watch"));
+  }
+
+  @Test
+  public void testServerQueueWaitAndHandlerTimers() {
+    HealthGrpc.newBlockingStub(this.channel).check(TestHealthService.REQUEST);
+
+    assertEquals(1, this.timerCount("grpc.server.queue.wait", "Check"));
+    assertEquals(1, this.timerCount("grpc.server.handler.duration", "Check"));
+  }
+
+  @Test
+  public void testInProcessMessageSizesAreComputedFromTheMessages() {
+    HealthCheckResponse response = HealthGrpc.newBlockingStub(this.channel).check(SIZED_REQUEST);
+
+    DistributionSummary requestSizes = this.summary("grpc.server.request.size", "Check");
+    assertEquals(1, requestSizes.count());
+    assertEquals(SIZED_REQUEST.getSerializedSize(), requestSizes.totalAmount());
+    DistributionSummary responseSizes = this.summary("grpc.server.response.size", "Check");
+    assertEquals(1, responseSizes.count());
+    assertEquals(response.getSerializedSize(), responseSizes.totalAmount());
+  }
+
+  @Test
+  public void testNetworkedMessageSizesAreReportedByTheTransport() throws Exception {
+    Server networkedServer =
+        NettyServerBuilder.forPort(0)
+            .addService(
+                this.interceptor.instrument(new TestHealthService().bindService(), "networked"))
+            .addStreamTracerFactory(this.interceptor.callTracerFactory())
+            .build()
+            .start();
+    ManagedChannel networkedChannel =
+        NettyChannelBuilder.forAddress("localhost", networkedServer.getPort())
+            .usePlaintext()
+            .build();
+    try {
+      // Compressed on the wire, the uncompressed sizes are recorded
+      HealthCheckResponse response =
+          HealthGrpc.newBlockingStub(networkedChannel)
+              .withCompression("gzip")
+              .check(SIZED_REQUEST);
+      List<HealthCheckResponse> responses =
+          ImmutableList.copyOf(HealthGrpc.newBlockingStub(networkedChannel).watch(SIZED_REQUEST));
+
+      DistributionSummary checkRequestSizes = this.summary("grpc.server.request.size", "Check");
+      assertEquals(1, checkRequestSizes.count());
+      assertEquals(SIZED_REQUEST.getSerializedSize(), checkRequestSizes.totalAmount());
+      DistributionSummary checkResponseSizes = this.summary("grpc.server.response.size", "Check");
+      assertEquals(1, checkResponseSizes.count());
+      assertEquals(response.getSerializedSize(), checkResponseSizes.totalAmount());
+      DistributionSummary watchResponseSizes = this.summary("grpc.server.response.size", "Watch");
+      assertEquals(2, watchResponseSizes.count());
+      assertEquals(
+          responses.get(0).getSerializedSize() + responses.get(1).getSerializedSize(),
+          watchResponseSizes.totalAmount());
+    } finally {
+      networkedChannel.shutdownNow().awaitTermination(10, TimeUnit.SECONDS);
+      networkedServer.shutdownNow().awaitTermination(10, TimeUnit.SECONDS);
+    }
+  }
+
+  private double count(String name, String method) {
+    return this.meterRegistry
+        .get(name)
+        .tags("service", "grpc.health.v1.Health", "method", method)
+        .counter()
+        .count();
+  }
+
+  private long timerCount(String name, String method) {
+    return this.meterRegistry
+        .get(name)
+        .tags("service", "grpc.health.v1.Health", "method", method)
+        .timer()
+        .count();
+  }
+
+  private DistributionSummary summary(String name, String method) {
+    return this.meterRegistry
+        .get(name)
+        .tags("service", "grpc.health.v1.Health", "method", method)
+        .summary();
+  }
+}
@@ -0,0 +1,241 @@
+package org.hypertrace.core.serviceframework.grpc;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
+import io.grpc.CallOptions;
+import io.grpc.ManagedChannel;
+import io.grpc.MethodDescriptor;
+import io.grpc.ServerServiceDefinition;
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+import io.grpc.health.v1.HealthCheckRequest;
+import io.grpc.health.v1.HealthCheckResponse;
+import io.grpc.health.v1.HealthCheckResponse.ServingStatus;
+import io.grpc.health.v1.HealthGrpc;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.netty.NettyChannelBuilder;
+import io.grpc.stub.ClientCalls;
+import io.grpc.stub.ServerCalls;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import org.hypertrace.core.serviceframework.config.ConfigClient;
+import org.hypertrace.core.serviceframework.spi.PlatformServiceLifecycle.State;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+/** Unit tests for {@link GrpcPlatformServiceContainer} */
+public class GrpcPlatformServiceContainerTest {
+  // The health check method, under a service name of its own to be served next to health
+  private static final MethodDescriptor<HealthCheckRequest, HealthCheckResponse> HELD_METHOD =
+      HealthGrpc.getCheckMethod().toBuilder().setFullMethodName("test.Held/Check").build();
+
+  private final CountDownLatch release = new CountDownLatch(1);
+  private final TestHealthService heldService = new TestHealthService(this.release);
+  private final List<ManagedChannel> channels = new ArrayList<>();
+  private TestContainer container;
+  private Thread startThread;
+
+  @AfterEach
+  public void tearDown() throws Exception {
+    this.release.countDown();
+    for (ManagedChannel channel : this.channels) {
+      channel.shutdownNow().awaitTermination(10, TimeUnit.SECONDS);
+    }
+    if (this.container != null && this.container.getServiceState() != State.STOPPED) {
+      this.container.shutdown();
+    }
+    if (this.startThread != null) {
+      this.startThread.join(10_000);
+    }
+  }
+
+  @Test
+  public void testCallsInFlightAreDrainedBeforeStopping() throws Exception {
+    int port = freePort();
+    this.start(port, Map.of("grpc.shutdown.drainTimeout", "10s"));
+    ListenableFuture<HealthCheckResponse> running = this.callHeld(this.networkedChannel(port));
+    this.heldService.awaitStarted();
+
+    Thread shutdownThread = new Thread(this.container::shutdown);
+    shutdownThread.start();
+    shutdownThread.join(200);
+    assertTrue(shutdownThread.isAlive(), "Stopped with a call in flight");
+
+    this.release.countDown();
+    assertEquals(ServingStatus.SERVING, running.get(10, TimeUnit.SECONDS).getStatus());
+    shutdownThread.join(10_000);
+    assertEquals(State.STOPPED, this.container.getServiceState());
+  }
+
+  @Test
+  public void testServersShareTheDrainDeadline() throws Exception {
+    int port = freePort();
+    this.start(port, Map.of("grpc.shutdown.drainTimeout", "1s"));
+    ListenableFuture<HealthCheckResponse> networkedCall =
+        this.callHeld(this.networkedChannel(port));
+    this.heldService.awaitStarted();
+    ListenableFuture<HealthCheckResponse> inProcessCall = this.callHeld(this.inProcessChannel());
+    this.heldService.awaitStarted();
+
+    long startNanos = System.nanoTime();
+    this.container.shutdown();
+    long stopMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+
+    // The networked server used up the deadline, the in-process server gets cancelled right away
+    assertTrue(stopMillis >= 1000, "Stopped in " + stopMillis + " ms, before the deadline");
+    assertTrue(stopMillis < 1800, "Stopped in " + stopMillis + " ms, not sharing the deadline");
+    assertThrows(ExecutionException.class, () -> networkedCall.get(10, TimeUnit.SECONDS));
+    assertThrows(ExecutionException.class, () -> inProcessCall.get(10, TimeUnit.SECONDS));
+  }
+
+  @Test
+  public void testContainerFailingToInitializeStops() throws Exception {
+    this.container =
+        new TestContainer(
+            config(Map.of("grpc.shutdown.propagationDelay", "10s")),
+            List.of(freePort()),
+            unused -> {
+              throw new IllegalStateException("Failed factory");
+            });
+    assertThrows(IllegalStateException.class, this.container::initialize);
+
+    long startNanos = System.nanoTime();
+    this.container.shutdown();
+    // Never started, so never seen serving by anyone to wait for
+    assertTrue(System.nanoTime() - startNanos < TimeUnit.SECONDS.toNanos(5));
+    assertEquals(State.STOPPED, this.container.getServiceState());
+    assertFalse(this.container.healthCheck());
+  }
+
+  @Test
+  public void testInProcessServerIsNotStartedWhenANetworkedServerFails() throws Exception {
+    try (ServerSocket takenPort = new ServerSocket(0)) {
+      this.container =
+          new TestContainer(
+              config(Map.of("grpc.startup.parallelism", 2)),
+              List.of(freePort(), takenPort.getLocalPort()),
+              unused -> List.of(new GrpcPlatformService(this.heldService())));
+      this.container.initialize();
+
+      assertThrows(RuntimeException.class, this.container::doStart);
+      StatusRuntimeException exception =
+          assertThrows(
+              StatusRuntimeException.class,
+              () ->
+                  ClientCalls.blockingUnaryCall(
+                      this.inProcessChannel(),
+                      HELD_METHOD,
+                      CallOptions.DEFAULT,
+                      TestHealthService.REQUEST));
+      assertEquals(Status.Code.UNAVAILABLE, exception.getStatus().getCode());
+      assertFalse(this.container.healthCheck());
+    }
+  }
+
+  private void start(int port, Map<String, Object> configs) throws InterruptedException {
+    this.container =
+        new TestContainer(
+            config(configs),
+            List.of(port),
+            unused -> List.of(new GrpcPlatformService(this.heldService())));
+    this.container.initialize();
+    this.startThread = new Thread(this.container::doStart);
+    this.startThread.start();
+    this.awaitServing();
+  }
+
+  private void awaitServing() throws InterruptedException {
+    long deadlineNanos = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+    while (!this.container.healthCheck()) {
+      assertTrue(System.nanoTime() < deadlineNanos, "Container not serving");
+      Thread.sleep(10);
+    }
+  }
+
+  private ServerServiceDefinition heldService() {
+    return ServerServiceDefinition.builder("test.Held")
+        .addMethod(
+            HELD_METHOD,
+            ServerCalls.asyncUnaryCall(
+                (request, responseObserver) -> this.heldService.check(request, responseObserver)))
+        .build();
+  }
+
+  private ManagedChannel networkedChannel(int port) {
+    ManagedChannel channel =
+        NettyChannelBuilder.forAddress("localhost", port).usePlaintext().build();
+    this.channels.add(channel);
+    return channel;
+  }
+
+  private ManagedChannel inProcessChannel() {
+    ManagedChannel channel = InProcessChannelBuilder.forName("container-test").build();
+    this.channels.add(channel);
+    return channel;
+  }
+
+  private ListenableFuture<HealthCheckResponse> callHeld(ManagedChannel channel) {
+    return ClientCalls.futureUnaryCall(
+        channel.newCall(HELD_METHOD, CallOptions.DEFAULT), TestHealthService.REQUEST);
+  }
+
+  private static Config config(Map<String, Object> configs) {
+    return ConfigFactory.parseMap(configs)
+        .withFallback(ConfigFactory.parseMap(Map.of("service.name", "container-test")));
+  }
+
+  private static int freePort() throws IOException {
+    try (ServerSocket socket = new ServerSocket(0)) {
+      return socket.getLocalPort();
+    }
+  }
+
+  /** A container with a networked server per port, all serving the services of the factory. */
+  private static final class TestContainer extends StandAloneGrpcPlatformServiceContainer {
+    private final List<Integer> ports;
+    private final GrpcPlatformServiceFactory serviceFactory;
+
+    TestContainer(Config config, List<Integer> ports, GrpcPlatformServiceFactory serviceFactory) {
+      super(
+          new ConfigClient() {
+            @Override
+            public Config getConfig() {
+              return config;
+            }
+
+            @Override
+            public Config getConfig(String service, String cluster, String pod, String container) {
+              return config;
+            }
+          });
+      this.ports = ports;
+      this.serviceFactory = serviceFactory;
+    }
+
+    @Override
+    protected List<GrpcPlatformServerDefinition> getServerDefinitions() {
+      return this.ports.stream()
+          .map(
+              port ->
+                  GrpcPlatformServerDefinition.builder()
+                      .name("networked-" + port)
+                      .port(port)
+                      .serviceFactory(this.serviceFactory)
+                      .build())
+          .collect(Collectors.toUnmodifiableList());
+    }
+  }
+}
@@ -0,0 +1,64 @@
+package org.hypertrace.core.serviceframework.grpc;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import io.grpc.ManagedChannel;
+import io.grpc.Metadata;
+import io.grpc.Server;
+import io.grpc.ServerInterceptors;
+import io.grpc.health.v1.HealthGrpc;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+import io.grpc.stub.MetadataUtils;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.Test;
+
+/** Unit tests for {@link GrpcResourceAccountingInterceptor} */
+public class GrpcResourceAccountingInterceptorTest {
+
+  @Test
+  public void testTenantsPastTheMaximumShareTheOtherSeries() throws Exception {
+    SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    GrpcResourceAccountingInterceptor interceptor =
+        new GrpcResourceAccountingInterceptor(
+            meterRegistry,
+            GrpcResourceAccountingDefinition.builder()
+                .enabled(true)
+                .perTenant(true)
+                .maxTenantSeries(1)
+                .build());
+    Server server =
+        InProcessServerBuilder.forName("accounting-test")
+            .directExecutor()
+            .addService(ServerInterceptors.intercept(new TestHealthService(), interceptor))
+            .build()
+            .start();
+    ManagedChannel channel =
+        InProcessChannelBuilder.forName("accounting-test").directExecutor().build();
+    try {
+      for (String tenant : new String[] {"tenant-1", "tenant-2", "tenant-3", "tenant-1"}) {
+        Metadata headers = new Metadata();
+        headers.put(GrpcTenantTags.TENANT_ID_KEY, tenant);
+        HealthGrpc.newBlockingStub(channel)
+            .withInterceptors(MetadataUtils.newAttachHeadersInterceptor(headers))
+            .check(TestHealthService.REQUEST);
+      }
+
+      Set<String> tenantTags =
+          meterRegistry.get("grpc.server.call.cpu.time").summaries().stream()
+              .map(summary -> summary.getId().getTag("tenant"))
+              .collect(Collectors.toSet());
+      assertEquals(Set.of("tenant-1", "other"), tenantTags);
+      DistributionSummary otherTenants =
+          meterRegistry.get("grpc.server.call.cpu.time").tag("tenant", "other").summary();
+      assertEquals(2, otherTenants.count());
+    } finally {
+      channel.shutdownNow().awaitTermination(10, TimeUnit.SECONDS);
+      server.shutdownNow().awaitTermination(10, TimeUnit.SECONDS);
+    }
+  }
+}
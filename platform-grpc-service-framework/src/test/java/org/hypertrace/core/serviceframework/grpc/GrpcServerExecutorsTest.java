@@ -0,0 +1,176 @@
+package org.hypertrace.core.serviceframework.grpc;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeFalse;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import com.typesafe.config.ConfigFactory;
+import io.grpc.ManagedChannel;
+import io.grpc.Server;
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+import io.grpc.health.v1.HealthCheckResponse;
+import io.grpc.health.v1.HealthGrpc;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import org.hypertrace.core.serviceframework.grpc.GrpcServerExecutorDefinition.Type;
+import org.junit.jupiter.api.Test;
+
+/** Unit tests for {@link GrpcServerExecutors} */
+public class GrpcServerExecutorsTest {
+
+  @Test
+  public void testFixedExecutor() throws Exception {
+    ExecutorService executor =
+        GrpcServerExecutors.build(
+            "fixed", GrpcServerExecutorDefinition.builder().type(Type.FIXED).threads(3).build());
+    try {
+      assertTrue(executor instanceof ThreadPoolExecutor);
+      assertEquals(3, ((ThreadPoolExecutor) executor).getMaximumPoolSize());
+      assertTrue(
+          executor.submit(() -> Thread.currentThread().getName()).get().startsWith("fixed-"));
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  @Test
+  public void testForkJoinExecutor() throws Exception {
+    ExecutorService executor =
+        GrpcServerExecutors.build(
+            "fork-join",
+            GrpcServerExecutorDefinition.builder().type(Type.FORK_JOIN).threads(2).build());
+    try {
+      assertTrue(executor instanceof ForkJoinPool);
+      assertEquals(2, ((ForkJoinPool) executor).getParallelism());
+      assertTrue(((ForkJoinPool) executor).getAsyncMode());
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  @Test
+  public void testVirtualThreadExecutor() throws Exception {
+    ExecutorService executor =
+        GrpcServerExecutors.build(
+            "virtual",
+            GrpcServerExecutorDefinition.builder().type(Type.VIRTUAL_THREAD).threads(2).build());
+    try {
+      // Falls back to a fixed pool on JDKs without virtual threads
+      assertEquals(
+          !GrpcServerExecutors.virtualThreadsSupported(), executor instanceof ThreadPoolExecutor);
+      assertEquals(1, executor.submit(() -> 1).get());
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  @Test
+  public void testVirtualThreadExecutorConfigIsRejectedWithoutVirtualThreads() {
+    assumeFalse(GrpcServerExecutors.virtualThreadsSupported());
+    IllegalArgumentException exception =
+        assertThrows(
+            IllegalArgumentException.class,
+            () ->
+                GrpcPlatformServerDefinition.builder()
+                    .withConfig(ConfigFactory.parseString("executor.type = virtual-thread")));
+    assertTrue(exception.getMessage().contains("Java 21"));
+  }
+
+  @Test
+  public void testExecutorTypesWithoutExecutorService() {
+    for (Type type : new Type[] {Type.DEFAULT, Type.DIRECT, Type.TENANT_FAIR_QUEUE}) {
+      assertThrows(
+          IllegalArgumentException.class,
+          () ->
+              GrpcServerExecutors.build(
+                  "none", GrpcServerExecutorDefinition.builder().type(type).build()));
+    }
+  }
+
+  @Test
+  public void testFixedExecutorConfig() {
+    GrpcServerExecutorDefinition executor =
+        GrpcPlatformServerDefinition.builder()
+            .withConfig(
+                ConfigFactory.parseString(
+                    "executor { type = fixed, threads = 4, maxQueued = 10 }"))
+            .build()
+            .getExecutor();
+    assertEquals(Type.FIXED, executor.getType());
+    assertEquals(4, executor.getThreads());
+    assertEquals(10, executor.getMaxQueued());
+  }
+
+  @Test
+  public void testBoundedQueueRejectsCallsWithResourceExhausted() throws Exception {
+    ThreadPoolExecutor executor =
+        (ThreadPoolExecutor)
+            GrpcServerExecutors.build(
+                "bounded",
+                GrpcServerExecutorDefinition.builder()
+                    .type(Type.FIXED)
+                    .threads(1)
+                    .maxQueued(1)
+                    .build());
+    GrpcCallRejections rejections = new GrpcCallRejections();
+    CountDownLatch release = new CountDownLatch(1);
+    TestHealthService service = new TestHealthService(release);
+    Server server =
+        startServer(
+            InProcessServerBuilder.forName("bounded")
+                .directExecutor()
+                .callExecutor(
+                    new GrpcBoundedQueueExecutorSupplier("bounded", executor, 1, rejections))
+                .addService(service)
+                .intercept(rejections));
+    ManagedChannel channel = InProcessChannelBuilder.forName("bounded").directExecutor().build();
+    try {
+      HealthGrpc.HealthFutureStub stub = HealthGrpc.newFutureStub(channel);
+      ListenableFuture<HealthCheckResponse> running = stub.check(TestHealthService.REQUEST);
+      service.awaitStarted();
+      ListenableFuture<HealthCheckResponse> queued = stub.check(TestHealthService.REQUEST);
+      awaitQueued(executor, 1);
+
+      StatusRuntimeException exception =
+          assertThrows(
+              StatusRuntimeException.class,
+              () -> HealthGrpc.newBlockingStub(channel).check(TestHealthService.REQUEST));
+      assertEquals(Status.Code.RESOURCE_EXHAUSTED, exception.getStatus().getCode());
+
+      release.countDown();
+      assertEquals(
+          HealthCheckResponse.ServingStatus.SERVING,
+          running.get(10, TimeUnit.SECONDS).getStatus());
+      assertEquals(
+          HealthCheckResponse.ServingStatus.SERVING, queued.get(10, TimeUnit.SECONDS).getStatus());
+      assertFalse(executor.getQueue().size() > 0);
+    } finally {
+      channel.shutdownNow();
+      server.shutdownNow();
+      executor.shutdownNow();
+    }
+  }
+
+  private static Server startServer(InProcessServerBuilder builder) throws IOException {
+    return builder.build().start();
+  }
+
+  private static void awaitQueued(ThreadPoolExecutor executor, int tasks)
+      throws InterruptedException {
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+    while (executor.getQueue().size() < tasks && System.nanoTime() < deadline) {
+      Thread.sleep(1);
+    }
+    assertEquals(tasks, executor.getQueue().size());
+  }
+}
@@ -0,0 +1,109 @@
+package org.hypertrace.core.serviceframework.grpc;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+
+/** Unit tests for {@link GrpcStartupTasks} */
+public class GrpcStartupTasksTest {
+
+  @Test
+  public void testResultsAreInInputOrderWithBoundedParallelism() {
+    AtomicInteger running = new AtomicInteger();
+    AtomicInteger maxRunning = new AtomicInteger();
+    List<Integer> results =
+        GrpcStartupTasks.runAll(
+            List.of(50, 0, 30, 10, 40, 20),
+            2,
+            delayMillis -> {
+              maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+              sleep(delayMillis);
+              running.decrementAndGet();
+              return delayMillis;
+            });
+
+    assertEquals(List.of(50, 0, 30, 10, 40, 20), results);
+    assertEquals(2, maxRunning.get());
+  }
+
+  @Test
+  public void testFirstFailureInInputOrderIsRethrownOnceAllTasksAreOver() {
+    CountDownLatch laterFailure = new CountDownLatch(1);
+    AtomicBoolean slowTaskDone = new AtomicBoolean();
+    IllegalStateException exception =
+        assertThrows(
+            IllegalStateException.class,
+            () ->
+                GrpcStartupTasks.runAll(
+                    List.of("first", "second", "slow"),
+                    3,
+                    input -> {
+                      switch (input) {
+                        case "first":
+                          // Fails after the second task did
+                          await(laterFailure);
+                          throw new IllegalStateException("first");
+                        case "second":
+                          laterFailure.countDown();
+                          throw new IllegalStateException("second");
+                        default:
+                          sleep(200);
+                          slowTaskDone.set(true);
+                          return input;
+                      }
+                    }));
+
+    assertEquals("first", exception.getMessage());
+    assertTrue(slowTaskDone.get());
+  }
+
+  @Test
+  public void testFailuresOtherThanRuntimeExceptionsAreWrapped() {
+    AssertionError error = new AssertionError("failed");
+    RuntimeException exception =
+        assertThrows(
+            RuntimeException.class,
+            () ->
+                GrpcStartupTasks.runAll(
+                    List.of(1, 2),
+                    2,
+                    input -> {
+                      throw error;
+                    }));
+
+    assertEquals(error, exception.getCause());
+  }
+
+  @Test
+  public void testTasksRunInOrderWithoutParallelism() {
+    List<String> results =
+        GrpcStartupTasks.runAll(
+            List.of("a", "b", "c"), 1, input -> input + Thread.currentThread().getName());
+
+    String thread = Thread.currentThread().getName();
+    assertEquals(List.of("a" + thread, "b" + thread, "c" + thread), results);
+  }
+
+  private static void sleep(long millis) {
+    try {
+      Thread.sleep(millis);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private static void await(CountDownLatch latch) {
+    try {
+      assertTrue(latch.await(10, TimeUnit.SECONDS));
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+}
@@ -0,0 +1,222 @@
+package org.hypertrace.core.serviceframework.grpc;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import io.grpc.ManagedChannel;
+import io.grpc.Metadata;
+import io.grpc.Server;
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+import io.grpc.health.v1.HealthCheckResponse;
+import io.grpc.health.v1.HealthGrpc;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+import io.grpc.stub.MetadataUtils;
+import io.micrometer.core.instrument.composite.CompositeMeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import org.hypertrace.core.serviceframework.grpc.GrpcServerExecutorDefinition.Type;
+import org.hypertrace.core.serviceframework.metrics.PlatformMetricsRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/** Unit tests for {@link GrpcTenantFairQueueExecutor} */
+public class GrpcTenantFairQueueExecutorTest {
+  private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+  private final CountDownLatch release = new CountDownLatch(1);
+  private GrpcTenantFairQueueExecutor executor;
+
+  @BeforeEach
+  public void setUp() {
+    ((CompositeMeterRegistry) PlatformMetricsRegistry.getMeterRegistry()).add(this.meterRegistry);
+  }
+
+  @AfterEach
+  public void tearDown() throws Exception {
+    this.release.countDown();
+    this.executor.shutdownNow();
+    assertTrue(this.executor.awaitTermination(10, TimeUnit.SECONDS));
+    PlatformMetricsRegistry.stop();
+  }
+
+  @Test
+  public void testTenantsAreServedInTurnByWeight() throws Exception {
+    this.executor =
+        new GrpcTenantFairQueueExecutor(
+            "fair-test",
+            GrpcServerExecutorDefinition.builder()
+                .type(Type.TENANT_FAIR_QUEUE)
+                .threads(1)
+                .tenantWeight("heavy", 2)
+                .build(),
+            new GrpcCallRejections());
+    List<String> order = new CopyOnWriteArrayList<>();
+    CountDownLatch done = new CountDownLatch(6);
+    // Holds the only worker until all the tasks are queued
+    this.executor.execute(this::awaitRelease);
+    Executor heavy = this.executor.getExecutor(null, tenantHeaders("heavy"));
+    Executor light = this.executor.getExecutor(null, tenantHeaders("light"));
+    for (int i = 0; i < 4; i++) {
+      heavy.execute(
+          () -> {
+            order.add("heavy");
+            done.countDown();
+          });
+    }
+    for (int i = 0; i < 2; i++) {
+      light.execute(
+          () -> {
+            order.add("light");
+            done.countDown();
+          });
+    }
+
+    this.release.countDown();
+    assertTrue(done.await(10, TimeUnit.SECONDS));
+    assertEquals(List.of("heavy", "heavy", "light", "heavy", "heavy", "light"), order);
+  }
+
+  @Test
+  public void testCallsOfTenantsWithFullQueuesAreRejected() throws Exception {
+    GrpcCallRejections rejections = new GrpcCallRejections();
+    this.executor =
+        new GrpcTenantFairQueueExecutor(
+            "fair-test",
+            GrpcServerExecutorDefinition.builder()
+                .type(Type.TENANT_FAIR_QUEUE)
+                .threads(1)
+                .maxQueuedPerTenant(1)
+                .build(),
+            rejections);
+    TestHealthService service = new TestHealthService(this.release);
+    Server server =
+        InProcessServerBuilder.forName("fair-test")
+            .directExecutor()
+            .callExecutor(this.executor)
+            .addService(service)
+            .intercept(rejections)
+            .build()
+            .start();
+    ManagedChannel channel = InProcessChannelBuilder.forName("fair-test").build();
+    try {
+      ListenableFuture<HealthCheckResponse> running =
+          futureStub(channel, "busy").check(TestHealthService.REQUEST);
+      service.awaitStarted();
+      ListenableFuture<HealthCheckResponse> queued =
+          futureStub(channel, "busy").check(TestHealthService.REQUEST);
+      this.awaitQueueDepth("busy");
+
+      StatusRuntimeException exception =
+          assertThrows(
+              StatusRuntimeException.class,
+              () -> blockingStub(channel, "busy").check(TestHealthService.REQUEST));
+      assertEquals(Status.Code.RESOURCE_EXHAUSTED, exception.getStatus().getCode());
+      assertEquals(1, this.rejectedCount("busy"));
+      // Other tenants still get their calls queued
+      ListenableFuture<HealthCheckResponse> otherTenant =
+          futureStub(channel, "idle").check(TestHealthService.REQUEST);
+
+      this.release.countDown();
+      running.get(10, TimeUnit.SECONDS);
+      queued.get(10, TimeUnit.SECONDS);
+      otherTenant.get(10, TimeUnit.SECONDS);
+    } finally {
+      channel.shutdownNow().awaitTermination(10, TimeUnit.SECONDS);
+      server.shutdownNow().awaitTermination(10, TimeUnit.SECONDS);
+    }
+  }
+
+  @Test
+  public void testShutdownRunsTheQueuedTasksAndRejectsNewOnes() throws Exception {
+    this.executor =
+        new GrpcTenantFairQueueExecutor(
+            "fair-test",
+            GrpcServerExecutorDefinition.builder().type(Type.TENANT_FAIR_QUEUE).threads(1).build(),
+            new GrpcCallRejections());
+    CountDownLatch queuedTaskRan = new CountDownLatch(1);
+    this.executor.execute(this::awaitRelease);
+    this.executor.execute(queuedTaskRan::countDown);
+
+    this.executor.shutdown();
+    assertTrue(this.executor.isShutdown());
+    assertThrows(RejectedExecutionException.class, () -> this.executor.execute(() -> {}));
+    this.release.countDown();
+    assertTrue(this.executor.awaitTermination(10, TimeUnit.SECONDS));
+    assertTrue(this.executor.isTerminated());
+    assertEquals(0, queuedTaskRan.getCount());
+  }
+
+  @Test
+  public void testWorkersKeepRunningAfterAnError() throws Exception {
+    this.executor =
+        new GrpcTenantFairQueueExecutor(
+            "fair-test",
+            GrpcServerExecutorDefinition.builder().type(Type.TENANT_FAIR_QUEUE).threads(1).build(),
+            new GrpcCallRejections());
+    CountDownLatch nextTaskRan = new CountDownLatch(1);
+    this.executor.execute(
+        () -> {
+          throw new AssertionError("Failed task");
+        });
+    this.executor.execute(nextTaskRan::countDown);
+
+    assertTrue(nextTaskRan.await(10, TimeUnit.SECONDS));
+  }
+
+  private void awaitRelease() {
+    try {
+      this.release.await(10, TimeUnit.SECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private void awaitQueueDepth(String tenant) throws InterruptedException {
+    long deadlineNanos = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+    while (this.queueDepth(tenant) < 1) {
+      assertTrue(System.nanoTime() < deadlineNanos, "No task queued for " + tenant);
+      Thread.sleep(10);
+    }
+  }
+
+  private double queueDepth(String tenant) {
+    return this.meterRegistry
+        .get("grpc.server.tenant.queue.depth")
+        .tag("tenant", tenant)
+        .gauge()
+        .value();
+  }
+
+  private double rejectedCount(String tenant) {
+    return this.meterRegistry
+        .get("grpc.server.tenant.queue.rejected")
+        .tag("tenant", tenant)
+        .counter()
+        .count();
+  }
+
+  private static Metadata tenantHeaders(String tenant) {
+    Metadata headers = new Metadata();
+    headers.put(GrpcTenantTags.TENANT_ID_KEY, tenant);
+    return headers;
+  }
+
+  private static HealthGrpc.HealthFutureStub futureStub(ManagedChannel channel, String tenant) {
+    return HealthGrpc.newFutureStub(channel)
+        .withInterceptors(MetadataUtils.newAttachHeadersInterceptor(tenantHeaders(tenant)));
+  }
+
+  private static HealthGrpc.HealthBlockingStub blockingStub(ManagedChannel channel, String tenant) {
+    return HealthGrpc.newBlockingStub(channel)
+        .withInterceptors(MetadataUtils.newAttachHeadersInterceptor(tenantHeaders(tenant)));
+  }
+}
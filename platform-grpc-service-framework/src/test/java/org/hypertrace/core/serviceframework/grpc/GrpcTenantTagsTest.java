@@ -0,0 +1,31 @@
+package org.hypertrace.core.serviceframework.grpc;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import io.grpc.Metadata;
+import org.junit.jupiter.api.Test;
+
+/** Unit tests for {@link GrpcTenantTags} */
+public class GrpcTenantTagsTest {
+
+  @Test
+  public void testTenantsPastTheMaximumShareTheOtherTag() {
+    GrpcTenantTags tenantTags = new GrpcTenantTags(2);
+
+    assertEquals("tenant-1", tenantTags.tagFor("tenant-1"));
+    assertEquals("tenant-2", tenantTags.tagFor("tenant-2"));
+    assertEquals("other", tenantTags.tagFor("tenant-3"));
+    assertEquals("other", tenantTags.tagFor("tenant-4"));
+    // Tenants seen first keep their tag
+    assertEquals("tenant-1", tenantTags.tagFor("tenant-1"));
+  }
+
+  @Test
+  public void testTenantOfHeaders() {
+    Metadata headers = new Metadata();
+    assertEquals("none", GrpcTenantTags.tenantOf(headers));
+
+    headers.put(GrpcTenantTags.TENANT_ID_KEY, "tenant-1");
+    assertEquals("tenant-1", GrpcTenantTags.tenantOf(headers));
+  }
+}
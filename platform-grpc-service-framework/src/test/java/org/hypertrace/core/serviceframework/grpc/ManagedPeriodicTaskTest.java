@@ -0,0 +1,202 @@
+package org.hypertrace.core.serviceframework.grpc;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import io.micrometer.core.instrument.composite.CompositeMeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.hypertrace.core.serviceframework.grpc.PlatformPeriodicTaskDefinition.Schedule;
+import org.hypertrace.core.serviceframework.metrics.PlatformMetricsRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/** Unit tests for {@link ManagedPeriodicTask} */
+public class ManagedPeriodicTaskTest {
+  private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+  private ScheduledThreadPoolExecutor scheduler;
+  private ExecutorService workers;
+
+  @BeforeEach
+  public void setUp() {
+    ((CompositeMeterRegistry) PlatformMetricsRegistry.getMeterRegistry()).add(this.meterRegistry);
+    this.scheduler = new ScheduledThreadPoolExecutor(1);
+    this.scheduler.setRemoveOnCancelPolicy(true);
+    this.workers = Executors.newCachedThreadPool();
+  }
+
+  @AfterEach
+  public void tearDown() throws Exception {
+    this.scheduler.shutdownNow();
+    this.workers.shutdownNow();
+    assertTrue(this.workers.awaitTermination(10, TimeUnit.SECONDS));
+    PlatformMetricsRegistry.stop();
+  }
+
+  @Test
+  public void testRunsContinueAfterFailures() throws Exception {
+    CountDownLatch runs = new CountDownLatch(3);
+    ManagedPeriodicTask task =
+        this.start(
+            definition(
+                    () -> {
+                      runs.countDown();
+                      throw new IllegalStateException("Failed run");
+                    })
+                .build());
+
+    assertTrue(runs.await(10, TimeUnit.SECONDS));
+    task.cancel();
+  }
+
+  @Test
+  public void testFixedDelayRunsContinueAfterFailures() throws Exception {
+    CountDownLatch runs = new CountDownLatch(3);
+    ManagedPeriodicTask task =
+        this.start(
+            definition(
+                    () -> {
+                      runs.countDown();
+                      throw new IllegalStateException("Failed run");
+                    })
+                .schedule(Schedule.FIXED_DELAY)
+                .build());
+
+    assertTrue(runs.await(10, TimeUnit.SECONDS));
+    task.cancel();
+  }
+
+  @Test
+  public void testRunsTriggeredDuringARunAreSkipped() throws Exception {
+    BlockingRunnable runnable = new BlockingRunnable();
+    ManagedPeriodicTask task = this.start(definition(runnable).skipIfRunning(true).build());
+
+    assertTrue(runnable.firstRunStarted.await(10, TimeUnit.SECONDS));
+    this.awaitCount("periodic.task.skipped", 3);
+    assertEquals(1, runnable.started.get());
+    runnable.release.countDown();
+    assertTrue(runnable.runs.await(10, TimeUnit.SECONDS));
+    task.cancel();
+    assertFalse(runnable.overlapped.get());
+    assertEquals(1, this.count("periodic.task.overruns"));
+  }
+
+  @Test
+  public void testRunsTriggeredDuringARunAreDelayedByDefault() throws Exception {
+    BlockingRunnable runnable = new BlockingRunnable();
+    ManagedPeriodicTask task = this.start(definition(runnable).build());
+
+    assertTrue(runnable.firstRunStarted.await(10, TimeUnit.SECONDS));
+    Thread.sleep(50);
+    assertEquals(1, runnable.started.get());
+    runnable.release.countDown();
+    // The delayed runs start right after the first one, one at a time
+    assertTrue(runnable.runs.await(10, TimeUnit.SECONDS));
+    task.cancel();
+    assertFalse(runnable.overlapped.get());
+    assertEquals(0, this.count("periodic.task.skipped"));
+  }
+
+  @Test
+  public void testRunsAreInterruptedOnTimeout() throws Exception {
+    CountDownLatch interruptions = new CountDownLatch(2);
+    ManagedPeriodicTask task =
+        this.start(
+            definition(
+                    () -> {
+                      try {
+                        Thread.sleep(10_000);
+                      } catch (InterruptedException e) {
+                        interruptions.countDown();
+                      }
+                    })
+                .period(Duration.ofMillis(100))
+                .timeout(Duration.ofMillis(20))
+                .build());
+
+    assertTrue(interruptions.await(10, TimeUnit.SECONDS));
+    this.awaitCount("periodic.task.timeouts", 2);
+    task.cancel();
+  }
+
+  @Test
+  public void testTimeoutsAreCancelledOnceRunsEnd() throws Exception {
+    CountDownLatch runs = new CountDownLatch(3);
+    ManagedPeriodicTask task =
+        this.start(
+            definition(runs::countDown)
+                .period(Duration.ofMillis(10))
+                .timeout(Duration.ofHours(1))
+                .build());
+
+    assertTrue(runs.await(10, TimeUnit.SECONDS));
+    task.cancel();
+    Thread.sleep(50);
+    // Only the trigger could be left, and it's cancelled too
+    assertEquals(0, this.scheduler.getQueue().size());
+  }
+
+  private ManagedPeriodicTask start(PlatformPeriodicTaskDefinition definition) {
+    ManagedPeriodicTask task = new ManagedPeriodicTask(definition, this.scheduler, this.workers);
+    task.start();
+    return task;
+  }
+
+  private static PlatformPeriodicTaskDefinition.PlatformPeriodicTaskDefinitionBuilder definition(
+      Runnable runnable) {
+    return PlatformPeriodicTaskDefinition.builder()
+        .name("test-task")
+        .runnable(runnable)
+        .initialDelay(Duration.ZERO)
+        .period(Duration.ofMillis(10));
+  }
+
+  private double count(String name) {
+    return this.meterRegistry.get(name).tag("task", "test-task").counter().count();
+  }
+
+  private void awaitCount(String name, double count) throws InterruptedException {
+    long deadlineNanos = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+    while (this.count(name) < count) {
+      assertTrue(System.nanoTime() < deadlineNanos, name + " didn't reach " + count);
+      Thread.sleep(10);
+    }
+  }
+
+  /** Runnable whose first run blocks until released, and which records overlapping runs. */
+  private static final class BlockingRunnable implements Runnable {
+    private final CountDownLatch firstRunStarted = new CountDownLatch(1);
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final CountDownLatch runs = new CountDownLatch(3);
+    private final AtomicInteger started = new AtomicInteger();
+    private final AtomicBoolean running = new AtomicBoolean();
+    private final AtomicBoolean overlapped = new AtomicBoolean();
+
+    @Override
+    public void run() {
+      if (!this.running.compareAndSet(false, true)) {
+        this.overlapped.set(true);
+      }
+      try {
+        if (this.started.getAndIncrement() == 0) {
+          this.firstRunStarted.countDown();
+          this.release.await(10, TimeUnit.SECONDS);
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      } finally {
+        this.running.set(false);
+        this.runs.countDown();
+      }
+    }
+  }
+}
@@ -0,0 +1,65 @@
+package org.hypertrace.core.serviceframework.grpc;
+
+import io.grpc.health.v1.HealthCheckRequest;
+import io.grpc.health.v1.HealthCheckResponse;
+import io.grpc.health.v1.HealthCheckResponse.ServingStatus;
+import io.grpc.health.v1.HealthGrpc;
+import io.grpc.stub.StreamObserver;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A health service for tests: its checks can be held until released, and its watches send a
+ * serving status and a not serving status before completing.
+ */
+class TestHealthService extends HealthGrpc.HealthImplBase {
+  static final HealthCheckRequest REQUEST = HealthCheckRequest.getDefaultInstance();
+
+  private final CountDownLatch release;
+  private final Semaphore started = new Semaphore(0);
+
+  /** A service answering checks immediately. */
+  TestHealthService() {
+    this(new CountDownLatch(0));
+  }
+
+  /** A service answering checks once the latch is released. */
+  TestHealthService(CountDownLatch release) {
+    this.release = release;
+  }
+
+  /** Waits for one more check to be started. */
+  void awaitStarted() throws InterruptedException {
+    if (!this.started.tryAcquire(10, TimeUnit.SECONDS)) {
+      throw new IllegalStateException("No check started");
+    }
+  }
+
+  @Override
+  public void check(
+      HealthCheckRequest request, StreamObserver<HealthCheckResponse> responseObserver) {
+    this.started.release();
+    try {
+      if (!this.release.await(10, TimeUnit.SECONDS)) {
+        throw new IllegalStateException("Check not released");
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    responseObserver.onNext(response(ServingStatus.SERVING));
+    responseObserver.onCompleted();
+  }
+
+  @Override
+  public void watch(
+      HealthCheckRequest request, StreamObserver<HealthCheckResponse> responseObserver) {
+    responseObserver.onNext(response(ServingStatus.SERVING));
+    responseObserver.onNext(response(ServingStatus.NOT_SERVING));
+    responseObserver.onCompleted();
+  }
+
+  private static HealthCheckResponse response(ServingStatus status) {
+    return HealthCheckResponse.newBuilder().setStatus(status).build();
+  }
+}
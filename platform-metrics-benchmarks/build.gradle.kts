@@ -0,0 +1,20 @@
+plugins {
+  java
+  alias(localLibs.plugins.jmh)
+}
+
+// Not published, run with ./gradlew :platform-metrics-benchmarks:jmh
+dependencies {
+  jmh(projects.platformMetrics)
+  jmh(localLibs.micrometer.registry.prometheus.simpleclient)
+  jmh(commonLibs.typesafe.config)
+  jmhRuntimeOnly(commonLibs.log4j.slf4j2.impl)
+}
+
+jmh {
+  jmhVersion.set(localLibs.versions.jmh)
+  resultFormat.set("JSON")
+  resultsFile.set(layout.buildDirectory.file("results/jmh/results.json"))
+  // e.g. -PjmhIncludes=ResizeableGaugeBenchmark to run a subset of the benchmarks
+  providers.gradleProperty("jmhIncludes").orNull?.let { includes.add(it) }
+}
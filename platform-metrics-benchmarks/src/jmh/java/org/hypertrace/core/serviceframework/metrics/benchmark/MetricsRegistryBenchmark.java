@@ -0,0 +1,107 @@
+package org.hypertrace.core.serviceframework.metrics.benchmark;
+
+import com.typesafe.config.ConfigFactory;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tag;
+import io.micrometer.core.instrument.Tags;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.hypertrace.core.serviceframework.metrics.MeterFamily;
+import org.hypertrace.core.serviceframework.metrics.PlatformMetricsRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost of resolving a meter through {@link PlatformMetricsRegistry}, for the different ways
+ * callers give its tags. The lookups resolve meters that already exist, which is the common case
+ * on request paths, while {@link #registerAndRemove()} creates a new series every time.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MetricsRegistryBenchmark {
+  private static final String COUNTER_NAME = "benchmark.requests";
+
+  @Param({"0", "2", "8"})
+  public int tagCount;
+
+  private Map<String, String> tagMap;
+  private Tags tags;
+  private Tags newSeriesTags;
+  private String[] tagValues;
+  private MeterFamily<Counter> counterFamily;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    PlatformMetricsRegistry.initMetricsRegistry(
+        "benchmark", ConfigFactory.parseMap(Map.of("reporter.names", List.of("prometheus"))));
+
+    tagMap = new HashMap<>();
+    String[] tagKeys = new String[tagCount];
+    tagValues = new String[tagCount];
+    for (int i = 0; i < tagCount; i++) {
+      tagKeys[i] = "key" + i;
+      tagValues[i] = "value" + i;
+      tagMap.put(tagKeys[i], tagValues[i]);
+    }
+    List<Tag> tagList = new ArrayList<>();
+    tagMap.forEach((key, value) -> tagList.add(Tag.of(key, value)));
+    tags = Tags.of(tagList);
+    newSeriesTags = tags.and("series", "new");
+    counterFamily = PlatformMetricsRegistry.registerCounterFamily(COUNTER_NAME, tagKeys);
+
+    PlatformMetricsRegistry.registerCounter(COUNTER_NAME, tagMap);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    PlatformMetricsRegistry.stop();
+  }
+
+  @Benchmark
+  public Counter lookupWithTagMap() {
+    return PlatformMetricsRegistry.registerCounter(COUNTER_NAME, tagMap);
+  }
+
+  @Benchmark
+  public Counter lookupWithTags() {
+    return PlatformMetricsRegistry.registerCounter(COUNTER_NAME, tags);
+  }
+
+  @Benchmark
+  public Counter lookupThroughFamily() {
+    return counterFamily.labels(tagValues);
+  }
+
+  @Benchmark
+  public Counter lookupThroughMeterRegistry() {
+    return PlatformMetricsRegistry.getMeterRegistry().counter(COUNTER_NAME, tags);
+  }
+
+  // Bypasses the handle cache, which would keep returning the removed counter
+  @Benchmark
+  public Counter registerAndRemove() {
+    MeterRegistry meterRegistry = PlatformMetricsRegistry.getMeterRegistry();
+    Counter counter = meterRegistry.counter(COUNTER_NAME, newSeriesTags);
+    meterRegistry.remove(counter);
+    return counter;
+  }
+}
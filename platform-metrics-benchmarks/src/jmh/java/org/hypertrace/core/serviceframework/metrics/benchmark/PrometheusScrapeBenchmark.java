@@ -0,0 +1,74 @@
+package org.hypertrace.core.serviceframework.metrics.benchmark;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.prometheus.PrometheusConfig;
+import io.micrometer.prometheus.PrometheusMeterRegistry;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost of rendering a whole registry in the Prometheus text format, as done by every scrape of
+ * /metrics. One in ten series is a timer with a percentile histogram, the others are counters.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PrometheusScrapeBenchmark {
+
+  @Param({"1000", "10000", "50000"})
+  public int series;
+
+  private PrometheusMeterRegistry registry;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    registry = new PrometheusMeterRegistry(PrometheusConfig.DEFAULT);
+    for (int i = 0; i < series; i++) {
+      String method = "method" + (i % 100);
+      String tenant = "tenant" + (i / 100);
+      if (i % 10 == 0) {
+        Timer timer =
+            Timer.builder("benchmark.duration")
+                .tags("method", method, "tenant", tenant)
+                .publishPercentileHistogram()
+                .minimumExpectedValue(Duration.ofMillis(1))
+                .maximumExpectedValue(Duration.ofSeconds(60))
+                .register(registry);
+        timer.record(Duration.ofMillis(i % 1000));
+      } else {
+        Counter counter =
+            Counter.builder("benchmark.requests")
+                .tags("method", method, "tenant", tenant)
+                .register(registry);
+        counter.increment(i);
+      }
+    }
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    registry.close();
+  }
+
+  @Benchmark
+  public String scrape() {
+    return registry.scrape();
+  }
+}
@@ -0,0 +1,79 @@
+package org.hypertrace.core.serviceframework.metrics.benchmark;
+
+import com.typesafe.config.ConfigFactory;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Timer;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.hypertrace.core.serviceframework.metrics.PlatformMetricsRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost of recording on shared meters from several threads at once, with and without histograms.
+ * Run with -t to change the number of contending threads.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+public class RecordingBenchmark {
+
+  @Param({"false", "true"})
+  public boolean histogram;
+
+  private Counter counter;
+  private Timer timer;
+  private DistributionSummary summary;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    PlatformMetricsRegistry.initMetricsRegistry(
+        "benchmark", ConfigFactory.parseMap(Map.of("reporter.names", List.of("prometheus"))));
+
+    Map<String, String> tags = Map.of("method", "benchmark");
+    counter = PlatformMetricsRegistry.registerCounter("benchmark.requests", tags);
+    timer = PlatformMetricsRegistry.registerTimer("benchmark.duration", tags, histogram);
+    summary =
+        PlatformMetricsRegistry.registerDistributionSummary("benchmark.bytes", tags, histogram);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    PlatformMetricsRegistry.stop();
+  }
+
+  @Benchmark
+  public void incrementCounter() {
+    counter.increment();
+  }
+
+  @Benchmark
+  public void recordTimer() {
+    // Spread over the timer range, so that recordings land in different buckets
+    timer.record(ThreadLocalRandom.current().nextLong(1, 60_000), TimeUnit.MILLISECONDS);
+  }
+
+  @Benchmark
+  public void recordSummary() {
+    summary.record(ThreadLocalRandom.current().nextDouble(1, 1_000_000));
+  }
+}
@@ -0,0 +1,62 @@
+package org.hypertrace.core.serviceframework.metrics.benchmark;
+
+import com.typesafe.config.ConfigFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.hypertrace.core.serviceframework.metrics.Measurement;
+import org.hypertrace.core.serviceframework.metrics.PlatformMetricsRegistry;
+import org.hypertrace.core.serviceframework.metrics.ResizeableGauge;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Cost of reporting a full set of rows through a {@link ResizeableGauge}. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@org.openjdk.jmh.annotations.Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ResizeableGaugeBenchmark {
+
+  @Param({"10", "1000", "100000"})
+  public int rows;
+
+  private ResizeableGauge gauge;
+  private List<Measurement> measurements;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    PlatformMetricsRegistry.initMetricsRegistry(
+        "benchmark", ConfigFactory.parseMap(Map.of("reporter.names", List.of("prometheus"))));
+
+    gauge = PlatformMetricsRegistry.registerResizeableGauge("benchmark.rows");
+    measurements = new ArrayList<>(rows);
+    for (int i = 0; i < rows; i++) {
+      measurements.add(new Measurement(i, Map.of("row", String.valueOf(i), "kind", "benchmark")));
+    }
+    // Rows registered by the first report are only overwritten by the following ones
+    gauge.report(measurements);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    PlatformMetricsRegistry.stop();
+  }
+
+  @Benchmark
+  public void report() {
+    gauge.report(measurements);
+  }
+}
@@ -19,7 +19,6 @@ dependencies {
   implementation(localLibs.micrometer.jvm.extras)
   implementation(commonLibs.slf4j2.api)
   implementation(localLibs.dropwizard.metrics.jvm)
-  implementation(localLibs.prometheus.simpleclient.dropwizard)
   implementation(localLibs.prometheus.simpleclient.servlet.jakarta)
   implementation(localLibs.prometheus.simpleclient.pushgateway)
   implementation(commonLibs.jetty.servlet)
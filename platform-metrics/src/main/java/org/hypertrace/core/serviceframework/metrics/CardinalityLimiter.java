@@ -0,0 +1,209 @@
+package org.hypertrace.core.serviceframework.metrics;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tag;
+import io.micrometer.core.instrument.config.MeterFilter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Caps the number of series registered per metric name. Once a metric reaches its limit, any new
+ * tag combination is folded into a single overflow series, where every tag value (apart from the
+ * common tags) is replaced by {@value #OVERFLOW_TAG_VALUE}.
+ *
+ * <p>The limiter also accounts for what it sees: it exports the live series count and an estimate
+ * of the bytes held by the meters of the metric names with an explicit limit, and of the others
+ * once they reach half of the default limit, so the component exploding the registry can be
+ * identified without doubling the number of metric names.
+ */
+class CardinalityLimiter implements MeterFilter {
+  private static final Logger LOGGER = LoggerFactory.getLogger(CardinalityLimiter.class);
+
+  static final String OVERFLOW_TAG_VALUE = "other";
+  static final String SERIES_GAUGE = "metrics.cardinality.series";
+  static final String ESTIMATED_BYTES_GAUGE = "metrics.cardinality.estimated.bytes";
+  private static final String METRIC_TAG = "metric";
+  private static final String SELF_ACCOUNTING_PREFIX = "metrics.cardinality.";
+
+  // Rough per meter footprints, only meant to rank metric names against each other.
+  private static final long METER_BYTES = 256;
+  private static final long TAG_BYTES = 64;
+  private static final long DISTRIBUTION_BYTES = 8 * 1024;
+
+  private final MeterRegistry registry;
+  private final int defaultLimit;
+  private final Map<String, Integer> limits;
+  private final Set<String> preservedTagKeys;
+  private final ConcurrentMap<String, SeriesTracker> trackers = new ConcurrentHashMap<>();
+
+  CardinalityLimiter(
+      MeterRegistry registry,
+      int defaultLimit,
+      Map<String, Integer> limits,
+      Set<String> preservedTagKeys) {
+    this.registry = registry;
+    this.defaultLimit = defaultLimit;
+    this.limits = Map.copyOf(limits);
+    this.preservedTagKeys = Set.copyOf(preservedTagKeys);
+  }
+
+  /**
+   * Installs the limiter on its registry. It must be the last filter of the registry, so that it
+   * sees the same ids as the registered meters.
+   */
+  CardinalityLimiter install() {
+    registry.config().meterFilter(this).onMeterRemoved(this::onMeterRemoved);
+    return this;
+  }
+
+  @Override
+  public Meter.Id map(Meter.Id id) {
+    if (id.getName().startsWith(SELF_ACCOUNTING_PREFIX)) {
+      return id;
+    }
+    return trackerFor(id.getName()).admit(id);
+  }
+
+  int limitFor(String name) {
+    return limits.getOrDefault(name, defaultLimit);
+  }
+
+  private void onMeterRemoved(Meter meter) {
+    SeriesTracker tracker = trackers.get(meter.getId().getName());
+    if (tracker != null) {
+      tracker.remove(meter.getId());
+    }
+  }
+
+  private SeriesTracker trackerFor(String name) {
+    SeriesTracker tracker = trackers.get(name);
+    if (tracker != null) {
+      return tracker;
+    }
+    boolean explicitLimit = limits.containsKey(name);
+    SeriesTracker newTracker =
+        new SeriesTracker(name, limitFor(name), explicitLimit ? 0 : defaultLimit / 2);
+    tracker = trackers.putIfAbsent(name, newTracker);
+    return tracker != null ? tracker : newTracker;
+  }
+
+  static long estimateBytes(Meter.Id id) {
+    long bytes = METER_BYTES;
+    for (Tag tag : id.getTagsAsIterable()) {
+      bytes += TAG_BYTES + 2L * (tag.getKey().length() + tag.getValue().length());
+    }
+    switch (id.getType()) {
+      case TIMER:
+      case DISTRIBUTION_SUMMARY:
+      case LONG_TASK_TIMER:
+        bytes += DISTRIBUTION_BYTES;
+        break;
+      default:
+        break;
+    }
+    return bytes;
+  }
+
+  private class SeriesTracker {
+    private final String name;
+    private final int limit;
+    private final int accountingThreshold;
+    private final Set<Meter.Id> series = ConcurrentHashMap.newKeySet();
+    private final AtomicLong estimatedBytes = new AtomicLong();
+    private volatile Meter.Id overflowId;
+    private boolean accounted;
+
+    SeriesTracker(String name, int limit, int accountingThreshold) {
+      this.name = name;
+      this.limit = limit;
+      this.accountingThreshold = accountingThreshold;
+    }
+
+    Meter.Id admit(Meter.Id id) {
+      if (series.contains(id)) {
+        return id;
+      }
+      synchronized (this) {
+        if (series.contains(id)) {
+          return id;
+        }
+        Meter.Id currentOverflowId = overflowId;
+        int overflowSeries =
+            currentOverflowId != null && series.contains(currentOverflowId) ? 1 : 0;
+        int limitedSeries = series.size() - overflowSeries;
+        if (limitedSeries < limit) {
+          add(id);
+          return id;
+        }
+        if (currentOverflowId == null) {
+          LOGGER.warn(
+              "Metric {} reached its cardinality limit of {} series, folding new tag values into"
+                  + " the '{}' series",
+              name,
+              limit,
+              OVERFLOW_TAG_VALUE);
+          currentOverflowId = overflowIdFor(id);
+          overflowId = currentOverflowId;
+        }
+        if (!series.contains(currentOverflowId)) {
+          add(currentOverflowId);
+        }
+        return currentOverflowId;
+      }
+    }
+
+    synchronized void remove(Meter.Id id) {
+      if (series.remove(id)) {
+        estimatedBytes.addAndGet(-estimateBytes(id));
+      }
+    }
+
+    double seriesCount() {
+      return series.size();
+    }
+
+    double estimatedBytes() {
+      return estimatedBytes.get();
+    }
+
+    private void add(Meter.Id id) {
+      series.add(id);
+      estimatedBytes.addAndGet(estimateBytes(id));
+      if (!accounted && series.size() >= accountingThreshold) {
+        accounted = true;
+        registerGauges();
+      }
+    }
+
+    private void registerGauges() {
+      // Registering the gauges maps their ids through this filter again, which skips them by name.
+      Gauge.builder(SERIES_GAUGE, this, SeriesTracker::seriesCount)
+          .tag(METRIC_TAG, name)
+          .register(registry);
+      Gauge.builder(ESTIMATED_BYTES_GAUGE, this, SeriesTracker::estimatedBytes)
+          .tag(METRIC_TAG, name)
+          .baseUnit("bytes")
+          .register(registry);
+    }
+
+    private Meter.Id overflowIdFor(Meter.Id id) {
+      List<Tag> foldedTags = new ArrayList<>();
+      for (Tag tag : id.getTagsAsIterable()) {
+        foldedTags.add(
+            preservedTagKeys.contains(tag.getKey())
+                ? tag
+                : Tag.of(tag.getKey(), OVERFLOW_TAG_VALUE));
+      }
+      return id.replaceTags(foldedTags);
+    }
+  }
+}
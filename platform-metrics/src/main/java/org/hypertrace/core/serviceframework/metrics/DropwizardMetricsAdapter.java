@@ -0,0 +1,242 @@
+package org.hypertrace.core.serviceframework.metrics;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Counting;
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Metric;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.MetricRegistryListener;
+import com.codahale.metrics.MetricSet;
+import com.codahale.metrics.Sampling;
+import com.codahale.metrics.Snapshot;
+import com.codahale.metrics.Timer;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.function.ToDoubleFunction;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Registers legacy Dropwizard metrics directly as Micrometer function meters, so they are read
+ * from the Dropwizard objects when reported, like any other meter, instead of going through a
+ * second registry and its conversion on every scrape.
+ *
+ * <p>Metrics are mapped the same way the Prometheus Dropwizard exporter did, keeping its series
+ * names: counters and gauges become gauges, meters become counters, and histograms and timers
+ * become quantile gauges, in seconds for timers, plus a gauge of their sample count. The quantiles
+ * of a metric are all read from one snapshot of its reservoir, taken at most once per second. The
+ * adapter is also a {@link MetricRegistryListener}, to keep binding the metrics of a {@link
+ * MetricRegistry} as they are added and removed.
+ */
+class DropwizardMetricsAdapter extends MetricRegistryListener.Base {
+  private static final Logger LOGGER = LoggerFactory.getLogger(DropwizardMetricsAdapter.class);
+
+  private static final double[] QUANTILES = {0.5, 0.75, 0.95, 0.98, 0.99, 0.999};
+  private static final String QUANTILE_TAG = "quantile";
+  private static final double NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+  // Long enough for the quantile gauges of a report to share a snapshot
+  private static final long SNAPSHOT_TTL_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+  private final Supplier<MeterRegistry> registrySupplier;
+  private final ConcurrentMap<String, BoundMetric> boundMetrics = new ConcurrentHashMap<>();
+
+  DropwizardMetricsAdapter(Supplier<MeterRegistry> registrySupplier) {
+    this.registrySupplier = registrySupplier;
+  }
+
+  /**
+   * Registers the meters of the given metric under the given name. A name that is already bound
+   * is left untouched, like re-registering a metric with the Dropwizard registry used to be.
+   */
+  void bind(String name, Metric metric) {
+    if (metric instanceof MetricSet) {
+      for (Map.Entry<String, Metric> entry : ((MetricSet) metric).getMetrics().entrySet()) {
+        bind(MetricRegistry.name(name, entry.getKey()), entry.getValue());
+      }
+      return;
+    }
+    if (boundMetrics.containsKey(name)) {
+      return;
+    }
+    boundMetrics.computeIfAbsent(name, key -> toBoundMetric(registrySupplier.get(), key, metric));
+  }
+
+  /** Removes the meters registered for the given name, if any. */
+  void unbind(String name) {
+    BoundMetric boundMetric = boundMetrics.remove(name);
+    if (boundMetric != null) {
+      MeterRegistry registry = registrySupplier.get();
+      boundMetric.meters.forEach(registry::remove);
+    }
+  }
+
+  /** Forgets the bound metrics, once their meters have been removed along with their registry. */
+  void clear() {
+    boundMetrics.clear();
+  }
+
+  @Override
+  public void onGaugeAdded(String name, com.codahale.metrics.Gauge<?> gauge) {
+    bind(name, gauge);
+  }
+
+  @Override
+  public void onGaugeRemoved(String name) {
+    unbind(name);
+  }
+
+  @Override
+  public void onCounterAdded(String name, Counter counter) {
+    bind(name, counter);
+  }
+
+  @Override
+  public void onCounterRemoved(String name) {
+    unbind(name);
+  }
+
+  @Override
+  public void onHistogramAdded(String name, Histogram histogram) {
+    bind(name, histogram);
+  }
+
+  @Override
+  public void onHistogramRemoved(String name) {
+    unbind(name);
+  }
+
+  @Override
+  public void onMeterAdded(String name, com.codahale.metrics.Meter meter) {
+    bind(name, meter);
+  }
+
+  @Override
+  public void onMeterRemoved(String name) {
+    unbind(name);
+  }
+
+  @Override
+  public void onTimerAdded(String name, Timer timer) {
+    bind(name, timer);
+  }
+
+  @Override
+  public void onTimerRemoved(String name) {
+    unbind(name);
+  }
+
+  private static BoundMetric toBoundMetric(MeterRegistry registry, String name, Metric metric) {
+    if (metric instanceof Timer) {
+      SnapshotCache<Timer> snapshots = new SnapshotCache<>((Timer) metric);
+      return new BoundMetric(snapshots, quantilesOf(registry, name, snapshots, NANOS_PER_SECOND));
+    }
+    if (metric instanceof Histogram) {
+      SnapshotCache<Histogram> snapshots = new SnapshotCache<>((Histogram) metric);
+      return new BoundMetric(snapshots, quantilesOf(registry, name, snapshots, 1));
+    }
+    List<Meter> meters = new ArrayList<>();
+    if (metric instanceof com.codahale.metrics.Gauge) {
+      meters.add(
+          Gauge.builder(
+                  name,
+                  (com.codahale.metrics.Gauge<?>) metric,
+                  DropwizardMetricsAdapter::gaugeValue)
+              .register(registry));
+    } else if (metric instanceof Counter) {
+      // Dropwizard counters can be decremented
+      meters.add(Gauge.builder(name, (Counter) metric, Counter::getCount).register(registry));
+    } else if (metric instanceof com.codahale.metrics.Meter) {
+      meters.add(countOf(registry, name, (com.codahale.metrics.Meter) metric));
+    } else {
+      LOGGER.warn("Cannot report metric {} of unsupported type {}", name, metric.getClass());
+    }
+    return new BoundMetric(metric, meters);
+  }
+
+  private static Meter countOf(MeterRegistry registry, String name, Counting counting) {
+    return FunctionCounter.builder(name, counting, Counting::getCount).register(registry);
+  }
+
+  /**
+   * Returns the quantile gauges and the sample count gauge of a sampling metric. Plain gauges
+   * without base unit are used, as time gauges and counters would get a unit or "_total" suffix.
+   */
+  private static <T extends Sampling & Counting> List<Meter> quantilesOf(
+      MeterRegistry registry, String name, SnapshotCache<T> snapshots, double divisor) {
+    List<Meter> meters = new ArrayList<>();
+    for (double quantile : QUANTILES) {
+      ToDoubleFunction<SnapshotCache<T>> value =
+          cache -> cache.snapshot().getValue(quantile) / divisor;
+      meters.add(
+          Gauge.builder(name, snapshots, value)
+              .tag(QUANTILE_TAG, String.valueOf(quantile))
+              .register(registry));
+    }
+    meters.add(
+        Gauge.builder(name + ".count", snapshots, cache -> cache.sampling.getCount())
+            .register(registry));
+    return meters;
+  }
+
+  private static double gaugeValue(com.codahale.metrics.Gauge<?> gauge) {
+    Object value = gauge.getValue();
+    if (value instanceof Number) {
+      return ((Number) value).doubleValue();
+    }
+    if (value instanceof Boolean) {
+      return ((Boolean) value) ? 1 : 0;
+    }
+    return Double.NaN;
+  }
+
+  /** Meters only weakly reference their objects, so the object they read from is held here. */
+  private static class BoundMetric {
+    private final Object measured;
+    private final List<Meter> meters;
+
+    BoundMetric(Object measured, List<Meter> meters) {
+      this.measured = measured;
+      this.meters = meters;
+    }
+  }
+
+  /** Latest snapshot of a sampling metric, taken again once older than its time to live. */
+  private static class SnapshotCache<T extends Sampling & Counting> {
+    private final T sampling;
+    private volatile TakenSnapshot latest;
+
+    SnapshotCache(T sampling) {
+      this.sampling = sampling;
+    }
+
+    Snapshot snapshot() {
+      long nowNanos = System.nanoTime();
+      TakenSnapshot taken = latest;
+      if (taken == null || nowNanos - taken.takenNanos >= SNAPSHOT_TTL_NANOS) {
+        // Concurrent reads may both take one, the latest wins
+        taken = new TakenSnapshot(sampling.getSnapshot(), nowNanos);
+        latest = taken;
+      }
+      return taken.snapshot;
+    }
+  }
+
+  private static class TakenSnapshot {
+    private final Snapshot snapshot;
+    private final long takenNanos;
+
+    TakenSnapshot(Snapshot snapshot, long takenNanos) {
+      this.snapshot = snapshot;
+      this.takenNanos = takenNanos;
+    }
+  }
+}
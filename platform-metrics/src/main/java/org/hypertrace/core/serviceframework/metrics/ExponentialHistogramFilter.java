@@ -0,0 +1,129 @@
+package org.hypertrace.core.serviceframework.metrics;
+
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.config.MeterFilter;
+import io.micrometer.core.instrument.distribution.DistributionStatisticConfig;
+import java.time.Duration;
+import java.util.Set;
+
+/**
+ * Switches timers and distribution summaries to {@link HistogramMode#EXPONENTIAL}: client side
+ * percentiles and the dense percentile histogram are replaced by buckets on an exponential scale,
+ * i.e. boundaries at {@code base^i} with {@code base = 2^(2^-scale)}.
+ *
+ * <p>The bucket range is taken from the meter's expected minimum and maximum values when given.
+ * The scale is lowered until the range fits in {@link #MAX_BUCKETS}, the same way OpenTelemetry
+ * exponential histograms downscale.
+ *
+ * <p>Every bucket is a series of its own, so a meter typically exports tens of bucket series
+ * instead of a handful of percentiles. When enabled for all the metrics, only the meters which
+ * already publish a percentile histogram are switched, and meters with explicit buckets keep them.
+ * Listed metrics are always switched.
+ */
+class ExponentialHistogramFilter implements MeterFilter {
+  static final int MIN_SCALE = -4;
+  static final int MAX_SCALE = 8;
+  static final int MAX_BUCKETS = 160;
+
+  private static final double DEFAULT_TIMER_MIN_NANOS = Duration.ofMillis(1).toNanos();
+  private static final double DEFAULT_TIMER_MAX_NANOS = Duration.ofSeconds(60).toNanos();
+  private static final double DEFAULT_SUMMARY_MIN = 1;
+  private static final double DEFAULT_SUMMARY_MAX = 1L << 30;
+
+  private final Set<String> metricNames;
+  private final boolean allMetrics;
+  private final int scale;
+
+  /**
+   * @param metricNames the metrics to switch to exponential histograms, or all of the histogram
+   *     meters when null
+   * @param scale the resolution of the buckets, between {@link #MIN_SCALE} and {@link #MAX_SCALE}
+   */
+  ExponentialHistogramFilter(Set<String> metricNames, int scale) {
+    if (scale < MIN_SCALE || scale > MAX_SCALE) {
+      throw new IllegalArgumentException(
+          String.format(
+              "Exponential histogram scale must be between %d and %d, got %d",
+              MIN_SCALE,
+              MAX_SCALE,
+              scale));
+    }
+    this.allMetrics = metricNames == null;
+    this.metricNames = allMetrics ? Set.of() : Set.copyOf(metricNames);
+    this.scale = scale;
+  }
+
+  @Override
+  public DistributionStatisticConfig configure(Meter.Id id, DistributionStatisticConfig config) {
+    if (!appliesTo(id, config)) {
+      return config;
+    }
+    boolean timer = id.getType() == Meter.Type.TIMER;
+    double min =
+        valueOrDefault(
+            config.getMinimumExpectedValueAsDouble(),
+            timer ? DEFAULT_TIMER_MIN_NANOS : DEFAULT_SUMMARY_MIN);
+    double max =
+        valueOrDefault(
+            config.getMaximumExpectedValueAsDouble(),
+            timer ? DEFAULT_TIMER_MAX_NANOS : DEFAULT_SUMMARY_MAX);
+    return DistributionStatisticConfig.builder()
+        .percentiles(new double[0])
+        .percentilesHistogram(false)
+        .serviceLevelObjectives(bucketBoundaries(min, max, scale))
+        .build()
+        .merge(config);
+  }
+
+  private boolean appliesTo(Meter.Id id, DistributionStatisticConfig config) {
+    if (id.getType() != Meter.Type.TIMER && id.getType() != Meter.Type.DISTRIBUTION_SUMMARY) {
+      return false;
+    }
+    if (!allMetrics) {
+      return metricNames.contains(id.getName());
+    }
+    double[] buckets = config.getServiceLevelObjectiveBoundaries();
+    return Boolean.TRUE.equals(config.isPercentileHistogram())
+        && (buckets == null || buckets.length == 0);
+  }
+
+  /**
+   * Returns the boundaries {@code base^i} covering [min, max]. Boundaries only depend on the
+   * scale, so the buckets of meters with different ranges still line up.
+   */
+  static double[] bucketBoundaries(double min, double max, int scale) {
+    double lower = Math.max(min, Double.MIN_NORMAL);
+    double upper = Math.max(max, lower);
+    int effectiveScale = scale;
+    long firstIndex = indexFor(lower, effectiveScale);
+    long lastIndex = indexFor(upper, effectiveScale);
+    while (lastIndex - firstIndex + 1 > MAX_BUCKETS && effectiveScale > MIN_SCALE) {
+      effectiveScale--;
+      firstIndex = indexFor(lower, effectiveScale);
+      lastIndex = indexFor(upper, effectiveScale);
+    }
+
+    int bucketCount = (int) Math.min(lastIndex - firstIndex + 1, MAX_BUCKETS);
+    double[] boundaries = new double[bucketCount];
+    for (int i = 0; i < bucketCount; i++) {
+      boundaries[i] = Math.pow(2, Math.scalb((double) (firstIndex + i), -effectiveScale));
+    }
+    return boundaries;
+  }
+
+  // Index of the bucket (base^(i-1), base^i] holding the given value
+  private static long indexFor(double value, int scale) {
+    return (long) Math.ceil(Math.scalb(log2(value), scale));
+  }
+
+  // Exact for powers of 2, so values on a boundary are not pushed into the next bucket
+  private static double log2(double value) {
+    int exponent = Math.getExponent(value);
+    double mantissa = Math.scalb(value, -exponent);
+    return exponent + Math.log(mantissa) / Math.log(2);
+  }
+
+  private static double valueOrDefault(Double value, double defaultValue) {
+    return value == null ? defaultValue : value;
+  }
+}
@@ -0,0 +1,17 @@
+package org.hypertrace.core.serviceframework.metrics;
+
+/** How the framework's timers and distribution summaries report their distributions. */
+public enum HistogramMode {
+  /**
+   * Client side percentiles, plus the dense percentile histogram buckets for meters registered with
+   * histograms enabled.
+   */
+  CLASSIC,
+  /**
+   * Exponential histogram buckets only, for the meters registered with histograms enabled, the
+   * others keeping the classic percentiles. Bucket boundaries are powers of {@code 2^(2^-scale)},
+   * so the same boundaries are shared by every instance and every meter, and the histograms stay
+   * mergeable across them.
+   */
+  EXPONENTIAL
+}
@@ -0,0 +1,150 @@
+package org.hypertrace.core.serviceframework.metrics;
+
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.Tags;
+import java.util.Arrays;
+import java.util.function.BiFunction;
+
+/**
+ * A family of meters sharing a name and a fixed list of tag keys, where each child meter is
+ * identified by its tag values only. Resolving a child through {@link #labels(String...)} is a
+ * lock-free lookup in a striped cache keyed by the tag values, so hot paths don't build a tag map
+ * or go through the registry's meter lookup for every recording.
+ *
+ * <p>Families are created through {@link PlatformMetricsRegistry}, e.g. {@link
+ * PlatformMetricsRegistry#registerCounterFamily(String, String...)}. Child meters are bound to the
+ * registry they were first resolved against, so a family should not outlive {@link
+ * PlatformMetricsRegistry#stop()}.
+ */
+public class MeterFamily<M extends Meter> {
+  private static final int STRIPE_COUNT = 16;
+  private static final int STRIPE_SHIFT =
+      Integer.SIZE - Integer.numberOfTrailingZeros(STRIPE_COUNT);
+
+  private final String name;
+  private final String[] tagKeys;
+  private final BiFunction<String, Tags, M> meterResolver;
+  private final Stripe<M>[] stripes;
+
+  @SuppressWarnings("unchecked")
+  MeterFamily(String name, String[] tagKeys, BiFunction<String, Tags, M> meterResolver) {
+    this.name = name;
+    this.tagKeys = tagKeys.clone();
+    this.meterResolver = meterResolver;
+    this.stripes = (Stripe<M>[]) new Stripe<?>[STRIPE_COUNT];
+    for (int i = 0; i < STRIPE_COUNT; i++) {
+      this.stripes[i] = new Stripe<>();
+    }
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  /**
+   * Returns the child meter for the given tag values, registering it on first use. Values must be
+   * given in the same order as the tag keys the family was registered with, and must not be null.
+   */
+  public M labels(String... tagValues) {
+    if (tagValues.length != tagKeys.length) {
+      throw new IllegalArgumentException(
+          String.format(
+              "Meter family %s expects %d tag values but got %d",
+              name,
+              tagKeys.length,
+              tagValues.length));
+    }
+    int hash = Arrays.hashCode(tagValues);
+    Stripe<M> stripe = stripes[(hash * 0x9E3779B9) >>> STRIPE_SHIFT];
+    M meter = stripe.find(hash, tagValues);
+    if (meter != null) {
+      return meter;
+    }
+    return stripe.insert(hash, tagValues, this);
+  }
+
+  private M resolve(String[] tagValues) {
+    String[] keyValues = new String[tagKeys.length * 2];
+    for (int i = 0; i < tagKeys.length; i++) {
+      // Only checked for new children, the cached ones never match a null value
+      if (tagValues[i] == null) {
+        throw new IllegalArgumentException(
+            String.format("Meter family %s got a null value for tag %s", name, tagKeys[i]));
+      }
+      keyValues[2 * i] = tagKeys[i];
+      keyValues[2 * i + 1] = tagValues[i];
+    }
+    return meterResolver.apply(name, Tags.of(keyValues));
+  }
+
+  /**
+   * A copy-on-write hash table. Reads only dereference the volatile table and immutable nodes, so
+   * they never lock; inserts are rare (a new tag combination) and serialized per stripe.
+   */
+  private static final class Stripe<M extends Meter> {
+    private static final int INITIAL_CAPACITY = 8;
+
+    @SuppressWarnings("unchecked")
+    private volatile Node<M>[] table = (Node<M>[]) new Node<?>[INITIAL_CAPACITY];
+
+    private int size;
+
+    M find(int hash, String[] tagValues) {
+      Node<M>[] currentTable = table;
+      Node<M> node = currentTable[indexFor(hash, currentTable.length)];
+      while (node != null) {
+        if (node.hash == hash && Arrays.equals(node.tagValues, tagValues)) {
+          return node.meter;
+        }
+        node = node.next;
+      }
+      return null;
+    }
+
+    synchronized M insert(int hash, String[] tagValues, MeterFamily<M> family) {
+      M existing = find(hash, tagValues);
+      if (existing != null) {
+        return existing;
+      }
+      M meter = family.resolve(tagValues);
+
+      Node<M>[] newTable = (size + 1) > table.length * 3 / 4 ? resize(table) : table.clone();
+      int index = indexFor(hash, newTable.length);
+      // Copy the values, the caller is free to reuse its array.
+      newTable[index] = new Node<>(hash, tagValues.clone(), meter, newTable[index]);
+      size++;
+      table = newTable;
+      return meter;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <M extends Meter> Node<M>[] resize(Node<M>[] oldTable) {
+      Node<M>[] newTable = (Node<M>[]) new Node<?>[oldTable.length * 2];
+      for (Node<M> head : oldTable) {
+        for (Node<M> node = head; node != null; node = node.next) {
+          int index = indexFor(node.hash, newTable.length);
+          newTable[index] = new Node<>(node.hash, node.tagValues, node.meter, newTable[index]);
+        }
+      }
+      return newTable;
+    }
+
+    private static int indexFor(int hash, int length) {
+      return (hash ^ (hash >>> 16)) & (length - 1);
+    }
+  }
+
+  private static final class Node<M extends Meter> {
+    final int hash;
+    final String[] tagValues;
+    final M meter;
+    final Node<M> next;
+
+    Node(int hash, String[] tagValues, M meter, Node<M> next) {
+      this.hash = hash;
+      this.tagValues = tagValues;
+      this.meter = meter;
+      this.next = next;
+    }
+  }
+}
@@ -0,0 +1,56 @@
+package org.hypertrace.core.serviceframework.metrics;
+
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.Tags;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiFunction;
+
+/**
+ * Caches meters resolved against the meter registry by name and interned {@link Tags}, so that a
+ * repeated registration of the same meter is a lock-free map lookup instead of a full registry
+ * lookup that builds a new meter id each time.
+ *
+ * <p>Cached meters are bound to the registry they were resolved against. The cache must be cleared
+ * whenever the registry is replaced, and meters removed directly from the registry are not evicted.
+ */
+class MeterHandleCache<M extends Meter> {
+  private final int maxSize;
+  private final AtomicInteger size = new AtomicInteger();
+  private final ConcurrentMap<String, ConcurrentMap<Tags, M>> handlesByName =
+      new ConcurrentHashMap<>();
+
+  MeterHandleCache(int maxSize) {
+    this.maxSize = maxSize;
+  }
+
+  M get(String name, Tags tags, BiFunction<String, Tags, M> meterResolver) {
+    ConcurrentMap<Tags, M> handlesByTags = handlesByName.get(name);
+    if (handlesByTags != null) {
+      M handle = handlesByTags.get(tags);
+      if (handle != null) {
+        return handle;
+      }
+    }
+
+    M meter = meterResolver.apply(name, tags);
+    if (size.get() >= maxSize) {
+      return meter;
+    }
+    if (handlesByTags == null) {
+      handlesByTags = handlesByName.computeIfAbsent(name, unused -> new ConcurrentHashMap<>());
+    }
+    M existing = handlesByTags.putIfAbsent(tags, meter);
+    if (existing != null) {
+      return existing;
+    }
+    size.incrementAndGet();
+    return meter;
+  }
+
+  void clear() {
+    handlesByName.clear();
+    size.set(0);
+  }
+}
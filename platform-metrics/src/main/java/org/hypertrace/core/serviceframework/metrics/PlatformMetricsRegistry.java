@@ -1,10 +1,10 @@
 package org.hypertrace.core.serviceframework.metrics;
 
-import com.codahale.metrics.ConsoleReporter;
 import com.codahale.metrics.Metric;
 import com.codahale.metrics.MetricRegistry;
 import com.google.common.cache.Cache;
 import com.typesafe.config.Config;
+import com.typesafe.config.ConfigUtil;
 import io.github.mweirauch.micrometer.jvm.extras.ProcessMemoryMetrics;
 import io.github.mweirauch.micrometer.jvm.extras.ProcessThreadMetrics;
 import io.micrometer.common.util.StringUtils;
@@ -16,6 +16,7 @@ import io.micrometer.core.instrument.ImmutableTag;
 import io.micrometer.core.instrument.MeterRegistry;
 import io.micrometer.core.instrument.MultiGauge;
 import io.micrometer.core.instrument.Tag;
+import io.micrometer.core.instrument.Tags;
 import io.micrometer.core.instrument.Timer;
 import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
 import io.micrometer.core.instrument.binder.cache.GuavaCacheMetrics;
@@ -39,8 +40,6 @@ import io.micrometer.core.lang.Nullable;
 import io.micrometer.prometheus.PrometheusConfig;
 import io.micrometer.prometheus.PrometheusMeterRegistry;
 import io.prometheus.client.CollectorRegistry;
-import io.prometheus.client.dropwizard.DropwizardExports;
-import io.prometheus.client.exporter.PushGateway;
 import java.time.Duration;
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -50,8 +49,9 @@ import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.concurrent.TimeUnit;
+import org.hypertrace.core.serviceframework.metrics.config.OtlpRegistryConfig;
 import org.hypertrace.core.serviceframework.metrics.config.PrometheusPushRegistryConfig;
+import org.hypertrace.core.serviceframework.metrics.registry.OtlpMeterRegistry;
 import org.hypertrace.core.serviceframework.metrics.registry.PrometheusPushMeterRegistry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -75,7 +75,10 @@ public class PlatformMetricsRegistry {
   private static final String LOGGING_REPORTER_NAME = "logging";
   private static final String TESTING_REPORTER_NAME = "testing";
   private static final String CONSOLE_REPORTER_NAME = "console";
+  private static final String OTLP_REPORTER_NAME = "otlp";
   private static final String CACHE_MAX_SIZE_GAUGE = "cache.max.size";
+  private static final int MAX_INTERNED_TAG_SETS = 10_000;
+  private static final int MAX_CACHED_METER_HANDLES = 50_000;
 
   /**
    * List of tags that need to be reported for all the metrics reported by this service. The tags
@@ -87,57 +90,128 @@ public class PlatformMetricsRegistry {
    */
   private static final String METRICS_DEFAULT_TAGS_CONFIG_KEY = "defaultTags";
 
-  private static final MetricRegistry METRIC_REGISTRY = new MetricRegistry();
+  /**
+   * Caps the number of series per metric name. Once a metric reaches its limit, new tag
+   * combinations are folded into a single series whose tag values are "other". The limits are
+   * given per metric name, with an optional default for all the other metrics. Example:
+   *
+   * <pre>
+   * cardinality {
+   *   defaultLimit = 10000
+   *   limits { "grpc.server.processing.duration" = 2000 }
+   * }
+   * </pre>
+   *
+   * <p>When configured, the live series count and estimated bytes of every metric name are
+   * reported as the "metrics.cardinality.series" and "metrics.cardinality.estimated.bytes" gauges.
+   */
+  private static final String METRICS_CARDINALITY_CONFIG_KEY = "cardinality";
+
+  private static final String CARDINALITY_DEFAULT_LIMIT_CONFIG_KEY = "defaultLimit";
+  private static final String CARDINALITY_LIMITS_CONFIG_KEY = "limits";
+
+  /**
+   * Selects how timers and distribution summaries report their distributions, see {@link
+   * HistogramMode}. The exponential mode can be enabled for all the meters registered with
+   * histograms, or only for the listed metrics while the others stay classic. Listed metrics
+   * export one series per bucket, up to 160, even when they previously only had percentiles.
+   * Example:
+   *
+   * <pre>
+   * histogram {
+   *   mode = classic
+   *   exponential {
+   *     metrics = ["grpc.server.processing.duration"]
+   *     scale = 1
+   *   }
+   * }
+   * </pre>
+   */
+  private static final String METRICS_HISTOGRAM_CONFIG_KEY = "histogram";
+
+  private static final String HISTOGRAM_MODE_CONFIG_KEY = "mode";
+  private static final String HISTOGRAM_EXPONENTIAL_METRICS_CONFIG_KEY = "exponential.metrics";
+  private static final String HISTOGRAM_EXPONENTIAL_SCALE_CONFIG_KEY = "exponential.scale";
+  private static final int DEFAULT_EXPONENTIAL_HISTOGRAM_SCALE = 1;
+
   public static final List<String> DEFAULT_METRICS_REPORTERS = List.of("prometheus");
 
-  private static ConsoleReporter consoleReporter;
+  /**
+   * Legacy Dropwizard metrics are registered directly as meters of {@link #meterRegistry}, see
+   * {@link #register(String, Metric)}.
+   */
+  private static final DropwizardMetricsAdapter DROPWIZARD_METRICS =
+      new DropwizardMetricsAdapter(() -> PlatformMetricsRegistry.meterRegistry);
+
+  private static MetricRegistry legacyMetricRegistry;
   private static String metricsPrefix;
   private static boolean isInit = false;
+  // Whether the composite registry was handed out by getMeterRegistry() before initialization
+  private static volatile boolean compositeRegistryShared = false;
 
   /**
-   * Main MetricMeter registry, with which all the metrics should be registered. We use a {@link
-   * CompositeMeterRegistry} here so that we can even registry multiple registries like Prometheus
-   * and Logging registries, if needed.
+   * Main MetricMeter registry, with which all the metrics should be registered. Until initialized,
+   * and when multiple reporters are configured, it is a {@link CompositeMeterRegistry} forwarding
+   * to the registries of all the reporters, like Prometheus and Logging. With a single reporter, it
+   * is that reporter's registry, see {@link #bindReporterRegistries(List)}.
    */
-  private static CompositeMeterRegistry meterRegistry = new CompositeMeterRegistry();
+  private static MeterRegistry meterRegistry = new CompositeMeterRegistry();
 
-  private static void initPrometheusReporter(int reportInterval) {
-    LOGGER.info("Trying to init PrometheusReporter");
+  private static final TagsInterner TAGS_INTERNER = new TagsInterner(MAX_INTERNED_TAG_SETS);
+  private static final MeterHandleCache<Counter> COUNTER_HANDLES =
+      new MeterHandleCache<>(MAX_CACHED_METER_HANDLES);
+  private static final MeterHandleCache<Timer> TIMER_HANDLES =
+      new MeterHandleCache<>(MAX_CACHED_METER_HANDLES);
+  private static final MeterHandleCache<DistributionSummary> DISTRIBUTION_SUMMARY_HANDLES =
+      new MeterHandleCache<>(MAX_CACHED_METER_HANDLES);
 
-    // Add Prometheus registry to the composite registry.
-    meterRegistry.add(
-        new PrometheusMeterRegistry(
-            new PrometheusConfig() {
-              @Override
-              @NonNull
-              public Duration step() {
-                return Duration.ofSeconds(reportInterval);
-              }
+  /**
+   * Composite meters forward every recording to a meter of each child registry, and resolve those
+   * children again whenever registries are added. With a single reporter, meters are registered
+   * directly with its registry instead. The composite is kept, with the reporter added to it, when
+   * meters were registered or {@link #getMeterRegistry()} was called before initialization: callers
+   * may hold on to them and they have to start reporting.
+   */
+  private static void bindReporterRegistries(List<MeterRegistry> reporterRegistries) {
+    // Not initialized yet, so this is the composite created on startup or by stop()
+    CompositeMeterRegistry compositeRegistry = (CompositeMeterRegistry) meterRegistry;
+    if (reporterRegistries.size() == 1
+        && !compositeRegistryShared
+        && compositeRegistry.getMeters().isEmpty()) {
+      LOGGER.info("Binding metrics directly to the only reporter registry");
+      meterRegistry = reporterRegistries.get(0);
+      return;
+    }
+    reporterRegistries.forEach(compositeRegistry::add);
+  }
 
-              @Override
-              @io.micrometer.core.lang.Nullable
-              public String get(String k) {
-                return null;
-              }
-            },
-            CollectorRegistry.defaultRegistry,
-            Clock.SYSTEM));
+  private static MeterRegistry initPrometheusReporter(int reportInterval) {
+    LOGGER.info("Trying to init PrometheusReporter");
 
-    CollectorRegistry.defaultRegistry.register(new DropwizardExports(METRIC_REGISTRY));
+    return new PrometheusMeterRegistry(
+        new PrometheusConfig() {
+          @Override
+          @NonNull
+          public Duration step() {
+            return Duration.ofSeconds(reportInterval);
+          }
+
+          @Override
+          @io.micrometer.core.lang.Nullable
+          public String get(String k) {
+            return null;
+          }
+        },
+        CollectorRegistry.defaultRegistry,
+        Clock.SYSTEM);
   }
 
-  private static void initConsoleMetricsReporter(final int reportIntervalSec) {
-    consoleReporter = ConsoleReporter.forRegistry(METRIC_REGISTRY).build();
+  private static MeterRegistry initConsoleMetricsReporter(final int reportIntervalSec) {
     LOGGER.info(
         "Trying to init ConsoleReporter with reporter interval=[{}] seconds", reportIntervalSec);
-    consoleReporter.start(reportIntervalSec, TimeUnit.SECONDS);
-  }
 
-  private static void initLoggingMetricsReporter(int reportIntervalSec) {
-    LOGGER.info("Initializing the logging metric reporter.");
-
-    meterRegistry.add(
-        new LoggingMeterRegistry(
+    // Closing the registry on stop reports all the metrics one final time.
+    return LoggingMeterRegistry.builder(
             new LoggingRegistryConfig() {
               @Override
               @NonNull
@@ -150,18 +224,39 @@ public class PlatformMetricsRegistry {
               public String get(String key) {
                 return null;
               }
-            },
-            Clock.SYSTEM));
+            })
+        .loggingSink(System.out::println)
+        .build();
   }
 
-  private static void initTestingMetricsReporter() {
+  private static MeterRegistry initLoggingMetricsReporter(int reportIntervalSec) {
+    LOGGER.info("Initializing the logging metric reporter.");
+
+    return new LoggingMeterRegistry(
+        new LoggingRegistryConfig() {
+          @Override
+          @NonNull
+          public Duration step() {
+            return Duration.ofSeconds(reportIntervalSec);
+          }
+
+          @Override
+          @io.micrometer.core.lang.Nullable
+          public String get(String key) {
+            return null;
+          }
+        },
+        Clock.SYSTEM);
+  }
+
+  private static MeterRegistry initTestingMetricsReporter() {
     LOGGER.info("Initializing the testing metric reporter.");
 
-    meterRegistry.add(new SimpleMeterRegistry());
+    return new SimpleMeterRegistry();
   }
 
-  private static void initPrometheusPushGatewayReporter(
-      String serviceName, int reportIntervalSec, String pushUrlAddress) {
+  private static MeterRegistry initPrometheusPushGatewayReporter(
+      String serviceName, int reportIntervalSec, String pushUrlAddress, Config config) {
     LOGGER.info(
         "Initializing Prometheus PushGateway Reporter with urlAddress: {}, jobName: {}. "
             + "Metric is configured get pushed for every {} seconds",
@@ -173,32 +268,116 @@ public class PlatformMetricsRegistry {
       throw new IllegalArgumentException("pushUrlAddress configuration is not specified.");
     }
 
-    meterRegistry.add(
-        new PrometheusPushMeterRegistry(
-            new PrometheusPushRegistryConfig() {
-              @Override
-              public String jobName() {
-                return serviceName;
-              }
+    return new PrometheusPushMeterRegistry(
+        new PrometheusPushRegistryConfig() {
+          @Override
+          public String jobName() {
+            return serviceName;
+          }
+
+          @Override
+          public String prefix() {
+            return PUSH_GATEWAY_REPORTER_NAME;
+          }
+
+          // Push options are read from the "pushgateway" block of the metrics config
+          @Override
+          @io.micrometer.core.lang.Nullable
+          public String get(String key) {
+            return config.hasPath(key) ? config.getString(key) : null;
+          }
+
+          @Override
+          public Duration step() {
+            return Duration.ofSeconds(reportIntervalSec);
+          }
+        },
+        Executors.defaultThreadFactory(),
+        pushUrlAddress);
+  }
 
-              @Override
-              public String prefix() {
-                return PUSH_GATEWAY_REPORTER_NAME;
-              }
+  private static MeterRegistry initOtlpReporter(
+      String serviceName, int reportIntervalSec, Config config) {
+    LOGGER.info(
+        "Initializing OTLP Reporter. Metric is configured get exported for every {} seconds",
+        reportIntervalSec);
 
-              @Override
-              @io.micrometer.core.lang.Nullable
-              public String get(String key) {
-                return null;
-              }
+    return new OtlpMeterRegistry(
+        new OtlpRegistryConfig() {
+          // Export options are read from the "otlp" block of the metrics config
+          @Override
+          @io.micrometer.core.lang.Nullable
+          public String get(String key) {
+            return config.hasPath(key) ? config.getString(key) : null;
+          }
+
+          @Override
+          public Duration step() {
+            return Duration.ofSeconds(reportIntervalSec);
+          }
+
+          @Override
+          public Map<String, String> resourceAttributes() {
+            return StringUtils.isNotEmpty(serviceName)
+                ? Map.of("service.name", serviceName)
+                : Map.of();
+          }
+        },
+        Clock.SYSTEM,
+        Executors.defaultThreadFactory());
+  }
 
-              @Override
-              public Duration step() {
-                return Duration.ofSeconds(reportIntervalSec);
-              }
-            },
-            Executors.defaultThreadFactory(),
-            new PushGateway(pushUrlAddress)));
+  private static void initCardinalityLimiter(Config cardinalityConfig, Set<String> commonTagKeys) {
+    int defaultLimit = Integer.MAX_VALUE;
+    if (cardinalityConfig.hasPath(CARDINALITY_DEFAULT_LIMIT_CONFIG_KEY)) {
+      defaultLimit = cardinalityConfig.getInt(CARDINALITY_DEFAULT_LIMIT_CONFIG_KEY);
+    }
+
+    Map<String, Integer> limits = new HashMap<>();
+    if (cardinalityConfig.hasPath(CARDINALITY_LIMITS_CONFIG_KEY)) {
+      Config limitsConfig = cardinalityConfig.getConfig(CARDINALITY_LIMITS_CONFIG_KEY);
+      // Metric names contain dots, so join the path back whether or not the key was quoted.
+      limitsConfig
+          .entrySet()
+          .forEach(
+              entry ->
+                  limits.put(
+                      String.join(".", ConfigUtil.splitPath(entry.getKey())),
+                      limitsConfig.getInt(entry.getKey())));
+    }
+
+    LOGGER.info(
+        "Initializing the cardinality limiter with default limit: {}, limits: {}",
+        defaultLimit,
+        limits);
+    new CardinalityLimiter(meterRegistry, defaultLimit, limits, commonTagKeys).install();
+  }
+
+  private static void initHistogramMode(Config histogramConfig) {
+    HistogramMode mode = HistogramMode.CLASSIC;
+    if (histogramConfig.hasPath(HISTOGRAM_MODE_CONFIG_KEY)) {
+      mode =
+          HistogramMode.valueOf(
+              histogramConfig.getString(HISTOGRAM_MODE_CONFIG_KEY).toUpperCase());
+    }
+    List<String> exponentialMetrics =
+        getStringList(histogramConfig, HISTOGRAM_EXPONENTIAL_METRICS_CONFIG_KEY, List.of());
+    if (mode == HistogramMode.CLASSIC && exponentialMetrics.isEmpty()) {
+      return;
+    }
+
+    int scale = DEFAULT_EXPONENTIAL_HISTOGRAM_SCALE;
+    if (histogramConfig.hasPath(HISTOGRAM_EXPONENTIAL_SCALE_CONFIG_KEY)) {
+      scale = histogramConfig.getInt(HISTOGRAM_EXPONENTIAL_SCALE_CONFIG_KEY);
+    }
+
+    Set<String> metricNames =
+        mode == HistogramMode.EXPONENTIAL ? null : Set.copyOf(exponentialMetrics);
+    LOGGER.info(
+        "Initializing exponential histograms with scale: {}, for metrics: {}",
+        scale,
+        metricNames == null ? "all" : metricNames);
+    meterRegistry.config().meterFilter(new ExponentialHistogramFilter(metricNames, scale));
   }
 
   private static List<String> getStringList(Config config, String path, List<String> defaultVal) {
@@ -245,34 +424,52 @@ public class PlatformMetricsRegistry {
       defaultTags.put(defaultTagsList.get(i), defaultTagsList.get(i + 1));
     }
 
+    List<MeterRegistry> reporterRegistries = new ArrayList<>();
     for (String reporter : reporters) {
       switch (reporter.toLowerCase()) {
         case CONSOLE_REPORTER_NAME:
-          initConsoleMetricsReporter(reportIntervalSec);
+          reporterRegistries.add(initConsoleMetricsReporter(reportIntervalSec));
           break;
         case LOGGING_REPORTER_NAME:
-          initLoggingMetricsReporter(reportIntervalSec);
+          reporterRegistries.add(initLoggingMetricsReporter(reportIntervalSec));
           break;
         case PROMETHEUS_REPORTER_NAME:
-          initPrometheusReporter(reportIntervalSec);
+          reporterRegistries.add(initPrometheusReporter(reportIntervalSec));
           break;
         case TESTING_REPORTER_NAME:
-          initTestingMetricsReporter();
+          reporterRegistries.add(initTestingMetricsReporter());
           break;
         case PUSH_GATEWAY_REPORTER_NAME:
-          initPrometheusPushGatewayReporter(serviceName, reportIntervalSec, pushUrlAddress);
+          reporterRegistries.add(
+              initPrometheusPushGatewayReporter(
+                  serviceName, reportIntervalSec, pushUrlAddress, config));
+          break;
+        case OTLP_REPORTER_NAME:
+          reporterRegistries.add(initOtlpReporter(serviceName, reportIntervalSec, config));
           break;
         default:
           LOGGER.warn("Cannot find metric reporter: {}", reporter);
       }
     }
 
+    bindReporterRegistries(reporterRegistries);
+
     LOGGER.info("Setting default tags for all metrics to: {}", defaultTags);
     defaultTags.forEach(
         (key, value) -> {
           meterRegistry.config().commonTags(List.of((new ImmutableTag(key, value))));
         });
 
+    if (config.hasPath(METRICS_HISTOGRAM_CONFIG_KEY)) {
+      initHistogramMode(config.getConfig(METRICS_HISTOGRAM_CONFIG_KEY));
+    }
+
+    // The limiter has to see the final meter ids, so it's installed after the common tags.
+    if (config.hasPath(METRICS_CARDINALITY_CONFIG_KEY)) {
+      initCardinalityLimiter(
+          config.getConfig(METRICS_CARDINALITY_CONFIG_KEY), defaultTags.keySet());
+    }
+
     // Register different metrics with the registry.
 
     // JVM metrics
@@ -300,14 +497,13 @@ public class PlatformMetricsRegistry {
 
   /**
    * This method is deprecated since we'll be removing the Dropwizard metrics support in future
-   * releases.
+   * releases. The metric is reported through Micrometer function meters reading from it, and is
+   * ignored if a metric was already registered under the same name.
    */
   @Deprecated
   public static void register(String metricName, Metric metric) {
     final String fullMetricName = String.format("%s.%s", metricsPrefix, metricName);
-    if (!METRIC_REGISTRY.getNames().contains(fullMetricName)) {
-      METRIC_REGISTRY.register(fullMetricName, metric);
-    }
+    DROPWIZARD_METRICS.bind(fullMetricName, metric);
   }
 
   /**
@@ -318,7 +514,18 @@ public class PlatformMetricsRegistry {
    * <p>See https://micrometer.io/docs/concepts#_counters for more details on the Counter.
    */
   public static Counter registerCounter(String name, Map<String, String> tags) {
-    return meterRegistry.counter(name, toIterable(tags));
+    return registerCounter(name, internTags(tags));
+  }
+
+  /**
+   * Registers a Counter with the given name and pre-resolved tags. Resolve the tags once with
+   * {@link #internTags(Map)} and keep the returned counter as a handle on hot paths: recording on
+   * it does not allocate, and registering it again is a lock-free lookup.
+   *
+   * <p>See https://micrometer.io/docs/concepts#_counters for more details on the Counter.
+   */
+  public static Counter registerCounter(String name, Tags tags) {
+    return COUNTER_HANDLES.get(name, tags, PlatformMetricsRegistry::resolveCounter);
   }
 
   /**
@@ -342,7 +549,25 @@ public class PlatformMetricsRegistry {
    * <p>Defaults the timer range from 1 second to 60 seconds (both inclusive)
    */
   public static Timer registerTimer(String name, Map<String, String> tags, boolean histogram) {
-    return registerTimer(name, tags, histogram, Duration.ofSeconds(1), Duration.ofSeconds(60));
+    return registerTimer(name, internTags(tags), histogram);
+  }
+
+  /**
+   * Registers a Timer with the given name and pre-resolved tags. Resolve the tags once with {@link
+   * #internTags(Map)} and keep the returned timer as a handle on hot paths: recording on it does
+   * not allocate, and registering it again is a lock-free lookup.
+   *
+   * <p>See https://micrometer.io/docs/concepts#_timers for more details on the Timer.
+   *
+   * <p>Defaults the timer range from 1 second to 60 seconds (both inclusive)
+   */
+  public static Timer registerTimer(String name, Tags tags, boolean histogram) {
+    return TIMER_HANDLES.get(
+        name,
+        tags,
+        histogram
+            ? PlatformMetricsRegistry::resolveHistogramTimer
+            : PlatformMetricsRegistry::resolveTimer);
   }
 
   /**
@@ -358,8 +583,29 @@ public class PlatformMetricsRegistry {
       boolean histogram,
       Duration minExpectedValue,
       Duration maxExpectedValue) {
+    return TIMER_HANDLES.get(
+        name,
+        internTags(tags),
+        (timerName, timerTags) ->
+            buildTimer(timerName, timerTags, histogram, minExpectedValue, maxExpectedValue));
+  }
+
+  private static Timer resolveTimer(String name, Tags tags) {
+    return buildTimer(name, tags, false, null, null);
+  }
+
+  private static Timer resolveHistogramTimer(String name, Tags tags) {
+    return buildTimer(name, tags, true, Duration.ofSeconds(1), Duration.ofSeconds(60));
+  }
+
+  private static Timer buildTimer(
+      String name,
+      Tags tags,
+      boolean histogram,
+      Duration minExpectedValue,
+      Duration maxExpectedValue) {
     Timer.Builder builder =
-        Timer.builder(name).publishPercentiles(0.5, 0.75, 0.90, 0.95, 0.99).tags(toIterable(tags));
+        Timer.builder(name).publishPercentiles(0.5, 0.75, 0.90, 0.95, 0.99).tags(tags);
 
     if (histogram) {
       builder =
@@ -381,7 +627,7 @@ public class PlatformMetricsRegistry {
   public static <T extends Number> T registerGauge(
       String name, Map<String, String> tags, T number) {
     Gauge.builder(name, number, Number::doubleValue)
-        .tags(toIterable(tags))
+        .tags(internTags(tags))
         .strongReference(true)
         .register(meterRegistry);
     return number;
@@ -412,7 +658,24 @@ public class PlatformMetricsRegistry {
    */
   public static DistributionSummary registerDistributionSummary(
       String name, Map<String, String> tags, boolean histogram) {
-    return registerDistributionSummary(name, tags, histogram, null, null);
+    return registerDistributionSummary(name, internTags(tags), histogram);
+  }
+
+  /**
+   * Registers a DistributionSummary with the given name and pre-resolved tags. Resolve the tags
+   * once with {@link #internTags(Map)} and keep the returned summary as a handle on hot paths:
+   * recording on it does not allocate, and registering it again is a lock-free lookup.
+   *
+   * <p>For more details - https://micrometer.io/docs/concepts#_distribution_summaries
+   */
+  public static DistributionSummary registerDistributionSummary(
+      String name, Tags tags, boolean histogram) {
+    return DISTRIBUTION_SUMMARY_HANDLES.get(
+        name,
+        tags,
+        histogram
+            ? PlatformMetricsRegistry::resolveHistogramDistributionSummary
+            : PlatformMetricsRegistry::resolveDistributionSummary);
   }
 
   /**
@@ -431,10 +694,32 @@ public class PlatformMetricsRegistry {
       boolean histogram,
       Double minExpectedValue,
       Double maxExpectedValue) {
+    return DISTRIBUTION_SUMMARY_HANDLES.get(
+        name,
+        internTags(tags),
+        (summaryName, summaryTags) ->
+            buildDistributionSummary(
+                summaryName, summaryTags, histogram, minExpectedValue, maxExpectedValue));
+  }
+
+  private static DistributionSummary resolveDistributionSummary(String name, Tags tags) {
+    return buildDistributionSummary(name, tags, false, null, null);
+  }
+
+  private static DistributionSummary resolveHistogramDistributionSummary(String name, Tags tags) {
+    return buildDistributionSummary(name, tags, true, null, null);
+  }
+
+  private static DistributionSummary buildDistributionSummary(
+      String name,
+      Tags tags,
+      boolean histogram,
+      Double minExpectedValue,
+      Double maxExpectedValue) {
     DistributionSummary.Builder builder =
         DistributionSummary.builder(name)
             .publishPercentiles(0.5, 0.75, 0.90, 0.95, 0.99)
-            .tags(toIterable(tags));
+            .tags(tags);
     if (histogram) {
       builder =
           builder
@@ -445,13 +730,60 @@ public class PlatformMetricsRegistry {
     return builder.register(meterRegistry);
   }
 
+  /**
+   * Registers a family of Counters with the given name and tag keys. Child counters are resolved by
+   * their tag values through {@link MeterFamily#labels(String...)}, without building a tag map or
+   * going through the registry lookup on every call.
+   */
+  public static MeterFamily<Counter> registerCounterFamily(String name, String... tagKeys) {
+    return new MeterFamily<>(name, tagKeys, PlatformMetricsRegistry::resolveCounter);
+  }
+
+  /**
+   * Registers a family of Timers (without histograms) with the given name and tag keys. Child
+   * timers are resolved by their tag values through {@link MeterFamily#labels(String...)}.
+   */
+  public static MeterFamily<Timer> registerTimerFamily(String name, String... tagKeys) {
+    return registerTimerFamily(name, false, tagKeys);
+  }
+
+  /**
+   * Registers a family of Timers with the given name and tag keys. Child timers are resolved by
+   * their tag values through {@link MeterFamily#labels(String...)}.
+   *
+   * <p>Defaults the timer range from 1 second to 60 seconds (both inclusive)
+   */
+  public static MeterFamily<Timer> registerTimerFamily(
+      String name, boolean histogram, String... tagKeys) {
+    return new MeterFamily<>(
+        name,
+        tagKeys,
+        histogram
+            ? PlatformMetricsRegistry::resolveHistogramTimer
+            : PlatformMetricsRegistry::resolveTimer);
+  }
+
+  /**
+   * Registers a family of DistributionSummaries with the given name and tag keys. Child summaries
+   * are resolved by their tag values through {@link MeterFamily#labels(String...)}.
+   */
+  public static MeterFamily<DistributionSummary> registerDistributionSummaryFamily(
+      String name, boolean histogram, String... tagKeys) {
+    return new MeterFamily<>(
+        name,
+        tagKeys,
+        histogram
+            ? PlatformMetricsRegistry::resolveHistogramDistributionSummary
+            : PlatformMetricsRegistry::resolveDistributionSummary);
+  }
+
   /**
    * Registers metrics for GuavaCaches using micrometer's GuavaCacheMetrics under the given
    * cacheName for the given guavaCache
    */
   public static <K, V> void registerCache(
       String cacheName, Cache<K, V> guavaCache, Map<String, String> tags) {
-    GuavaCacheMetrics.monitor(meterRegistry, guavaCache, cacheName, toIterable(tags));
+    GuavaCacheMetrics.monitor(meterRegistry, guavaCache, cacheName, internTags(tags));
   }
 
   /**
@@ -460,7 +792,7 @@ public class PlatformMetricsRegistry {
    */
   public static <K, V> void registerCacheTrackingOccupancy(
       String cacheName, Cache<K, V> guavaCache, Map<String, String> tags, long maxSize) {
-    GuavaCacheMetrics.monitor(meterRegistry, guavaCache, cacheName, toIterable(tags));
+    GuavaCacheMetrics.monitor(meterRegistry, guavaCache, cacheName, internTags(tags));
     Map<String, String> tagsForGauge = new HashMap<>(tags);
     tagsForGauge.put("cache", cacheName);
     registerGauge(CACHE_MAX_SIZE_GAUGE, tagsForGauge, maxSize);
@@ -474,7 +806,7 @@ public class PlatformMetricsRegistry {
       String cacheName,
       com.github.benmanes.caffeine.cache.Cache<K, V> caffeineCache,
       Map<String, String> tags) {
-    CaffeineCacheMetrics.monitor(meterRegistry, caffeineCache, cacheName, toIterable(tags));
+    CaffeineCacheMetrics.monitor(meterRegistry, caffeineCache, cacheName, internTags(tags));
   }
 
   /**
@@ -486,7 +818,7 @@ public class PlatformMetricsRegistry {
       com.github.benmanes.caffeine.cache.Cache<K, V> caffeineCache,
       Map<String, String> tags,
       long maxSize) {
-    CaffeineCacheMetrics.monitor(meterRegistry, caffeineCache, cacheName, toIterable(tags));
+    CaffeineCacheMetrics.monitor(meterRegistry, caffeineCache, cacheName, internTags(tags));
     Map<String, String> tagsForGauge = new HashMap<>(tags);
     tagsForGauge.put("cache", cacheName);
     registerGauge(CACHE_MAX_SIZE_GAUGE, tagsForGauge, maxSize);
@@ -501,30 +833,67 @@ public class PlatformMetricsRegistry {
    */
   public static void monitorExecutorService(
       String name, ExecutorService executorService, @Nullable Map<String, String> tags) {
-    new ExecutorServiceMetrics(executorService, name, toIterable(tags)).bindTo(meterRegistry);
+    new ExecutorServiceMetrics(executorService, name, internTags(tags)).bindTo(meterRegistry);
+  }
+
+  /**
+   * Returns the immutable, sorted {@link Tags} for the given tag map. Equal maps share a single
+   * interned instance, so hot paths can resolve their tags once and reuse them with the {@link
+   * Tags} based registration methods.
+   */
+  public static Tags internTags(@Nullable Map<String, String> tags) {
+    return TAGS_INTERNER.intern(tags);
   }
 
-  public static MetricRegistry getMetricRegistry() {
-    return METRIC_REGISTRY;
+  /**
+   * Returns a Dropwizard registry whose metrics are reported along with the Micrometer ones. It is
+   * only created on first use, and deprecated along with {@link #register(String, Metric)}.
+   */
+  @Deprecated
+  public static synchronized MetricRegistry getMetricRegistry() {
+    if (legacyMetricRegistry == null) {
+      legacyMetricRegistry = new MetricRegistry();
+      legacyMetricRegistry.addListener(DROPWIZARD_METRICS);
+    }
+    return legacyMetricRegistry;
   }
 
+  /**
+   * Returns the registry all the metrics are registered with. Called before {@link
+   * #initMetricsRegistry(String, Config)}, it returns the composite registry that the reporters are
+   * added to on initialization, and keeps it as the registry even with a single reporter.
+   */
   public static MeterRegistry getMeterRegistry() {
+    if (!isInit) {
+      compositeRegistryShared = true;
+    }
     return meterRegistry;
   }
 
   public static synchronized void stop() {
-    stopConsoleMetricsReporter();
-    METRIC_REGISTRY.getNames().forEach(METRIC_REGISTRY::remove);
-
-    /* For each meter registry in this composite, it will call the close function */
-    meterRegistry.getRegistries().forEach(MeterRegistry::close);
-    meterRegistry.forEachMeter(meterRegistry::remove);
-    meterRegistry.getRegistries().forEach(MeterRegistry::clear);
-    Set<MeterRegistry> registries = new HashSet<>(meterRegistry.getRegistries());
-    registries.forEach(meterRegistry::remove);
-    registries.clear();
+    if (legacyMetricRegistry != null) {
+      legacyMetricRegistry.getNames().forEach(legacyMetricRegistry::remove);
+    }
+
+    if (meterRegistry instanceof CompositeMeterRegistry) {
+      CompositeMeterRegistry compositeRegistry = (CompositeMeterRegistry) meterRegistry;
+      /* For each meter registry in this composite, it will call the close function */
+      compositeRegistry.getRegistries().forEach(MeterRegistry::close);
+      compositeRegistry.forEachMeter(compositeRegistry::remove);
+      compositeRegistry.getRegistries().forEach(MeterRegistry::clear);
+      Set<MeterRegistry> registries = new HashSet<>(compositeRegistry.getRegistries());
+      registries.forEach(compositeRegistry::remove);
+      registries.clear();
+    } else {
+      // The only reporter registry, bound directly
+      meterRegistry.close();
+      meterRegistry.clear();
+    }
     CollectorRegistry.defaultRegistry.clear();
     meterRegistry = new CompositeMeterRegistry();
+    compositeRegistryShared = false;
+    clearMeterHandles();
+    DROPWIZARD_METRICS.clear();
     isInit = false;
   }
 
@@ -532,6 +901,17 @@ public class PlatformMetricsRegistry {
     return new ResizeableGauge(MultiGauge.builder(name).register(meterRegistry));
   }
 
+  private static Counter resolveCounter(String name, Tags tags) {
+    return meterRegistry.counter(name, tags);
+  }
+
+  private static void clearMeterHandles() {
+    TAGS_INTERNER.clear();
+    COUNTER_HANDLES.clear();
+    TIMER_HANDLES.clear();
+    DISTRIBUTION_SUMMARY_HANDLES.clear();
+  }
+
   static Iterable<Tag> toIterable(Map<String, String> tags) {
     List<Tag> newTags = new ArrayList<>();
 
@@ -542,20 +922,6 @@ public class PlatformMetricsRegistry {
     return newTags;
   }
 
-  /*
-   * This is needed because ConsoleMetricReporter.stop() doesn't call report for the last time
-   * before closing the scheduled thread
-   */
-  private static void stopConsoleMetricsReporter() {
-    if (consoleReporter == null) {
-      return;
-    }
-    // report all metrics one final time
-    consoleReporter.report();
-    // stop console reporter
-    consoleReporter.stop();
-  }
-
   private static void validate(Config config) {
     List<String> reporters =
         getStringList(config, METRICS_REPORTER_NAMES_CONFIG_KEY, DEFAULT_METRICS_REPORTERS);
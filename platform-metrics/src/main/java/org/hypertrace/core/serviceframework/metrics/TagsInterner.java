@@ -0,0 +1,49 @@
+package org.hypertrace.core.serviceframework.metrics;
+
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.lang.Nullable;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Interns the immutable, sorted {@link Tags} built for a tag map, so that repeated registrations
+ * with equal maps share a single {@link Tags} instance instead of rebuilding and re-sorting it.
+ *
+ * <p>The number of interned tag sets is bounded. Once full, tags are still built for new maps but
+ * are no longer retained, so a tag with unbounded values can't grow this cache indefinitely.
+ */
+class TagsInterner {
+  private final int maxSize;
+  private final ConcurrentMap<Map<String, String>, Tags> internedTags = new ConcurrentHashMap<>();
+
+  TagsInterner(int maxSize) {
+    this.maxSize = maxSize;
+  }
+
+  Tags intern(@Nullable Map<String, String> tags) {
+    if (tags == null || tags.isEmpty()) {
+      return Tags.empty();
+    }
+    Tags interned = internedTags.get(tags);
+    if (interned != null) {
+      return interned;
+    }
+
+    Tags built = Tags.of(PlatformMetricsRegistry.toIterable(tags));
+    if (internedTags.size() >= maxSize) {
+      return built;
+    }
+    // Copy the key so later mutations of the caller's map can't corrupt the cache.
+    Tags existing = internedTags.putIfAbsent(Map.copyOf(tags), built);
+    return existing == null ? built : existing;
+  }
+
+  int size() {
+    return internedTags.size();
+  }
+
+  void clear() {
+    internedTags.clear();
+  }
+}
@@ -0,0 +1,92 @@
+package org.hypertrace.core.serviceframework.metrics.config;
+
+import static io.micrometer.core.instrument.config.MeterRegistryConfigValidator.checkAll;
+import static io.micrometer.core.instrument.config.MeterRegistryConfigValidator.checkRequired;
+import static io.micrometer.core.instrument.config.validate.PropertyValidator.getBoolean;
+import static io.micrometer.core.instrument.config.validate.PropertyValidator.getDuration;
+import static io.micrometer.core.instrument.config.validate.PropertyValidator.getEnum;
+import static io.micrometer.core.instrument.config.validate.PropertyValidator.getInteger;
+import static io.micrometer.core.instrument.config.validate.PropertyValidator.getString;
+import static io.micrometer.core.instrument.config.validate.PropertyValidator.getUrlString;
+
+import io.micrometer.core.instrument.config.validate.Validated;
+import io.micrometer.core.instrument.push.PushRegistryConfig;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Config of the OTLP/HTTP metrics exporter. The number of metrics sent per export request is given
+ * by {@link #batchSize()}. The options shared with Micrometer's {@code OtlpConfig} (url, step,
+ * aggregation temporality, headers and resource attributes) have the same names and formats.
+ */
+public interface OtlpRegistryConfig extends PushRegistryConfig {
+
+  /** Whether exported values are totals since the meter was created, or since the last export. */
+  enum AggregationTemporality {
+    DELTA,
+    CUMULATIVE
+  }
+
+  @Override
+  default String prefix() {
+    return "otlp";
+  }
+
+  /** URL of the collector's OTLP/HTTP metrics endpoint. */
+  default String url() {
+    return getUrlString(this, "url").orElse("http://localhost:4318/v1/metrics");
+  }
+
+  default AggregationTemporality aggregationTemporality() {
+    return getEnum(this, AggregationTemporality.class, "aggregationTemporality")
+        .orElse(AggregationTemporality.CUMULATIVE);
+  }
+
+  /**
+   * Headers added to the export requests, e.g. for authentication, given as comma separated
+   * "key=value" pairs.
+   */
+  default Map<String, String> headers() {
+    String headers = getString(this, "headers").orElse(null);
+    if (headers == null) {
+      return Map.of();
+    }
+    return Arrays.stream(headers.split(","))
+        .filter(header -> header.contains("="))
+        .collect(
+            Collectors.toMap(
+                header -> header.substring(0, header.indexOf('=')).trim(),
+                header -> header.substring(header.indexOf('=') + 1).trim(),
+                (first, last) -> last));
+  }
+
+  /** Whether the export requests are gzipped. */
+  default boolean compressed() {
+    return getBoolean(this, "compressed").orElse(true);
+  }
+
+  /**
+   * Number of export requests kept while the collector can't be reached. Once full, the oldest
+   * requests are dropped.
+   */
+  default int maxBufferedRequests() {
+    return getInteger(this, "maxBufferedRequests").orElse(100);
+  }
+
+  /** Connect and read timeout of a single export request. */
+  default Duration timeout() {
+    return getDuration(this, "timeout").orElse(Duration.ofSeconds(10));
+  }
+
+  /** Attributes of the resource the metrics are exported for, e.g. its "service.name". */
+  default Map<String, String> resourceAttributes() {
+    return Map.of();
+  }
+
+  @Override
+  default Validated<?> validate() {
+    return checkAll(this, checkRequired("url", OtlpRegistryConfig::url));
+  }
+}
@@ -2,14 +2,49 @@ package org.hypertrace.core.serviceframework.metrics.config;
 
 import static io.micrometer.core.instrument.config.MeterRegistryConfigValidator.checkAll;
 import static io.micrometer.core.instrument.config.MeterRegistryConfigValidator.checkRequired;
+import static io.micrometer.core.instrument.config.validate.PropertyValidator.getBoolean;
+import static io.micrometer.core.instrument.config.validate.PropertyValidator.getDuration;
+import static io.micrometer.core.instrument.config.validate.PropertyValidator.getInteger;
 
 import io.micrometer.core.instrument.config.validate.Validated;
 import io.micrometer.core.instrument.push.PushRegistryConfig;
+import java.time.Duration;
 
 public interface PrometheusPushRegistryConfig extends PushRegistryConfig {
   /** Batch job name as groupingKey for metrics in PushGateway */
   String jobName();
 
+  /** Whether the pushed bodies are gzipped. Only enable it for gateways accepting gzip bodies. */
+  default boolean compressed() {
+    return getBoolean(this, "compressed").orElse(false);
+  }
+
+  /**
+   * Whether the metric families whose samples haven't changed since the last successful push are
+   * left out of the next push. The gateway keeps serving their previously pushed samples.
+   */
+  default boolean skipUnchanged() {
+    return getBoolean(this, "skipUnchanged").orElse(false);
+  }
+
+  /** Connect and read timeout of a single push. */
+  default Duration pushTimeout() {
+    return getDuration(this, "pushTimeout").orElse(Duration.ofSeconds(10));
+  }
+
+  /** Number of times a failed push is retried before waiting for the next step. */
+  default int maxRetries() {
+    return getInteger(this, "maxRetries").orElse(3);
+  }
+
+  /**
+   * Delay before the first retry of a failed push. It doubles with every retry, with a random
+   * jitter, and is capped to half of the step.
+   */
+  default Duration retryBackoff() {
+    return getDuration(this, "retryBackoff").orElse(Duration.ofSeconds(1));
+  }
+
   @Override
   default Validated<?> validate() {
     return checkAll(this, checkRequired("jobName", PrometheusPushRegistryConfig::jobName));
@@ -0,0 +1,54 @@
+package org.hypertrace.core.serviceframework.metrics.registry;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Count, sum and bucket counts of the values recorded by a timer or distribution summary since it
+ * was created. Buckets are upper inclusive, with an overflow bucket after the last bound.
+ */
+class CumulativeHistogram {
+  private final double[] bounds;
+  private final LongAdder[] bucketCounts;
+  private final LongAdder count = new LongAdder();
+  private final DoubleAdder sum = new DoubleAdder();
+
+  CumulativeHistogram(double[] bounds) {
+    this.bounds = bounds.clone();
+    this.bucketCounts = new LongAdder[bounds.length == 0 ? 0 : bounds.length + 1];
+    for (int i = 0; i < bucketCounts.length; i++) {
+      bucketCounts[i] = new LongAdder();
+    }
+  }
+
+  void record(double value) {
+    if (bucketCounts.length > 0) {
+      int index = Arrays.binarySearch(bounds, value);
+      bucketCounts[index >= 0 ? index : -index - 1].increment();
+    }
+    sum.add(value);
+    count.increment();
+  }
+
+  long count() {
+    return count.sum();
+  }
+
+  double sum() {
+    return sum.sum();
+  }
+
+  double[] bounds() {
+    return bounds.clone();
+  }
+
+  /** Returns the count of every bucket, which is empty when the histogram has no bounds. */
+  long[] bucketCounts() {
+    long[] counts = new long[bucketCounts.length];
+    for (int i = 0; i < counts.length; i++) {
+      counts[i] = bucketCounts[i].sum();
+    }
+    return counts;
+  }
+}
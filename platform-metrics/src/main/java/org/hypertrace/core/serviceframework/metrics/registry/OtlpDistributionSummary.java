@@ -0,0 +1,49 @@
+package org.hypertrace.core.serviceframework.metrics.registry;
+
+import io.micrometer.core.instrument.AbstractDistributionSummary;
+import io.micrometer.core.instrument.Clock;
+import io.micrometer.core.instrument.distribution.DistributionStatisticConfig;
+import io.micrometer.core.instrument.distribution.TimeWindowMax;
+
+/** Distribution summary recording into a {@link CumulativeHistogram}. */
+class OtlpDistributionSummary extends AbstractDistributionSummary {
+  private final CumulativeHistogram histogram;
+  private final TimeWindowMax max;
+
+  OtlpDistributionSummary(
+      Id id, Clock clock, DistributionStatisticConfig distributionStatisticConfig, double scale) {
+    // Buckets are kept by the cumulative histogram, and OTLP has no use for client percentiles
+    super(id, clock, DistributionStatisticConfig.NONE, scale, false);
+    this.histogram =
+        new CumulativeHistogram(
+            distributionStatisticConfig.getHistogramBuckets(false).stream()
+                .mapToDouble(Double::doubleValue)
+                .toArray());
+    this.max = new TimeWindowMax(clock, distributionStatisticConfig);
+  }
+
+  CumulativeHistogram histogram() {
+    return histogram;
+  }
+
+  @Override
+  protected void recordNonNegative(double amount) {
+    histogram.record(amount);
+    max.record(amount);
+  }
+
+  @Override
+  public long count() {
+    return histogram.count();
+  }
+
+  @Override
+  public double totalAmount() {
+    return histogram.sum();
+  }
+
+  @Override
+  public double max() {
+    return max.poll();
+  }
+}
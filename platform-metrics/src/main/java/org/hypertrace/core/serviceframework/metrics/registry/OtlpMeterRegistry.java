@@ -0,0 +1,260 @@
+package org.hypertrace.core.serviceframework.metrics.registry;
+
+import io.micrometer.core.instrument.Clock;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.DistributionStatisticConfig;
+import io.micrometer.core.instrument.distribution.pause.PauseDetector;
+import io.micrometer.core.instrument.simple.CountingMode;
+import io.micrometer.core.instrument.simple.SimpleConfig;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.core.instrument.util.TimeUtils;
+import io.micrometer.core.lang.Nullable;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+import org.hypertrace.core.serviceframework.metrics.config.OtlpRegistryConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Metric Registry exporting to an OpenTelemetry collector over OTLP/HTTP, with protobuf encoded
+ * requests. Unlike Micrometer's own OTLP registry, it gzips the requests and buffers the ones the
+ * collector failed to receive, and doesn't depend on the OpenTelemetry protobuf bindings.
+ *
+ * <p>Every step the meters are encoded and split into requests of at most {@link
+ * OtlpRegistryConfig#batchSize()} metrics, gzipped unless disabled. Requests are queued before
+ * being sent, so the ones that failed while the collector was unavailable are sent again, oldest
+ * first, with the next export. The queue is bounded by {@link
+ * OtlpRegistryConfig#maxBufferedRequests()}, beyond which the oldest requests are dropped.
+ *
+ * <p>Meters always record cumulatively; with the delta temporality the exported values are the
+ * differences with the previous export.
+ */
+public class OtlpMeterRegistry extends SimpleMeterRegistry {
+  private static final Logger logger = LoggerFactory.getLogger(OtlpMeterRegistry.class);
+  private static final String EXPORT_FAILURES_COUNTER = "metrics.export.failures";
+  private static final String EXPORT_DROPPED_COUNTER = "metrics.export.dropped";
+
+  private final OtlpRegistryConfig otlpConfig;
+  private final URL url;
+  private final OtlpMetricsEncoder encoder;
+  private final Counter exportFailures;
+  private final Counter exportDropped;
+
+  private final Object publishLock = new Object();
+  // Guarded by publishLock
+  private final Deque<byte[]> bufferedRequests = new ArrayDeque<>();
+
+  @Nullable private ScheduledExecutorService scheduledExecutorService;
+
+  public OtlpMeterRegistry(
+      OtlpRegistryConfig otlpConfig, Clock clock, ThreadFactory threadFactory) {
+    super(simpleConfigOf(otlpConfig), clock);
+
+    otlpConfig.requireValid();
+
+    this.otlpConfig = otlpConfig;
+    this.url = toUrl(otlpConfig.url());
+    this.encoder =
+        new OtlpMetricsEncoder(
+            otlpConfig.aggregationTemporality(),
+            getBaseTimeUnit(),
+            TimeUnit.MILLISECONDS.toNanos(clock.wallTime()));
+    this.exportFailures = Counter.builder(EXPORT_FAILURES_COUNTER).register(this);
+    this.exportDropped = Counter.builder(EXPORT_DROPPED_COUNTER).register(this);
+    config().onMeterRemoved(meter -> encoder.forget(meter.getId()));
+
+    start(threadFactory);
+  }
+
+  /**
+   * Exports the current values of all the meters, after the requests buffered by previous failed
+   * exports.
+   */
+  public void publish() throws IOException {
+    synchronized (publishLock) {
+      List<Meter> meters = getMeters();
+      List<ProtobufWriter> metrics =
+          encoder.encodeMetrics(meters, TimeUnit.MILLISECONDS.toNanos(clock.wallTime()));
+      int batchSize = Math.max(1, otlpConfig.batchSize());
+      for (int from = 0; from < metrics.size(); from += batchSize) {
+        List<ProtobufWriter> batch =
+            metrics.subList(from, Math.min(metrics.size(), from + batchSize));
+        buffer(serialize(encoder.encodeRequest(otlpConfig.resourceAttributes(), batch)));
+      }
+
+      while (!bufferedRequests.isEmpty()) {
+        try {
+          send(bufferedRequests.peekFirst());
+        } catch (IOException | RuntimeException e) {
+          exportFailures.increment();
+          throw e;
+        }
+        bufferedRequests.removeFirst();
+      }
+    }
+  }
+
+  /** Catch uncaught exceptions thrown from {@link #publish()}. */
+  private void publishSafely() {
+    try {
+      publish();
+    } catch (Throwable e) {
+      logger.warn(
+          "Failed to export metrics to {}, {} requests are buffered",
+          url,
+          bufferedRequestCount(),
+          e);
+    }
+  }
+
+  public void start(ThreadFactory threadFactory) {
+    if (scheduledExecutorService != null) return;
+
+    if (otlpConfig.enabled()) {
+      logger.info(
+          "publishing metrics for "
+              + this.getClass().getSimpleName()
+              + " every "
+              + TimeUtils.format(otlpConfig.step()));
+
+      scheduledExecutorService = Executors.newSingleThreadScheduledExecutor(threadFactory);
+      scheduledExecutorService.scheduleAtFixedRate(
+          this::publishSafely,
+          otlpConfig.step().toMillis(),
+          otlpConfig.step().toMillis(),
+          TimeUnit.MILLISECONDS);
+    }
+  }
+
+  public void stop() {
+    if (scheduledExecutorService != null) {
+      scheduledExecutorService.shutdown();
+      scheduledExecutorService = null;
+    }
+  }
+
+  @Override
+  public void close() {
+    stop();
+    if (otlpConfig.enabled()) {
+      publishSafely();
+    }
+    super.close();
+  }
+
+  int bufferedRequestCount() {
+    synchronized (publishLock) {
+      return bufferedRequests.size();
+    }
+  }
+
+  @Override
+  protected Timer newTimer(
+      Meter.Id id,
+      DistributionStatisticConfig distributionStatisticConfig,
+      PauseDetector pauseDetector) {
+    return new OtlpTimer(id, clock, distributionStatisticConfig, pauseDetector, getBaseTimeUnit());
+  }
+
+  @Override
+  protected DistributionSummary newDistributionSummary(
+      Meter.Id id, DistributionStatisticConfig distributionStatisticConfig, double scale) {
+    return new OtlpDistributionSummary(id, clock, distributionStatisticConfig, scale);
+  }
+
+  @Override
+  protected TimeUnit getBaseTimeUnit() {
+    return TimeUnit.MILLISECONDS;
+  }
+
+  private void buffer(byte[] request) {
+    if (bufferedRequests.size() >= Math.max(1, otlpConfig.maxBufferedRequests())) {
+      bufferedRequests.removeFirst();
+      exportDropped.increment();
+      logger.warn("Dropping the oldest buffered metrics export request to {}", url);
+    }
+    bufferedRequests.addLast(request);
+  }
+
+  private byte[] serialize(byte[] request) throws IOException {
+    if (!otlpConfig.compressed()) {
+      return request;
+    }
+    ByteArrayOutputStream outputStream = new ByteArrayOutputStream(request.length / 4);
+    try (GZIPOutputStream gzipOutputStream = new GZIPOutputStream(outputStream)) {
+      gzipOutputStream.write(request);
+    }
+    return outputStream.toByteArray();
+  }
+
+  private void send(byte[] body) throws IOException {
+    int timeoutMillis = (int) otlpConfig.timeout().toMillis();
+    HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+    try {
+      connection.setConnectTimeout(timeoutMillis);
+      connection.setReadTimeout(timeoutMillis);
+      connection.setRequestMethod("POST");
+      connection.setDoOutput(true);
+      otlpConfig.headers().forEach(connection::setRequestProperty);
+      connection.setRequestProperty("Content-Type", "application/x-protobuf");
+      if (otlpConfig.compressed()) {
+        connection.setRequestProperty("Content-Encoding", "gzip");
+      }
+      connection.setFixedLengthStreamingMode(body.length);
+      try (OutputStream outputStream = connection.getOutputStream()) {
+        outputStream.write(body);
+      }
+
+      int responseCode = connection.getResponseCode();
+      if (responseCode / 100 != 2) {
+        throw new IOException(
+            "Response code from " + url + " was " + responseCode + " instead of 2xx");
+      }
+    } finally {
+      connection.disconnect();
+    }
+  }
+
+  private static SimpleConfig simpleConfigOf(OtlpRegistryConfig otlpConfig) {
+    return new SimpleConfig() {
+      @Override
+      @Nullable
+      public String get(String key) {
+        return null;
+      }
+
+      @Override
+      public Duration step() {
+        return otlpConfig.step();
+      }
+
+      @Override
+      public CountingMode mode() {
+        return CountingMode.CUMULATIVE;
+      }
+    };
+  }
+
+  private static URL toUrl(String url) {
+    try {
+      return new URL(url);
+    } catch (IOException e) {
+      throw new IllegalArgumentException("Invalid OTLP metrics endpoint: " + url, e);
+    }
+  }
+}
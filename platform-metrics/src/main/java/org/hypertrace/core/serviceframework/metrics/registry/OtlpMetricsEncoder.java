@@ -0,0 +1,397 @@
+package org.hypertrace.core.serviceframework.metrics.registry;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.Measurement;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.Tag;
+import io.micrometer.core.instrument.Timer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import org.hypertrace.core.serviceframework.metrics.config.OtlpRegistryConfig.AggregationTemporality;
+
+/**
+ * Encodes meters into the protobuf messages of the OTLP metrics protocol, see
+ * https://github.com/open-telemetry/opentelemetry-proto/blob/main/opentelemetry/proto/metrics/v1/metrics.proto
+ *
+ * <p>Counters and histograms are recorded cumulatively by the registry. With the delta temporality,
+ * the encoder exports the difference with the values it exported last time for the same meter.
+ */
+class OtlpMetricsEncoder {
+  // ExportMetricsServiceRequest, ResourceMetrics, Resource, ScopeMetrics, InstrumentationScope
+  private static final int REQUEST_RESOURCE_METRICS = 1;
+  private static final int RESOURCE_METRICS_RESOURCE = 1;
+  private static final int RESOURCE_METRICS_SCOPE_METRICS = 2;
+  private static final int RESOURCE_ATTRIBUTES = 1;
+  private static final int SCOPE_METRICS_SCOPE = 1;
+  private static final int SCOPE_METRICS_METRICS = 2;
+  private static final int SCOPE_NAME = 1;
+  // Metric
+  private static final int METRIC_NAME = 1;
+  private static final int METRIC_DESCRIPTION = 2;
+  private static final int METRIC_UNIT = 3;
+  private static final int METRIC_GAUGE = 5;
+  private static final int METRIC_SUM = 7;
+  private static final int METRIC_HISTOGRAM = 9;
+  // Gauge, Sum, Histogram
+  private static final int DATA_POINTS = 1;
+  private static final int AGGREGATION_TEMPORALITY = 2;
+  private static final int SUM_IS_MONOTONIC = 3;
+  // NumberDataPoint
+  private static final int NUMBER_START_TIME = 2;
+  private static final int NUMBER_TIME = 3;
+  private static final int NUMBER_AS_DOUBLE = 4;
+  private static final int NUMBER_ATTRIBUTES = 7;
+  // HistogramDataPoint
+  private static final int HISTOGRAM_START_TIME = 2;
+  private static final int HISTOGRAM_TIME = 3;
+  private static final int HISTOGRAM_COUNT = 4;
+  private static final int HISTOGRAM_SUM = 5;
+  private static final int HISTOGRAM_BUCKET_COUNTS = 6;
+  private static final int HISTOGRAM_EXPLICIT_BOUNDS = 7;
+  private static final int HISTOGRAM_ATTRIBUTES = 9;
+  // KeyValue, AnyValue
+  private static final int KEY_VALUE_KEY = 1;
+  private static final int KEY_VALUE_VALUE = 2;
+  private static final int ANY_VALUE_STRING = 1;
+
+  private static final int TEMPORALITY_DELTA = 1;
+  private static final int TEMPORALITY_CUMULATIVE = 2;
+  private static final String SCOPE = "org.hypertrace.core.serviceframework.metrics";
+
+  private final AggregationTemporality temporality;
+  private final TimeUnit baseTimeUnit;
+  private final long startTimeNanos;
+  private final ConcurrentMap<Meter.Id, double[]> lastExportedValues = new ConcurrentHashMap<>();
+  private long lastExportTimeNanos;
+
+  OtlpMetricsEncoder(
+      AggregationTemporality temporality, TimeUnit baseTimeUnit, long startTimeNanos) {
+    this.temporality = temporality;
+    this.baseTimeUnit = baseTimeUnit;
+    this.startTimeNanos = startTimeNanos;
+    this.lastExportTimeNanos = startTimeNanos;
+  }
+
+  /**
+   * Encodes the current values of the given meters as Metric messages, one per time series. Not
+   * thread safe, exports have to be serialized by the caller.
+   */
+  List<ProtobufWriter> encodeMetrics(List<Meter> meters, long timeNanos) {
+    long intervalStartNanos =
+        temporality == AggregationTemporality.DELTA ? lastExportTimeNanos : startTimeNanos;
+    List<ProtobufWriter> metrics = new ArrayList<>(meters.size());
+    for (Meter meter : meters) {
+      meter.use(
+          gauge ->
+              addGauge(metrics, gauge.getId(), gauge.getId().getName(), gauge.value(), timeNanos),
+          counter ->
+              addSum(metrics, counter.getId(), counter.count(), intervalStartNanos, timeNanos),
+          timer -> addTimer(metrics, timer, intervalStartNanos, timeNanos),
+          summary -> addSummary(metrics, summary, intervalStartNanos, timeNanos),
+          longTaskTimer -> addMeasurements(metrics, longTaskTimer, timeNanos),
+          timeGauge ->
+              addGauge(
+                  metrics,
+                  timeGauge.getId(),
+                  timeGauge.getId().getName(),
+                  timeGauge.value(baseTimeUnit),
+                  timeNanos),
+          functionCounter ->
+              addSum(
+                  metrics,
+                  functionCounter.getId(),
+                  functionCounter.count(),
+                  intervalStartNanos,
+                  timeNanos),
+          functionTimer -> addFunctionTimer(metrics, functionTimer, intervalStartNanos, timeNanos),
+          other -> addMeasurements(metrics, other, timeNanos));
+    }
+    lastExportTimeNanos = timeNanos;
+    return metrics;
+  }
+
+  /** Encodes an ExportMetricsServiceRequest holding the given Metric messages. */
+  byte[] encodeRequest(Map<String, String> resourceAttributes, List<ProtobufWriter> metrics) {
+    ProtobufWriter resource = new ProtobufWriter();
+    resourceAttributes.forEach(
+        (key, value) -> resource.message(RESOURCE_ATTRIBUTES, keyValue(key, value)));
+
+    ProtobufWriter scopeMetrics =
+        new ProtobufWriter()
+            .message(SCOPE_METRICS_SCOPE, new ProtobufWriter().string(SCOPE_NAME, SCOPE));
+    metrics.forEach(metric -> scopeMetrics.message(SCOPE_METRICS_METRICS, metric));
+
+    ProtobufWriter resourceMetrics =
+        new ProtobufWriter()
+            .message(RESOURCE_METRICS_RESOURCE, resource)
+            .message(RESOURCE_METRICS_SCOPE_METRICS, scopeMetrics);
+    return new ProtobufWriter().message(REQUEST_RESOURCE_METRICS, resourceMetrics).toByteArray();
+  }
+
+  /** Forgets the last exported values of a removed meter. */
+  void forget(Meter.Id id) {
+    lastExportedValues.remove(id);
+  }
+
+  private void addGauge(
+      List<ProtobufWriter> metrics, Meter.Id id, String name, double value, long timeNanos) {
+    if (!Double.isFinite(value)) {
+      return;
+    }
+    ProtobufWriter dataPoint =
+        attributes(new ProtobufWriter(), NUMBER_ATTRIBUTES, id)
+            .fixed64(NUMBER_TIME, timeNanos)
+            .doubleValue(NUMBER_AS_DOUBLE, value);
+    metrics.add(
+        metric(id, name, unitOf(id))
+            .message(METRIC_GAUGE, new ProtobufWriter().message(DATA_POINTS, dataPoint)));
+  }
+
+  private void addSum(
+      List<ProtobufWriter> metrics,
+      Meter.Id id,
+      double cumulativeValue,
+      long intervalStartNanos,
+      long timeNanos) {
+    double value = exportedValues(id, new double[] {cumulativeValue})[0];
+    ProtobufWriter dataPoint =
+        attributes(new ProtobufWriter(), NUMBER_ATTRIBUTES, id)
+            .fixed64(NUMBER_START_TIME, intervalStartNanos)
+            .fixed64(NUMBER_TIME, timeNanos)
+            .doubleValue(NUMBER_AS_DOUBLE, value);
+    ProtobufWriter sum =
+        new ProtobufWriter()
+            .message(DATA_POINTS, dataPoint)
+            .varint(AGGREGATION_TEMPORALITY, temporalityValue())
+            .bool(SUM_IS_MONOTONIC, true);
+    metrics.add(metric(id, id.getName(), unitOf(id)).message(METRIC_SUM, sum));
+  }
+
+  private void addTimer(
+      List<ProtobufWriter> metrics, Timer timer, long intervalStartNanos, long timeNanos) {
+    if (timer instanceof OtlpTimer) {
+      addHistogram(
+          metrics,
+          timer.getId(),
+          unitOf(baseTimeUnit),
+          ((OtlpTimer) timer).histogram(),
+          intervalStartNanos,
+          timeNanos);
+    } else {
+      addHistogram(
+          metrics,
+          timer.getId(),
+          unitOf(baseTimeUnit),
+          timer.count(),
+          timer.totalTime(baseTimeUnit),
+          intervalStartNanos,
+          timeNanos);
+    }
+  }
+
+  private void addSummary(
+      List<ProtobufWriter> metrics,
+      DistributionSummary summary,
+      long intervalStartNanos,
+      long timeNanos) {
+    if (summary instanceof OtlpDistributionSummary) {
+      addHistogram(
+          metrics,
+          summary.getId(),
+          unitOf(summary.getId()),
+          ((OtlpDistributionSummary) summary).histogram(),
+          intervalStartNanos,
+          timeNanos);
+    } else {
+      addHistogram(
+          metrics,
+          summary.getId(),
+          unitOf(summary.getId()),
+          summary.count(),
+          summary.totalAmount(),
+          intervalStartNanos,
+          timeNanos);
+    }
+  }
+
+  private void addFunctionTimer(
+      List<ProtobufWriter> metrics,
+      FunctionTimer functionTimer,
+      long intervalStartNanos,
+      long timeNanos) {
+    addHistogram(
+        metrics,
+        functionTimer.getId(),
+        unitOf(baseTimeUnit),
+        (long) functionTimer.count(),
+        functionTimer.totalTime(baseTimeUnit),
+        intervalStartNanos,
+        timeNanos);
+  }
+
+  private void addHistogram(
+      List<ProtobufWriter> metrics,
+      Meter.Id id,
+      String unit,
+      CumulativeHistogram histogram,
+      long intervalStartNanos,
+      long timeNanos) {
+    long[] bucketCounts = histogram.bucketCounts();
+    double[] values = new double[2 + bucketCounts.length];
+    values[1] = histogram.sum();
+    if (bucketCounts.length == 0) {
+      values[0] = histogram.count();
+    }
+    for (int i = 0; i < bucketCounts.length; i++) {
+      // Counted from the buckets, so that the count always matches them
+      values[0] += bucketCounts[i];
+      values[2 + i] = bucketCounts[i];
+    }
+    encodeHistogram(
+        metrics,
+        id,
+        unit,
+        exportedValues(id, values),
+        histogram.bounds(),
+        intervalStartNanos,
+        timeNanos);
+  }
+
+  private void addHistogram(
+      List<ProtobufWriter> metrics,
+      Meter.Id id,
+      String unit,
+      long count,
+      double sum,
+      long intervalStartNanos,
+      long timeNanos) {
+    encodeHistogram(
+        metrics,
+        id,
+        unit,
+        exportedValues(id, new double[] {count, sum}),
+        new double[0],
+        intervalStartNanos,
+        timeNanos);
+  }
+
+  // The values are the count, the sum, and then the count of every bucket
+  private void encodeHistogram(
+      List<ProtobufWriter> metrics,
+      Meter.Id id,
+      String unit,
+      double[] values,
+      double[] bounds,
+      long intervalStartNanos,
+      long timeNanos) {
+    ProtobufWriter dataPoint =
+        attributes(new ProtobufWriter(), HISTOGRAM_ATTRIBUTES, id)
+            .fixed64(HISTOGRAM_START_TIME, intervalStartNanos)
+            .fixed64(HISTOGRAM_TIME, timeNanos)
+            .fixed64(HISTOGRAM_COUNT, Math.round(values[0]))
+            .doubleValue(HISTOGRAM_SUM, values[1]);
+    if (bounds.length > 0) {
+      long[] bucketCounts = new long[values.length - 2];
+      for (int i = 0; i < bucketCounts.length; i++) {
+        bucketCounts[i] = Math.round(values[2 + i]);
+      }
+      dataPoint
+          .packedFixed64(HISTOGRAM_BUCKET_COUNTS, bucketCounts)
+          .packedDouble(HISTOGRAM_EXPLICIT_BOUNDS, bounds);
+    }
+    ProtobufWriter histogram =
+        new ProtobufWriter()
+            .message(DATA_POINTS, dataPoint)
+            .varint(AGGREGATION_TEMPORALITY, temporalityValue());
+    metrics.add(metric(id, id.getName(), unit).message(METRIC_HISTOGRAM, histogram));
+  }
+
+  // Meters without a matching OTLP type are exported as one gauge per measurement
+  private void addMeasurements(List<ProtobufWriter> metrics, Meter meter, long timeNanos) {
+    for (Measurement measurement : meter.measure()) {
+      addGauge(
+          metrics,
+          meter.getId(),
+          meter.getId().getName() + "." + measurement.getStatistic().getTagValueRepresentation(),
+          measurement.getValue(),
+          timeNanos);
+    }
+  }
+
+  private double[] exportedValues(Meter.Id id, double[] cumulativeValues) {
+    if (temporality == AggregationTemporality.CUMULATIVE) {
+      return cumulativeValues;
+    }
+    double[] previousValues = lastExportedValues.put(id, cumulativeValues);
+    if (previousValues == null || previousValues.length != cumulativeValues.length) {
+      return cumulativeValues;
+    }
+    double[] deltas = new double[cumulativeValues.length];
+    for (int i = 0; i < deltas.length; i++) {
+      deltas[i] = cumulativeValues[i] - previousValues[i];
+      if (deltas[i] < 0) {
+        // The cumulative values were reset, e.g. by a function counter
+        return cumulativeValues;
+      }
+    }
+    return deltas;
+  }
+
+  private int temporalityValue() {
+    return temporality == AggregationTemporality.DELTA
+        ? TEMPORALITY_DELTA
+        : TEMPORALITY_CUMULATIVE;
+  }
+
+  private static ProtobufWriter metric(Meter.Id id, String name, String unit) {
+    ProtobufWriter metric = new ProtobufWriter().string(METRIC_NAME, name);
+    if (id.getDescription() != null) {
+      metric.string(METRIC_DESCRIPTION, id.getDescription());
+    }
+    if (!unit.isEmpty()) {
+      metric.string(METRIC_UNIT, unit);
+    }
+    return metric;
+  }
+
+  private static ProtobufWriter attributes(ProtobufWriter dataPoint, int field, Meter.Id id) {
+    for (Tag tag : id.getTagsAsIterable()) {
+      dataPoint.message(field, keyValue(tag.getKey(), tag.getValue()));
+    }
+    return dataPoint;
+  }
+
+  private static ProtobufWriter keyValue(String key, String value) {
+    return new ProtobufWriter()
+        .string(KEY_VALUE_KEY, key)
+        .message(KEY_VALUE_VALUE, new ProtobufWriter().string(ANY_VALUE_STRING, value));
+  }
+
+  private static String unitOf(Meter.Id id) {
+    return id.getBaseUnit() == null ? "" : id.getBaseUnit();
+  }
+
+  private static String unitOf(TimeUnit timeUnit) {
+    switch (timeUnit) {
+      case NANOSECONDS:
+        return "ns";
+      case MICROSECONDS:
+        return "us";
+      case MILLISECONDS:
+        return "ms";
+      case SECONDS:
+        return "s";
+      case MINUTES:
+        return "min";
+      case HOURS:
+        return "h";
+      default:
+        return "d";
+    }
+  }
+}
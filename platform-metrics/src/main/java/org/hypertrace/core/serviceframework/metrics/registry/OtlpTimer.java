@@ -0,0 +1,56 @@
+package org.hypertrace.core.serviceframework.metrics.registry;
+
+import io.micrometer.core.instrument.AbstractTimer;
+import io.micrometer.core.instrument.Clock;
+import io.micrometer.core.instrument.distribution.DistributionStatisticConfig;
+import io.micrometer.core.instrument.distribution.TimeWindowMax;
+import io.micrometer.core.instrument.distribution.pause.PauseDetector;
+import io.micrometer.core.instrument.util.TimeUtils;
+import java.util.concurrent.TimeUnit;
+
+/** Timer recording into a {@link CumulativeHistogram}, in the base time unit of the registry. */
+class OtlpTimer extends AbstractTimer {
+  private final CumulativeHistogram histogram;
+  private final TimeWindowMax max;
+
+  OtlpTimer(
+      Id id,
+      Clock clock,
+      DistributionStatisticConfig distributionStatisticConfig,
+      PauseDetector pauseDetector,
+      TimeUnit baseTimeUnit) {
+    // Buckets are kept by the cumulative histogram, and OTLP has no use for client percentiles
+    super(id, clock, DistributionStatisticConfig.NONE, pauseDetector, baseTimeUnit, false);
+    this.histogram =
+        new CumulativeHistogram(
+            distributionStatisticConfig.getHistogramBuckets(false).stream()
+                .mapToDouble(bucketNanos -> TimeUtils.nanosToUnit(bucketNanos, baseTimeUnit))
+                .toArray());
+    this.max = new TimeWindowMax(clock, distributionStatisticConfig);
+  }
+
+  CumulativeHistogram histogram() {
+    return histogram;
+  }
+
+  @Override
+  protected void recordNonNegative(long amount, TimeUnit unit) {
+    histogram.record(TimeUtils.convert(amount, unit, baseTimeUnit()));
+    max.record(amount, unit);
+  }
+
+  @Override
+  public long count() {
+    return histogram.count();
+  }
+
+  @Override
+  public double totalTime(TimeUnit unit) {
+    return TimeUtils.convert(histogram.sum(), baseTimeUnit(), unit);
+  }
+
+  @Override
+  public double max(TimeUnit unit) {
+    return max.poll(unit);
+  }
+}
@@ -1,43 +1,144 @@
 package org.hypertrace.core.serviceframework.metrics.registry;
 
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Timer;
 import io.micrometer.core.instrument.util.TimeUtils;
 import io.micrometer.core.lang.Nullable;
 import io.micrometer.prometheus.PrometheusMeterRegistry;
+import io.prometheus.client.Collector.MetricFamilySamples;
 import io.prometheus.client.exporter.PushGateway;
+import io.prometheus.client.exporter.common.TextFormat;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.HttpURLConnection;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.GZIPOutputStream;
 import org.hypertrace.core.serviceframework.metrics.PlatformMetricsRegistry;
 import org.hypertrace.core.serviceframework.metrics.config.PrometheusPushRegistryConfig;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-/** Metric Registry for Prometheus Push Gateway */
+/**
+ * Metric Registry for Prometheus Push Gateway.
+ *
+ * <p>Pushes are triggered every step by a scheduling thread, but serialized and sent on a separate
+ * publisher thread, so a slow gateway never delays the schedule: a step whose previous push is
+ * still in flight is skipped instead of queued. Failed pushes are retried with a jittered
+ * exponential backoff, and latency, payload size, failures and skipped pushes are reported as the
+ * "metrics.push.*" meters of this registry.
+ *
+ * <p>When created with the gateway address, pushes are sent with a bounded timeout, can be gzipped,
+ * and can leave out the metric families that haven't changed since the last successful push.
+ */
 public class PrometheusPushMeterRegistry extends PrometheusMeterRegistry {
   private static final Logger logger = LoggerFactory.getLogger(PlatformMetricsRegistry.class);
+  private static final String PUSH_DURATION_TIMER = "metrics.push.duration";
+  private static final String PUSH_BYTES_SUMMARY = "metrics.push.bytes";
+  private static final String PUSH_FAILURES_COUNTER = "metrics.push.failures";
+  private static final String PUSH_SKIPPED_COUNTER = "metrics.push.skipped";
+  // Every few pushes all the families are sent, so a restarted gateway gets all of them back
+  private static final int FULL_PUSH_INTERVAL = 10;
+
   private final PrometheusPushRegistryConfig pushConfig;
-  private final PushGateway pushGateway;
+  @Nullable private final PushGateway pushGateway;
+  @Nullable private final URL pushUrl;
+
+  private final Timer pushTimer;
+  private final DistributionSummary pushBytes;
+  private final Counter pushFailures;
+  private final Counter pushSkipped;
+
+  private final AtomicBoolean pushInFlight = new AtomicBoolean();
+  private final Object publishLock = new Object();
+  // Guarded by publishLock
+  private final Map<String, MetricFamilySamples> lastPushedFamilies = new HashMap<>();
+  private int pushesSinceFullPush;
 
   @Nullable private ScheduledExecutorService scheduledExecutorService;
+  @Nullable private volatile ExecutorService publisherExecutorService;
 
+  /**
+   * Pushes through the given {@link PushGateway}. Timeouts, compression and skipping unchanged
+   * families are left to the gateway client, which pushes the whole registry every step.
+   */
   public PrometheusPushMeterRegistry(
       PrometheusPushRegistryConfig pushConfig,
       ThreadFactory threadFactory,
       PushGateway pushGateway) {
+    this(pushConfig, threadFactory, pushGateway, null);
+  }
+
+  /**
+   * Pushes to the gateway at the given address, e.g. "localhost:9091" or
+   * "https://pushgateway:9091".
+   */
+  public PrometheusPushMeterRegistry(
+      PrometheusPushRegistryConfig pushConfig, ThreadFactory threadFactory, String address) {
+    this(pushConfig, threadFactory, null, pushUrlFor(address, pushConfig.jobName()));
+  }
+
+  private PrometheusPushMeterRegistry(
+      PrometheusPushRegistryConfig pushConfig,
+      ThreadFactory threadFactory,
+      @Nullable PushGateway pushGateway,
+      @Nullable URL pushUrl) {
     super(pushConfig::get);
 
     pushConfig.requireValid();
 
     this.pushConfig = pushConfig;
     this.pushGateway = pushGateway;
+    this.pushUrl = pushUrl;
+
+    this.pushTimer = Timer.builder(PUSH_DURATION_TIMER).register(this);
+    this.pushBytes =
+        DistributionSummary.builder(PUSH_BYTES_SUMMARY).baseUnit("bytes").register(this);
+    this.pushFailures = Counter.builder(PUSH_FAILURES_COUNTER).register(this);
+    this.pushSkipped = Counter.builder(PUSH_SKIPPED_COUNTER).register(this);
 
     start(threadFactory);
   }
 
   public void publish() throws IOException {
-    pushGateway.pushAdd(getPrometheusRegistry(), pushConfig.jobName());
+    synchronized (publishLock) {
+      long startNanos = System.nanoTime();
+      try {
+        if (pushGateway != null) {
+          pushGateway.pushAdd(getPrometheusRegistry(), pushConfig.jobName());
+        } else {
+          pushBytes.record(pushChangedFamilies());
+        }
+      } catch (IOException | RuntimeException e) {
+        pushFailures.increment();
+        // The gateway may have missed families, so the next push sends all of them
+        lastPushedFamilies.clear();
+        throw e;
+      } finally {
+        pushTimer.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+      }
+    }
   }
 
   /** Catch uncaught exceptions thrown from {@link #publish()}. */
@@ -62,9 +163,10 @@ public class PrometheusPushMeterRegistry extends PrometheusMeterRegistry {
               + " every "
               + TimeUtils.format(pushConfig.step()));
 
+      publisherExecutorService = Executors.newSingleThreadExecutor(threadFactory);
       scheduledExecutorService = Executors.newSingleThreadScheduledExecutor(threadFactory);
       scheduledExecutorService.scheduleAtFixedRate(
-          this::publishSafely,
+          this::triggerPush,
           pushConfig.step().toMillis(),
           pushConfig.step().toMillis(),
           TimeUnit.MILLISECONDS);
@@ -76,14 +178,153 @@ public class PrometheusPushMeterRegistry extends PrometheusMeterRegistry {
       scheduledExecutorService.shutdown();
       scheduledExecutorService = null;
     }
+    if (publisherExecutorService != null) {
+      // Interrupts a push waiting for its next retry
+      publisherExecutorService.shutdownNow();
+      publisherExecutorService = null;
+    }
   }
 
   @Override
   public void close() {
+    stop();
     if (pushConfig.enabled()) {
       publishSafely();
     }
-    stop();
     super.close();
   }
+
+  private void triggerPush() {
+    ExecutorService executorService = publisherExecutorService;
+    if (executorService == null) {
+      return;
+    }
+    if (!pushInFlight.compareAndSet(false, true)) {
+      pushSkipped.increment();
+      logger.warn("Skipping metrics push, the previous push is still in progress");
+      return;
+    }
+    try {
+      executorService.execute(this::publishWithRetries);
+    } catch (RejectedExecutionException e) {
+      pushInFlight.set(false);
+    }
+  }
+
+  private void publishWithRetries() {
+    try {
+      for (int attempt = 0; ; attempt++) {
+        try {
+          publish();
+          return;
+        } catch (Exception e) {
+          if (attempt >= pushConfig.maxRetries()) {
+            logger.warn("Failed to push metrics after {} attempts", attempt + 1, e);
+            return;
+          }
+          long backoffMillis = backoffMillis(attempt);
+          logger.debug("Failed to push metrics, retrying in {} ms", backoffMillis, e);
+          Thread.sleep(backoffMillis);
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } finally {
+      pushInFlight.set(false);
+    }
+  }
+
+  private long backoffMillis(int attempt) {
+    long maxBackoffMillis = Math.max(1, pushConfig.step().toMillis() / 2);
+    long backoffMillis =
+        Math.min(maxBackoffMillis, pushConfig.retryBackoff().toMillis() << Math.min(attempt, 20));
+    // Half of the backoff is fixed and half is random, so instances failing together spread out
+    return backoffMillis / 2 + ThreadLocalRandom.current().nextLong(backoffMillis / 2 + 1);
+  }
+
+  /** Pushes the families that changed since the last push, returns the number of bytes sent. */
+  private long pushChangedFamilies() throws IOException {
+    boolean fullPush = !pushConfig.skipUnchanged() || pushesSinceFullPush == 0;
+    List<MetricFamilySamples> families = new ArrayList<>();
+    List<MetricFamilySamples> changedFamilies = new ArrayList<>();
+    Enumeration<MetricFamilySamples> samples = getPrometheusRegistry().metricFamilySamples();
+    while (samples.hasMoreElements()) {
+      MetricFamilySamples family = samples.nextElement();
+      families.add(family);
+      if (fullPush || !family.equals(lastPushedFamilies.get(family.name))) {
+        changedFamilies.add(family);
+      }
+    }
+
+    long bytes = 0;
+    if (!changedFamilies.isEmpty()) {
+      byte[] body = serialize(changedFamilies);
+      send(body);
+      bytes = body.length;
+    }
+
+    if (pushConfig.skipUnchanged()) {
+      lastPushedFamilies.clear();
+      families.forEach(family -> lastPushedFamilies.put(family.name, family));
+      pushesSinceFullPush = (pushesSinceFullPush + 1) % FULL_PUSH_INTERVAL;
+    }
+    return bytes;
+  }
+
+  private byte[] serialize(List<MetricFamilySamples> families) throws IOException {
+    ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+    OutputStream bodyStream =
+        pushConfig.compressed() ? new GZIPOutputStream(outputStream) : outputStream;
+    try (Writer writer = new OutputStreamWriter(bodyStream, StandardCharsets.UTF_8)) {
+      TextFormat.write004(writer, Collections.enumeration(families));
+    }
+    return outputStream.toByteArray();
+  }
+
+  private void send(byte[] body) throws IOException {
+    int timeoutMillis = (int) pushConfig.pushTimeout().toMillis();
+    HttpURLConnection connection = (HttpURLConnection) pushUrl.openConnection();
+    try {
+      connection.setConnectTimeout(timeoutMillis);
+      connection.setReadTimeout(timeoutMillis);
+      connection.setRequestMethod("POST");
+      connection.setDoOutput(true);
+      connection.setRequestProperty("Content-Type", TextFormat.CONTENT_TYPE_004);
+      if (pushConfig.compressed()) {
+        connection.setRequestProperty("Content-Encoding", "gzip");
+      }
+      connection.setFixedLengthStreamingMode(body.length);
+      try (OutputStream outputStream = connection.getOutputStream()) {
+        outputStream.write(body);
+      }
+
+      int responseCode = connection.getResponseCode();
+      if (responseCode / 100 != 2) {
+        throw new IOException(
+            "Response code from " + pushUrl + " was " + responseCode + " instead of 2xx");
+      }
+    } finally {
+      connection.disconnect();
+    }
+  }
+
+  @Nullable
+  private static URL pushUrlFor(String address, @Nullable String jobName) {
+    if (jobName == null) {
+      // Rejected when validating the config
+      return null;
+    }
+    String baseUrl = address.contains("://") ? address : "http://" + address;
+    // Same job path as the PushGateway client, which base64 encodes jobs containing a slash
+    String jobPath =
+        jobName.contains("/")
+            ? "job@base64/"
+                + Base64.getUrlEncoder().encodeToString(jobName.getBytes(StandardCharsets.UTF_8))
+            : "job/" + URLEncoder.encode(jobName, StandardCharsets.UTF_8);
+    try {
+      return new URL(baseUrl + "/metrics/" + jobPath);
+    } catch (MalformedURLException e) {
+      throw new IllegalArgumentException("Invalid push gateway address: " + address, e);
+    }
+  }
 }
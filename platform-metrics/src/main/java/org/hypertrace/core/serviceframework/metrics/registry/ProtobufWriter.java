@@ -0,0 +1,110 @@
+package org.hypertrace.core.serviceframework.metrics.registry;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Minimal protocol buffers encoder, covering the wire types used by the OTLP metrics messages.
+ * Nested messages are encoded in their own writer and then appended with their length.
+ */
+final class ProtobufWriter {
+  private static final int VARINT = 0;
+  private static final int FIXED64 = 1;
+  private static final int LENGTH_DELIMITED = 2;
+
+  private byte[] buffer = new byte[64];
+  private int size;
+
+  ProtobufWriter varint(int field, long value) {
+    tag(field, VARINT);
+    rawVarint(value);
+    return this;
+  }
+
+  ProtobufWriter bool(int field, boolean value) {
+    return varint(field, value ? 1 : 0);
+  }
+
+  ProtobufWriter fixed64(int field, long value) {
+    tag(field, FIXED64);
+    rawFixed64(value);
+    return this;
+  }
+
+  ProtobufWriter doubleValue(int field, double value) {
+    return fixed64(field, Double.doubleToRawLongBits(value));
+  }
+
+  ProtobufWriter string(int field, String value) {
+    byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+    tag(field, LENGTH_DELIMITED);
+    rawVarint(bytes.length);
+    rawBytes(bytes, 0, bytes.length);
+    return this;
+  }
+
+  ProtobufWriter message(int field, ProtobufWriter message) {
+    tag(field, LENGTH_DELIMITED);
+    rawVarint(message.size);
+    rawBytes(message.buffer, 0, message.size);
+    return this;
+  }
+
+  ProtobufWriter packedFixed64(int field, long[] values) {
+    tag(field, LENGTH_DELIMITED);
+    rawVarint(values.length * (long) Long.BYTES);
+    for (long value : values) {
+      rawFixed64(value);
+    }
+    return this;
+  }
+
+  ProtobufWriter packedDouble(int field, double[] values) {
+    tag(field, LENGTH_DELIMITED);
+    rawVarint(values.length * (long) Double.BYTES);
+    for (double value : values) {
+      rawFixed64(Double.doubleToRawLongBits(value));
+    }
+    return this;
+  }
+
+  int size() {
+    return size;
+  }
+
+  byte[] toByteArray() {
+    return Arrays.copyOf(buffer, size);
+  }
+
+  private void tag(int field, int wireType) {
+    rawVarint(((long) field << 3) | wireType);
+  }
+
+  private void rawVarint(long value) {
+    ensureCapacity(10);
+    while ((value & ~0x7FL) != 0) {
+      buffer[size++] = (byte) ((value & 0x7F) | 0x80);
+      value >>>= 7;
+    }
+    buffer[size++] = (byte) value;
+  }
+
+  private void rawFixed64(long value) {
+    ensureCapacity(Long.BYTES);
+    for (int i = 0; i < Long.BYTES; i++) {
+      buffer[size++] = (byte) (value >>> (8 * i));
+    }
+  }
+
+  private void rawBytes(byte[] bytes, int offset, int length) {
+    ensureCapacity(length);
+    System.arraycopy(bytes, offset, buffer, size, length);
+    size += length;
+  }
+
+  private void ensureCapacity(int additionalBytes) {
+    if (size + additionalBytes > buffer.length) {
+      buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, size + additionalBytes));
+    }
+  }
+}
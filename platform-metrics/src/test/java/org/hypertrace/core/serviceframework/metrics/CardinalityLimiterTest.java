@@ -0,0 +1,99 @@
+package org.hypertrace.core.serviceframework.metrics;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.typesafe.config.ConfigFactory;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.Map;
+import java.util.Set;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/** Unit tests for {@link CardinalityLimiter} */
+public class CardinalityLimiterTest {
+  private MeterRegistry registry;
+
+  @BeforeEach
+  public void setUp() {
+    registry = new SimpleMeterRegistry();
+    registry.config().commonTags("app", "test-service");
+    new CardinalityLimiter(registry, 100, Map.of("my.counter", 2), Set.of("app")).install();
+  }
+
+  @Test
+  public void testNewSeriesAreFoldedOnceLimitIsReached() {
+    Counter first = registry.counter("my.counter", "id", "1");
+    Counter second = registry.counter("my.counter", "id", "2");
+    Counter overflow = registry.counter("my.counter", "id", "3");
+    assertNotSame(first, second);
+    assertSame(overflow, registry.counter("my.counter", "id", "4"));
+    assertSame(first, registry.counter("my.counter", "id", "1"));
+
+    assertEquals(CardinalityLimiter.OVERFLOW_TAG_VALUE, overflow.getId().getTag("id"));
+    assertEquals("test-service", overflow.getId().getTag("app"));
+    assertEquals(3, registry.get("my.counter").counters().size());
+    assertEquals(3, seriesGauge("my.counter"));
+    double estimatedBytes =
+        registry
+            .get(CardinalityLimiter.ESTIMATED_BYTES_GAUGE)
+            .tag("metric", "my.counter")
+            .gauge()
+            .value();
+    assertTrue(estimatedBytes > 0);
+
+    // Other metrics fall back to the default limit
+    for (int i = 0; i < 10; i++) {
+      registry.counter("other.counter", "id", String.valueOf(i));
+    }
+    assertEquals(10, registry.get("other.counter").counters().size());
+    // and are only accounted for once they reach half of it
+    assertNull(
+        registry.find(CardinalityLimiter.SERIES_GAUGE).tag("metric", "other.counter").gauge());
+    for (int i = 10; i < 50; i++) {
+      registry.counter("other.counter", "id", String.valueOf(i));
+    }
+    assertEquals(50, seriesGauge("other.counter"));
+  }
+
+  @Test
+  public void testRemovedSeriesFreeTheirSlot() {
+    Counter first = registry.counter("my.counter", "id", "1");
+    registry.counter("my.counter", "id", "2");
+    registry.counter("my.counter", "id", "3");
+    assertEquals(3, seriesGauge("my.counter"));
+
+    registry.remove(first);
+    assertEquals(2, seriesGauge("my.counter"));
+
+    Counter admitted = registry.counter("my.counter", "id", "5");
+    assertEquals("5", admitted.getId().getTag("id"));
+    assertEquals(3, seriesGauge("my.counter"));
+  }
+
+  @Test
+  public void testLimitsFromConfig() {
+    PlatformMetricsRegistry.initMetricsRegistry(
+        "test-service",
+        ConfigFactory.parseString(
+            "reporter.names = [testing]\n"
+                + "cardinality.limits { \"my.counter\" = 1, my.timer = 5 }\n"));
+    try {
+      PlatformMetricsRegistry.registerCounter("my.counter", Map.of("id", "1"));
+      Counter overflow = PlatformMetricsRegistry.registerCounter("my.counter", Map.of("id", "2"));
+      assertEquals(CardinalityLimiter.OVERFLOW_TAG_VALUE, overflow.getId().getTag("id"));
+      assertEquals("test-service", overflow.getId().getTag("app"));
+    } finally {
+      PlatformMetricsRegistry.stop();
+    }
+  }
+
+  private double seriesGauge(String metricName) {
+    return registry.get(CardinalityLimiter.SERIES_GAUGE).tag("metric", metricName).gauge().value();
+  }
+}
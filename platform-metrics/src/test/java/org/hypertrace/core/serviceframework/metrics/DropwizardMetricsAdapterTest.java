@@ -0,0 +1,178 @@
+package org.hypertrace.core.serviceframework.metrics;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.Reservoir;
+import com.codahale.metrics.SlidingWindowReservoir;
+import com.codahale.metrics.Snapshot;
+import com.codahale.metrics.Timer;
+import com.typesafe.config.ConfigFactory;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.prometheus.PrometheusConfig;
+import io.micrometer.prometheus.PrometheusMeterRegistry;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/** Unit tests for {@link DropwizardMetricsAdapter} */
+@SuppressWarnings("deprecation")
+public class DropwizardMetricsAdapterTest {
+  private static final String PREFIX = PlatformMetricsRegistry.DEFAULT_METRICS_PREFIX + ".";
+
+  @BeforeEach
+  public void initRegistry() {
+    PlatformMetricsRegistry.initMetricsRegistry(
+        "test-service", ConfigFactory.parseMap(Map.of("reporter.names", List.of("testing"))));
+  }
+
+  @AfterEach
+  public void stopRegistry() {
+    PlatformMetricsRegistry.stop();
+  }
+
+  @Test
+  public void testRegisteredMetricsAreReportedAsMeters() {
+    Counter counter = new Counter();
+    PlatformMetricsRegistry.register("legacy.counter", counter);
+    counter.inc(3);
+    counter.dec();
+
+    Meter meter = new Meter();
+    PlatformMetricsRegistry.register("legacy.meter", meter);
+    meter.mark(5);
+
+    Gauge<Integer> gauge = () -> 7;
+    PlatformMetricsRegistry.register("legacy.gauge", gauge);
+
+    MeterRegistry registry = PlatformMetricsRegistry.getMeterRegistry();
+    assertEquals(2, registry.get(PREFIX + "legacy.counter").gauge().value());
+    assertEquals(5, registry.get(PREFIX + "legacy.meter").functionCounter().count());
+    assertEquals(7, registry.get(PREFIX + "legacy.gauge").gauge().value());
+    assertEquals(
+        "test-service", registry.get(PREFIX + "legacy.gauge").gauge().getId().getTag("app"));
+  }
+
+  @Test
+  public void testHistogramsAndTimersAreReportedAsQuantiles() {
+    Histogram histogram = new Histogram(new SlidingWindowReservoir(100));
+    PlatformMetricsRegistry.register("legacy.histogram", histogram);
+    for (int i = 1; i <= 100; i++) {
+      histogram.update(i);
+    }
+
+    Timer timer = new Timer();
+    PlatformMetricsRegistry.register("legacy.timer", timer);
+    timer.update(2, TimeUnit.SECONDS);
+
+    MeterRegistry registry = PlatformMetricsRegistry.getMeterRegistry();
+    assertEquals(
+        50.5, registry.get(PREFIX + "legacy.histogram").tag("quantile", "0.5").gauge().value());
+    assertEquals(100, registry.get(PREFIX + "legacy.histogram.count").gauge().value());
+    assertEquals(2, registry.get(PREFIX + "legacy.timer").tag("quantile", "0.99").gauge().value());
+    assertEquals(1, registry.get(PREFIX + "legacy.timer.count").gauge().value());
+  }
+
+  @Test
+  public void testQuantilesOfAReportShareASnapshot() {
+    AtomicInteger snapshots = new AtomicInteger();
+    Reservoir reservoir = new SlidingWindowReservoir(100);
+    Histogram histogram =
+        new Histogram(
+            new Reservoir() {
+              @Override
+              public int size() {
+                return reservoir.size();
+              }
+
+              @Override
+              public void update(long value) {
+                reservoir.update(value);
+              }
+
+              @Override
+              public Snapshot getSnapshot() {
+                snapshots.incrementAndGet();
+                return reservoir.getSnapshot();
+              }
+            });
+    PlatformMetricsRegistry.register("legacy.histogram", histogram);
+    histogram.update(3);
+
+    PlatformMetricsRegistry.getMeterRegistry()
+        .get(PREFIX + "legacy.histogram")
+        .gauges()
+        .forEach(io.micrometer.core.instrument.Gauge::value);
+    assertEquals(1, snapshots.get());
+  }
+
+  @Test
+  public void testPrometheusSeriesNamesAreKept() {
+    PrometheusMeterRegistry registry = new PrometheusMeterRegistry(PrometheusConfig.DEFAULT);
+    DropwizardMetricsAdapter adapter = new DropwizardMetricsAdapter(() -> registry);
+    Counter counter = new Counter();
+    counter.inc(2);
+    adapter.bind("legacy.counter", counter);
+    Meter meter = new Meter();
+    meter.mark(5);
+    adapter.bind("legacy.meter", meter);
+    Histogram histogram = new Histogram(new SlidingWindowReservoir(100));
+    histogram.update(3);
+    adapter.bind("legacy.histogram", histogram);
+    Timer timer = new Timer();
+    timer.update(2, TimeUnit.SECONDS);
+    adapter.bind("legacy.timer", timer);
+
+    // The series names exported by the Prometheus Dropwizard exporter
+    Set<String> seriesNames =
+        registry
+            .scrape()
+            .lines()
+            .filter(line -> !line.startsWith("#"))
+            .map(line -> line.split("[{ ]", 2)[0])
+            .collect(Collectors.toSet());
+    assertEquals(
+        Set.of(
+            "legacy_counter",
+            "legacy_meter_total",
+            "legacy_histogram",
+            "legacy_histogram_count",
+            "legacy_timer",
+            "legacy_timer_count"),
+        seriesNames);
+    assertTrue(registry.scrape().contains("legacy_timer{quantile=\"0.99\",} 2.0\n"));
+    assertTrue(registry.scrape().contains("legacy_timer_count 1.0\n"));
+  }
+
+  @Test
+  public void testDuplicateRegistrationIsIgnored() {
+    Counter first = new Counter();
+    first.inc();
+    PlatformMetricsRegistry.register("legacy.counter", first);
+    PlatformMetricsRegistry.register("legacy.counter", new Counter());
+
+    MeterRegistry registry = PlatformMetricsRegistry.getMeterRegistry();
+    assertEquals(1, registry.get(PREFIX + "legacy.counter").gauge().value());
+  }
+
+  @Test
+  public void testLegacyMetricRegistryIsBridged() {
+    PlatformMetricsRegistry.getMetricRegistry().counter("bridged.counter").inc(4);
+
+    MeterRegistry registry = PlatformMetricsRegistry.getMeterRegistry();
+    assertEquals(4, registry.get("bridged.counter").gauge().value());
+
+    PlatformMetricsRegistry.getMetricRegistry().remove("bridged.counter");
+    assertTrue(registry.find("bridged.counter").meters().isEmpty());
+  }
+}
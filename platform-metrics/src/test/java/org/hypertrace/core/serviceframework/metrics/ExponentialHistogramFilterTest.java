@@ -0,0 +1,104 @@
+package org.hypertrace.core.serviceframework.metrics;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.typesafe.config.ConfigFactory;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.CountAtBucket;
+import io.micrometer.core.instrument.distribution.HistogramSnapshot;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+/** Unit tests for {@link ExponentialHistogramFilter} */
+public class ExponentialHistogramFilterTest {
+
+  @AfterEach
+  public void stopRegistry() {
+    PlatformMetricsRegistry.stop();
+  }
+
+  @Test
+  public void testBucketBoundaries() {
+    assertArrayEquals(
+        new double[] {1, 2, 4, 8, 16}, ExponentialHistogramFilter.bucketBoundaries(1, 16, 0));
+    assertArrayEquals(
+        new double[] {2, Math.sqrt(8), 4},
+        ExponentialHistogramFilter.bucketBoundaries(1.5, 4, 1),
+        1e-9);
+    assertArrayEquals(
+        new double[] {1, 16, 256}, ExponentialHistogramFilter.bucketBoundaries(1, 256, -2));
+
+    // Wide ranges are downscaled to fit the maximum bucket count
+    double[] boundaries = ExponentialHistogramFilter.bucketBoundaries(1, 1e30, 8);
+    assertTrue(boundaries.length <= ExponentialHistogramFilter.MAX_BUCKETS);
+    assertTrue(boundaries[boundaries.length - 1] >= 1e30);
+  }
+
+  @Test
+  public void testInvalidScale() {
+    assertThrows(IllegalArgumentException.class, () -> new ExponentialHistogramFilter(null, 9));
+  }
+
+  @Test
+  public void testExponentialModeForSelectedMetrics() {
+    PlatformMetricsRegistry.initMetricsRegistry(
+        "test-service",
+        ConfigFactory.parseString(
+            "reporter.names = [testing]\n"
+                + "histogram.exponential { metrics = [my.timer, my.summary], scale = 0 }\n"));
+
+    Timer timer = PlatformMetricsRegistry.registerTimer("my.timer", Map.of("foo", "bar"), true);
+    timer.record(3, TimeUnit.SECONDS);
+    HistogramSnapshot timerSnapshot = timer.takeSnapshot();
+    assertEquals(0, timerSnapshot.percentileValues().length);
+    // 2^30ns to 2^36ns, covering the 1s - 60s range of histogram timers
+    CountAtBucket[] timerBuckets = timerSnapshot.histogramCounts();
+    assertEquals(7, timerBuckets.length);
+    assertEquals(1L << 30, (long) timerBuckets[0].bucket(TimeUnit.NANOSECONDS));
+    assertEquals(1L << 36, (long) timerBuckets[6].bucket(TimeUnit.NANOSECONDS));
+
+    DistributionSummary summary =
+        PlatformMetricsRegistry.registerDistributionSummary(
+            "my.summary", Map.of("foo", "bar"), true, 1.0, 1000.0);
+    summary.record(100);
+    CountAtBucket[] summaryBuckets = summary.takeSnapshot().histogramCounts();
+    assertEquals(11, summaryBuckets.length);
+    assertEquals(128, summaryBuckets[7].bucket());
+    assertEquals(0, summaryBuckets[6].count());
+    assertEquals(1, summaryBuckets[7].count());
+
+    // Other metrics keep the classic percentiles
+    Timer classicTimer = PlatformMetricsRegistry.registerTimer("other.timer", Map.of());
+    assertEquals(5, classicTimer.takeSnapshot().percentileValues().length);
+  }
+
+  @Test
+  public void testExponentialModeForAllMetrics() {
+    PlatformMetricsRegistry.initMetricsRegistry(
+        "test-service",
+        ConfigFactory.parseString("reporter.names = [testing]\nhistogram.mode = exponential\n"));
+
+    Timer timer = PlatformMetricsRegistry.registerTimer("any.timer", Map.of(), true);
+    HistogramSnapshot snapshot = timer.takeSnapshot();
+    assertEquals(0, snapshot.percentileValues().length);
+    // 2^30ns to 2^36ns by half powers, covering the 1s - 60s range of histogram timers
+    assertEquals(13, snapshot.histogramCounts().length);
+
+    // Meters without histograms keep their percentiles, and explicit buckets are kept
+    Timer classicTimer = PlatformMetricsRegistry.registerTimer("classic.timer", Map.of());
+    assertEquals(5, classicTimer.takeSnapshot().percentileValues().length);
+    assertEquals(0, classicTimer.takeSnapshot().histogramCounts().length);
+    Timer bucketedTimer =
+        Timer.builder("bucketed.timer")
+            .serviceLevelObjectives(Duration.ofMillis(10), Duration.ofMillis(100))
+            .register(PlatformMetricsRegistry.getMeterRegistry());
+    assertEquals(2, bucketedTimer.takeSnapshot().histogramCounts().length);
+  }
+}
@@ -0,0 +1,87 @@
+package org.hypertrace.core.serviceframework.metrics;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import com.typesafe.config.ConfigFactory;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Timer;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/** Unit tests for {@link MeterFamily} */
+public class MeterFamilyTest {
+
+  @BeforeEach
+  public void initRegistry() {
+    PlatformMetricsRegistry.initMetricsRegistry(
+        "test-service", ConfigFactory.parseMap(Map.of("reporter.names", List.of("testing"))));
+  }
+
+  @AfterEach
+  public void stopRegistry() {
+    PlatformMetricsRegistry.stop();
+  }
+
+  @Test
+  public void testCounterFamily() {
+    MeterFamily<Counter> family =
+        PlatformMetricsRegistry.registerCounterFamily("my.counter", "tenant", "endpoint");
+
+    Counter counter = family.labels("tenant-1", "/foo");
+    counter.increment();
+    assertSame(counter, family.labels("tenant-1", "/foo"));
+    assertNotSame(counter, family.labels("tenant-2", "/foo"));
+
+    // Children are regular meters, shared with the map based registration
+    assertSame(
+        counter,
+        PlatformMetricsRegistry.getMeterRegistry()
+            .get("my.counter")
+            .tags("tenant", "tenant-1", "endpoint", "/foo")
+            .counter());
+    assertEquals(
+        1,
+        PlatformMetricsRegistry.registerCounter(
+                "my.counter", Map.of("tenant", "tenant-1", "endpoint", "/foo"))
+            .count());
+  }
+
+  @Test
+  public void testFamilyGrowsBeyondInitialCapacity() {
+    MeterFamily<Timer> family = PlatformMetricsRegistry.registerTimerFamily("my.timer", "tenant");
+
+    for (int i = 0; i < 1000; i++) {
+      family.labels("tenant-" + i).record(i, TimeUnit.MILLISECONDS);
+    }
+    for (int i = 0; i < 1000; i++) {
+      assertEquals(1, family.labels("tenant-" + i).count());
+    }
+    assertEquals(1000, PlatformMetricsRegistry.getMeterRegistry().get("my.timer").timers().size());
+  }
+
+  @Test
+  public void testWrongNumberOfTagValues() {
+    MeterFamily<Counter> family =
+        PlatformMetricsRegistry.registerCounterFamily("my.counter", "tenant", "endpoint");
+
+    assertThrows(IllegalArgumentException.class, () -> family.labels("tenant-1"));
+  }
+
+  @Test
+  public void testNullTagValue() {
+    MeterFamily<Counter> family =
+        PlatformMetricsRegistry.registerCounterFamily("my.counter", "tenant", "endpoint");
+
+    IllegalArgumentException exception =
+        assertThrows(IllegalArgumentException.class, () -> family.labels("tenant-1", null));
+    assertEquals(
+        "Meter family my.counter got a null value for tag endpoint", exception.getMessage());
+  }
+}
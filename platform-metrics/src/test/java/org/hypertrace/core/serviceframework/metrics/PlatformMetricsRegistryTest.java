@@ -1,6 +1,7 @@
 package org.hypertrace.core.serviceframework.metrics;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import com.github.benmanes.caffeine.cache.Caffeine;
@@ -10,8 +11,11 @@ import com.typesafe.config.Config;
 import com.typesafe.config.ConfigFactory;
 import io.micrometer.core.instrument.Counter;
 import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
 import io.micrometer.core.instrument.Timer;
 import io.micrometer.core.instrument.composite.CompositeMeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
@@ -77,6 +81,56 @@ public class PlatformMetricsRegistryTest {
             .size());
   }
 
+  @Test
+  public void testSingleReporterBoundDirectly() {
+    initializeCustomRegistry(List.of("testing"));
+
+    assertTrue(PlatformMetricsRegistry.getMeterRegistry() instanceof SimpleMeterRegistry);
+    Counter counter = PlatformMetricsRegistry.registerCounter("my.counter", Map.of("foo", "bar"));
+    counter.increment();
+    assertEquals(
+        1,
+        PlatformMetricsRegistry.getMeterRegistry()
+            .get("my.counter")
+            .tag("app", "test-service")
+            .counter()
+            .count());
+  }
+
+  @Test
+  public void testMultipleReportersBoundThroughComposite() {
+    initializeCustomRegistry(List.of("testing", "logging"));
+
+    assertEquals(
+        2,
+        ((CompositeMeterRegistry) PlatformMetricsRegistry.getMeterRegistry())
+            .getRegistries()
+            .size());
+  }
+
+  @Test
+  public void testMeterRegisteredBeforeInitKeepsComposite() {
+    Counter counter = PlatformMetricsRegistry.registerCounter("early.counter", Map.of());
+    initializeCustomRegistry(List.of("testing"));
+
+    counter.increment();
+    assertTrue(PlatformMetricsRegistry.getMeterRegistry() instanceof CompositeMeterRegistry);
+    assertEquals(1, counter.count());
+  }
+
+  @Test
+  public void testRegistryCapturedBeforeInitKeepsComposite() {
+    MeterRegistry registry = PlatformMetricsRegistry.getMeterRegistry();
+    initializeCustomRegistry(List.of("testing"));
+
+    assertSame(registry, PlatformMetricsRegistry.getMeterRegistry());
+    registry.counter("captured.counter").increment();
+    SimpleMeterRegistry reporterRegistry =
+        (SimpleMeterRegistry)
+            ((CompositeMeterRegistry) registry).getRegistries().iterator().next();
+    assertEquals(1, reporterRegistry.get("captured.counter").counter().count());
+  }
+
   @Test
   public void testTimer() {
     initializeCustomRegistry(List.of("testing"));
@@ -116,6 +170,40 @@ public class PlatformMetricsRegistryTest {
     assertEquals(1, counter.count());
   }
 
+  @Test
+  public void testInternedTags() {
+    initializeCustomRegistry(List.of("testing"));
+
+    Tags tags = PlatformMetricsRegistry.internTags(Map.of("foo", "bar", "baz", "qux"));
+    assertSame(
+        tags,
+        PlatformMetricsRegistry.internTags(new HashMap<>(Map.of("baz", "qux", "foo", "bar"))));
+    assertEquals(Tags.of("baz", "qux", "foo", "bar"), tags);
+    assertSame(Tags.empty(), PlatformMetricsRegistry.internTags(null));
+  }
+
+  @Test
+  public void testMeterHandles() {
+    initializeCustomRegistry(List.of("testing"));
+
+    Tags tags = PlatformMetricsRegistry.internTags(Map.of("foo", "bar"));
+    Counter counter = PlatformMetricsRegistry.registerCounter("my.counter", tags);
+    assertSame(
+        counter, PlatformMetricsRegistry.registerCounter("my.counter", Map.of("foo", "bar")));
+    counter.increment();
+    assertEquals(1, PlatformMetricsRegistry.registerCounter("my.counter", tags).count());
+
+    Timer timer = PlatformMetricsRegistry.registerTimer("my.timer", tags, false);
+    assertSame(timer, PlatformMetricsRegistry.registerTimer("my.timer", Map.of("foo", "bar")));
+
+    DistributionSummary summary =
+        PlatformMetricsRegistry.registerDistributionSummary("my.distribution", tags, false);
+    assertSame(
+        summary,
+        PlatformMetricsRegistry.registerDistributionSummary(
+            "my.distribution", Map.of("foo", "bar")));
+  }
+
   @Test
   public void testGauge() {
     initializeCustomRegistry(List.of("testing"));
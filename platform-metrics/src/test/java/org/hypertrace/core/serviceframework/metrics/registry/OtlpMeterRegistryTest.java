@@ -0,0 +1,307 @@
+package org.hypertrace.core.serviceframework.metrics.registry;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MockClock;
+import io.micrometer.core.instrument.Timer;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+import org.hypertrace.core.serviceframework.metrics.config.OtlpRegistryConfig;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class OtlpMeterRegistryTest {
+  private static final int DELTA = 1;
+  private static final int CUMULATIVE = 2;
+
+  private OtlpMeterRegistry otlpMeterRegistry;
+  private HttpServer collector;
+  private final List<byte[]> exportRequests = new CopyOnWriteArrayList<>();
+  private final List<String> apiKeys = new CopyOnWriteArrayList<>();
+  private volatile int collectorResponseCode = 200;
+
+  @BeforeEach
+  public void startCollector() throws IOException {
+    collector = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+    collector.createContext("/v1/metrics", this::handleExport);
+    collector.start();
+  }
+
+  @AfterEach
+  public void stopCollector() {
+    if (otlpMeterRegistry != null) {
+      otlpMeterRegistry.stop();
+    }
+    collector.stop(0);
+  }
+
+  @Test
+  public void test_publish_deltaTemporality() throws IOException {
+    otlpMeterRegistry = create(Map.of("otlp.aggregationTemporality", "delta"));
+    Counter counter = otlpMeterRegistry.counter("my.counter");
+    Timer timer =
+        Timer.builder("my.timer")
+            .serviceLevelObjectives(Duration.ofMillis(10), Duration.ofMillis(100))
+            .register(otlpMeterRegistry);
+
+    counter.increment(3);
+    timer.record(5, TimeUnit.MILLISECONDS);
+    timer.record(50, TimeUnit.MILLISECONDS);
+    timer.record(500, TimeUnit.MILLISECONDS);
+    otlpMeterRegistry.publish();
+    counter.increment(2);
+    timer.record(5, TimeUnit.MILLISECONDS);
+    otlpMeterRegistry.publish();
+
+    assertEquals(2, exportRequests.size());
+    Map<String, Message> first = metricsOf(exportRequests.get(0));
+    assertEquals(3.0, sumValue(first.get("my.counter")));
+    assertArrayEquals(new long[] {1, 1, 1}, histogramPoint(first.get("my.timer")).bucketCounts());
+
+    Map<String, Message> second = metricsOf(exportRequests.get(1));
+    Message sum = second.get("my.counter").message(7);
+    assertEquals(DELTA, sum.varint(2));
+    assertEquals(2.0, sumValue(second.get("my.counter")));
+
+    Message histogram = second.get("my.timer").message(9);
+    assertEquals(DELTA, histogram.varint(2));
+    Message point = histogram.message(1);
+    assertEquals(1, point.fixed64(4));
+    assertEquals(5.0, Double.longBitsToDouble(point.fixed64(5)));
+    assertArrayEquals(new long[] {1, 0, 0}, point.bucketCounts());
+    assertArrayEquals(new double[] {10, 100}, point.explicitBounds());
+    assertEquals("ms", second.get("my.timer").string(3));
+  }
+
+  @Test
+  public void test_publish_cumulativeTemporality() throws IOException {
+    otlpMeterRegistry = create(Map.of());
+    Counter counter = otlpMeterRegistry.counter("my.counter");
+
+    counter.increment(3);
+    otlpMeterRegistry.publish();
+    counter.increment(2);
+    otlpMeterRegistry.publish();
+
+    Map<String, Message> second = metricsOf(exportRequests.get(1));
+    assertEquals(CUMULATIVE, second.get("my.counter").message(7).varint(2));
+    assertEquals(5.0, sumValue(second.get("my.counter")));
+
+    Message resource = Message.parse(exportRequests.get(1)).message(1).message(1);
+    Message attribute = resource.message(1);
+    assertEquals("service.name", attribute.string(1));
+    assertEquals("unit-test", attribute.message(2).string(1));
+  }
+
+  @Test
+  public void test_collectorUnavailable_requestsBufferedAndOldestDropped() throws IOException {
+    otlpMeterRegistry = create(Map.of("otlp.maxBufferedRequests", "2"));
+    Counter counter = otlpMeterRegistry.counter("my.counter");
+
+    collectorResponseCode = 503;
+    for (int i = 0; i < 3; i++) {
+      counter.increment();
+      assertThrows(IOException.class, () -> otlpMeterRegistry.publish());
+    }
+    assertEquals(2, otlpMeterRegistry.bufferedRequestCount());
+    assertEquals(1, otlpMeterRegistry.get("metrics.export.dropped").counter().count());
+
+    exportRequests.clear();
+    collectorResponseCode = 200;
+    counter.increment();
+    otlpMeterRegistry.publish();
+
+    // The new request displaces the oldest buffered one, the others are sent in order
+    assertEquals(0, otlpMeterRegistry.bufferedRequestCount());
+    assertEquals(2, otlpMeterRegistry.get("metrics.export.dropped").counter().count());
+    assertEquals(2, exportRequests.size());
+    assertEquals(3.0, sumValue(metricsOf(exportRequests.get(0)).get("my.counter")));
+    assertEquals(4.0, sumValue(metricsOf(exportRequests.get(1)).get("my.counter")));
+  }
+
+  @Test
+  public void test_publish_splitsMetricsInBatches() throws IOException {
+    otlpMeterRegistry = create(Map.of("otlp.batchSize", "1", "otlp.compressed", "false"));
+    otlpMeterRegistry.counter("first.counter").increment();
+    otlpMeterRegistry.counter("second.counter").increment();
+
+    otlpMeterRegistry.publish();
+
+    List<String> names = new ArrayList<>();
+    for (byte[] request : exportRequests) {
+      Map<String, Message> metrics = metricsOf(request);
+      assertEquals(1, metrics.size());
+      names.addAll(metrics.keySet());
+    }
+    assertEquals(otlpMeterRegistry.getMeters().size(), exportRequests.size());
+    assertTrue(names.contains("first.counter"));
+    assertTrue(names.contains("second.counter"));
+  }
+
+  @Test
+  public void test_publish_sendsConfiguredHeaders() throws IOException {
+    otlpMeterRegistry = create(Map.of("otlp.headers", "api-key=secret, tenant=t1"));
+    otlpMeterRegistry.counter("my.counter").increment();
+
+    otlpMeterRegistry.publish();
+
+    assertEquals(List.of("secret"), apiKeys);
+  }
+
+  private OtlpMeterRegistry create(Map<String, String> properties) {
+    String url = "http://localhost:" + collector.getAddress().getPort() + "/v1/metrics";
+    return new OtlpMeterRegistry(
+        new OtlpRegistryConfig() {
+          @Override
+          public String get(String key) {
+            return "otlp.url".equals(key) ? url : properties.get(key);
+          }
+
+          @Override
+          public Duration step() {
+            return Duration.ofMinutes(1);
+          }
+
+          @Override
+          public Map<String, String> resourceAttributes() {
+            return Map.of("service.name", "unit-test");
+          }
+        },
+        new MockClock(),
+        Executors.defaultThreadFactory());
+  }
+
+  private void handleExport(HttpExchange exchange) throws IOException {
+    String contentEncoding = exchange.getRequestHeaders().getFirst("Content-Encoding");
+    String apiKey = exchange.getRequestHeaders().getFirst("api-key");
+    if (apiKey != null) {
+      apiKeys.add(apiKey);
+    }
+    try (InputStream inputStream =
+        "gzip".equals(contentEncoding)
+            ? new GZIPInputStream(exchange.getRequestBody())
+            : exchange.getRequestBody()) {
+      exportRequests.add(inputStream.readAllBytes());
+    }
+    exchange.sendResponseHeaders(collectorResponseCode, -1);
+    exchange.close();
+  }
+
+  private static Map<String, Message> metricsOf(byte[] request) {
+    Message scopeMetrics = Message.parse(request).message(1).message(2);
+    Map<String, Message> metrics = new HashMap<>();
+    for (Object metric : scopeMetrics.fields.getOrDefault(2, List.of())) {
+      Message message = Message.parse((byte[]) metric);
+      metrics.put(message.string(1), message);
+    }
+    return metrics;
+  }
+
+  private static double sumValue(Message metric) {
+    return Double.longBitsToDouble(metric.message(7).message(1).fixed64(4));
+  }
+
+  private static Message histogramPoint(Message metric) {
+    return metric.message(9).message(1);
+  }
+
+  /** Fields of a decoded protobuf message, as longs or as the bytes of length delimited values. */
+  private static class Message {
+    private final Map<Integer, List<Object>> fields = new HashMap<>();
+
+    static Message parse(byte[] bytes) {
+      Message message = new Message();
+      ByteBuffer buffer = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+      while (buffer.hasRemaining()) {
+        long tag = readVarint(buffer);
+        Object value;
+        switch ((int) (tag & 0x7)) {
+          case 0:
+            value = readVarint(buffer);
+            break;
+          case 1:
+            value = buffer.getLong();
+            break;
+          case 2:
+            byte[] bytesValue = new byte[(int) readVarint(buffer)];
+            buffer.get(bytesValue);
+            value = bytesValue;
+            break;
+          default:
+            throw new IllegalArgumentException("Unexpected wire type in tag " + tag);
+        }
+        message.fields.computeIfAbsent((int) (tag >>> 3), field -> new ArrayList<>()).add(value);
+      }
+      return message;
+    }
+
+    Message message(int field) {
+      return parse((byte[]) fields.get(field).get(0));
+    }
+
+    String string(int field) {
+      return new String((byte[]) fields.get(field).get(0), StandardCharsets.UTF_8);
+    }
+
+    long varint(int field) {
+      return (long) fields.get(field).get(0);
+    }
+
+    long fixed64(int field) {
+      return (long) fields.get(field).get(0);
+    }
+
+    long[] bucketCounts() {
+      ByteBuffer buffer = packed(6);
+      long[] values = new long[buffer.remaining() / Long.BYTES];
+      for (int i = 0; i < values.length; i++) {
+        values[i] = buffer.getLong();
+      }
+      return values;
+    }
+
+    double[] explicitBounds() {
+      ByteBuffer buffer = packed(7);
+      double[] values = new double[buffer.remaining() / Double.BYTES];
+      for (int i = 0; i < values.length; i++) {
+        values[i] = buffer.getDouble();
+      }
+      return values;
+    }
+
+    private ByteBuffer packed(int field) {
+      return ByteBuffer.wrap((byte[]) fields.get(field).get(0)).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private static long readVarint(ByteBuffer buffer) {
+      long value = 0;
+      for (int shift = 0; ; shift += 7) {
+        byte b = buffer.get();
+        value |= (long) (b & 0x7F) << shift;
+        if ((b & 0x80) == 0) {
+          return value;
+        }
+      }
+    }
+  }
+}
@@ -1,6 +1,10 @@
 package org.hypertrace.core.serviceframework.metrics.registry;
 
 import static java.lang.Thread.sleep;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.fail;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
@@ -9,12 +13,24 @@ import static org.mockito.Mockito.spy;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.Counter;
 import io.prometheus.client.CollectorRegistry;
 import io.prometheus.client.exporter.PushGateway;
 import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
 import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.Executors;
+import java.util.zip.GZIPInputStream;
 import org.hypertrace.core.serviceframework.metrics.config.PrometheusPushRegistryConfig;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mockito;
 
@@ -22,6 +38,24 @@ public class PrometheusPushMeterRegistryTest {
   private static final String JOB_NAME = "unit-test";
   private static final long pushIntervalInMillis = 100L;
   private PrometheusPushMeterRegistry pushMeterRegistry;
+  private HttpServer gateway;
+  private final List<PushRequest> pushRequests = new CopyOnWriteArrayList<>();
+  private volatile int gatewayResponseCode = 200;
+
+  @BeforeEach
+  public void startGateway() throws IOException {
+    gateway = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+    gateway.createContext("/", this::handlePush);
+    gateway.start();
+  }
+
+  @AfterEach
+  public void stopGateway() {
+    if (pushMeterRegistry != null) {
+      pushMeterRegistry.stop();
+    }
+    gateway.stop(0);
+  }
 
   @Test
   public void test_init_metric_pushed() throws InterruptedException, IOException {
@@ -51,6 +85,103 @@ public class PrometheusPushMeterRegistryTest {
     verify(pushMeterRegistry, times(1)).stop();
   }
 
+  @Test
+  public void test_publish_gzippedBodyPostedToGateway() throws IOException {
+    pushMeterRegistry = createWithAddress(Duration.ofMinutes(1), Map.of("test.compressed", "true"));
+    pushMeterRegistry.counter("my.counter").increment();
+
+    pushMeterRegistry.publish();
+
+    assertEquals(1, pushRequests.size());
+    PushRequest request = pushRequests.get(0);
+    assertEquals("POST", request.method);
+    assertEquals("/metrics/job/" + JOB_NAME, request.path);
+    assertEquals("gzip", request.contentEncoding);
+    assertTrue(request.body.contains("my_counter_total 1.0"));
+    assertEquals(1, pushMeterRegistry.get("metrics.push.bytes").summary().count());
+  }
+
+  @Test
+  public void test_publish_skipUnchanged_pushesChangedFamiliesOnly() throws IOException {
+    pushMeterRegistry =
+        createWithAddress(Duration.ofMinutes(1), Map.of("test.skipUnchanged", "true"));
+    Counter updated = pushMeterRegistry.counter("updated.counter");
+    pushMeterRegistry.counter("idle.counter").increment();
+
+    pushMeterRegistry.publish();
+    updated.increment();
+    pushMeterRegistry.publish();
+
+    assertEquals(2, pushRequests.size());
+    assertTrue(pushRequests.get(0).body.contains("idle_counter_total 1.0"));
+    assertTrue(pushRequests.get(1).body.contains("updated_counter_total 1.0"));
+    assertFalse(pushRequests.get(1).body.contains("idle_counter_total"));
+    assertNull(pushRequests.get(1).contentEncoding);
+  }
+
+  @Test
+  public void test_failedPush_retriedWithBackoff() {
+    gatewayResponseCode = 500;
+    pushMeterRegistry =
+        createWithAddress(
+            Duration.ofMillis(pushIntervalInMillis),
+            Map.of("test.maxRetries", "2", "test.retryBackoff", "10ms"));
+
+    verifyWithRetry(
+        200,
+        200,
+        5,
+        () -> {
+          assertTrue(pushRequests.size() >= 3);
+          assertTrue(pushMeterRegistry.get("metrics.push.failures").counter().count() >= 3);
+        });
+  }
+
+  private PrometheusPushMeterRegistry createWithAddress(
+      Duration step, Map<String, String> properties) {
+    return new PrometheusPushMeterRegistry(
+        new PrometheusPushRegistryConfig() {
+          @Override
+          public String jobName() {
+            return JOB_NAME;
+          }
+
+          @Override
+          public String prefix() {
+            return "test";
+          }
+
+          @Override
+          public String get(String key) {
+            return properties.get(key);
+          }
+
+          @Override
+          public Duration step() {
+            return step;
+          }
+        },
+        Executors.defaultThreadFactory(),
+        "localhost:" + gateway.getAddress().getPort());
+  }
+
+  private void handlePush(HttpExchange exchange) throws IOException {
+    String contentEncoding = exchange.getRequestHeaders().getFirst("Content-Encoding");
+    try (InputStream inputStream =
+        "gzip".equals(contentEncoding)
+            ? new GZIPInputStream(exchange.getRequestBody())
+            : exchange.getRequestBody()) {
+      pushRequests.add(
+          new PushRequest(
+              exchange.getRequestMethod(),
+              exchange.getRequestURI().getPath(),
+              contentEncoding,
+              new String(inputStream.readAllBytes(), StandardCharsets.UTF_8)));
+    }
+    exchange.sendResponseHeaders(gatewayResponseCode, -1);
+    exchange.close();
+  }
+
   private PrometheusPushMeterRegistry createDefault(PushGateway mockPushGateway) {
     return new PrometheusPushMeterRegistry(
         new PrometheusPushRegistryConfig() {
@@ -106,4 +237,18 @@ public class PrometheusPushMeterRegistryTest {
       runCount++;
     }
   }
+
+  private static class PushRequest {
+    private final String method;
+    private final String path;
+    private final String contentEncoding;
+    private final String body;
+
+    PushRequest(String method, String path, String contentEncoding, String body) {
+      this.method = method;
+      this.path = path;
+      this.contentEncoding = contentEncoding;
+      this.body = body;
+    }
+  }
 }
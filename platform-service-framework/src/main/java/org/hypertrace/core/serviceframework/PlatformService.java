@@ -4,10 +4,12 @@ import com.typesafe.config.Config;
 import com.typesafe.config.ConfigFactory;
 import io.dropwizard.metrics.servlets.CpuProfileServlet;
 import io.dropwizard.metrics.servlets.ThreadDumpServlet;
-import io.prometheus.client.servlet.jakarta.exporter.MetricsServlet;
+import io.prometheus.client.CollectorRegistry;
 import java.net.InetAddress;
 import java.net.ServerSocket;
 import java.net.UnknownHostException;
+import java.time.Duration;
+import java.util.Optional;
 import org.eclipse.jetty.ee10.servlet.ServletContextHandler;
 import org.eclipse.jetty.ee10.servlet.ServletHolder;
 import org.eclipse.jetty.server.Server;
@@ -16,6 +18,7 @@ import org.hypertrace.core.serviceframework.config.ConfigClientFactory;
 import org.hypertrace.core.serviceframework.metrics.PlatformMetricsRegistry;
 import org.hypertrace.core.serviceframework.service.servlets.HealthCheckServlet;
 import org.hypertrace.core.serviceframework.service.servlets.JVMDiagnosticServlet;
+import org.hypertrace.core.serviceframework.service.servlets.PrometheusMetricsServlet;
 import org.hypertrace.core.serviceframework.spi.PlatformServiceLifecycle;
 import org.hypertrace.core.serviceframework.spi.PlatformServiceLifecycle.State;
 import org.slf4j.Logger;
@@ -25,6 +28,9 @@ public abstract class PlatformService {
   private static final Logger LOGGER = LoggerFactory.getLogger(PlatformService.class);
 
   private static final String METRICS_CONFIG_KEY = "metrics";
+  // Scrapes within this window of each other share a single rendering of the registry
+  private static final String METRICS_SCRAPE_CACHE_WINDOW_CONFIG_KEY =
+      "metrics.scrape.cache.window";
 
   static {
     try {
@@ -69,6 +75,15 @@ public abstract class PlatformService {
   // Contains the logic to do health check of the service.
   public abstract boolean healthCheck();
 
+  /**
+   * Health of one of the components of the service, like one of its gRPC services, served on
+   * "/health/{component}" by the admin server. Empty when the service has no such component. Called
+   * on every probe, so it should answer from state already at hand rather than by running checks.
+   */
+  public Optional<Boolean> healthCheck(String component) {
+    return Optional.empty();
+  }
+
   public String getServiceName() {
     return this.serviceName;
   }
@@ -123,11 +138,15 @@ public abstract class PlatformService {
     ServletContextHandler context = new ServletContextHandler();
     context.setContextPath("/");
     adminServer.setHandler(context);
-    adminServer.setStopAtShutdown(true);
+    // Stopped by shutdown() once the service is drained, rather than by a shutdown hook of its own
     adminServer.setStopTimeout(2000);
 
-    context.addServlet(new ServletHolder(new MetricsServlet()), "/metrics");
-    context.addServlet(new ServletHolder(new HealthCheckServlet(this)), "/health");
+    context.addServlet(
+        new ServletHolder(
+            new PrometheusMetricsServlet(
+                CollectorRegistry.defaultRegistry, getMetricsScrapeCacheWindow())),
+        "/metrics");
+    context.addServlet(new ServletHolder(new HealthCheckServlet(this)), "/health/*");
     context.addServlet(new ServletHolder(new ThreadDumpServlet()), "/threads");
     context.addServlet(new ServletHolder(new CpuProfileServlet()), "/pprof");
     context.addServlet(new ServletHolder(new JVMDiagnosticServlet()), "/diags/*");
@@ -156,6 +175,12 @@ public abstract class PlatformService {
     }
   }
 
+  private Duration getMetricsScrapeCacheWindow() {
+    return appConfig.hasPath(METRICS_SCRAPE_CACHE_WINDOW_CONFIG_KEY)
+        ? appConfig.getDuration(METRICS_SCRAPE_CACHE_WINDOW_CONFIG_KEY)
+        : Duration.ZERO;
+  }
+
   /**
    * @return service admin port.
    */
@@ -175,14 +200,17 @@ public abstract class PlatformService {
   }
 
   public void shutdown() {
-    try {
-      adminServer.stop();
-    } catch (Exception ex) {
-      LOGGER.error("Error stopping admin server");
-    }
     LOGGER.info("Trying to shutdown service - {}...", getServiceName());
     serviceLifecycle.setState(State.STOPPING);
+    // The admin server stays up while the service drains, so that probes see it not serving
     doStop();
+    if (adminServer != null) {
+      try {
+        adminServer.stop();
+      } catch (Exception ex) {
+        LOGGER.error("Error stopping admin server");
+      }
+    }
     serviceLifecycle.setState(State.STOPPED);
     LOGGER.info("Stopping metrics registry");
     PlatformMetricsRegistry.stop();
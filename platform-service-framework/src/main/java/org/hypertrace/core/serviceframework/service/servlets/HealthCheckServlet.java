@@ -4,8 +4,13 @@ import jakarta.servlet.http.HttpServlet;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import java.io.IOException;
+import java.util.Optional;
 import org.hypertrace.core.serviceframework.PlatformService;
 
+/**
+ * Serves the health of the service on "/health", and the health of one of its components on
+ * "/health/{component}", with a 404 for unknown components.
+ */
 public class HealthCheckServlet extends HttpServlet {
 
   private static final String PLAIN_TEXT_UTF_8 = "text/plain; charset=utf-8";
@@ -18,11 +23,21 @@ public class HealthCheckServlet extends HttpServlet {
 
   @Override
   protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
-    final boolean b = platformService.healthCheck();
+    String component = req.getPathInfo();
+    final Optional<Boolean> healthy =
+        component == null || component.equals("/")
+            ? Optional.of(platformService.healthCheck())
+            : platformService.healthCheck(component.substring(1));
+    resp.setContentType(PLAIN_TEXT_UTF_8);
+    if (healthy.isEmpty()) {
+      resp.setStatus(404);
+      resp.getOutputStream().print("UNKNOWN");
+      return;
+    }
+    final boolean b = healthy.get();
     int status = b ? 200 : 500;
     String respStr = b ? "OK" : " BAD";
     resp.setStatus(status);
-    resp.setContentType(PLAIN_TEXT_UTF_8);
     resp.getOutputStream().print(respStr);
   }
 }
@@ -0,0 +1,241 @@
+package org.hypertrace.core.serviceframework.service.servlets;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Timer;
+import io.prometheus.client.CollectorRegistry;
+import io.prometheus.client.exporter.common.TextFormat;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.zip.GZIPOutputStream;
+import org.hypertrace.core.serviceframework.metrics.PlatformMetricsRegistry;
+
+/**
+ * Prometheus exposition servlet for the admin /metrics endpoint. Unlike the simpleclient {@code
+ * MetricsServlet}, a snapshot of the registry is rendered at most once per cache window and the
+ * rendered bytes are shared by all the scrapes in that window. Scrapes arriving while a snapshot is
+ * being rendered share it instead of rendering their own, even with an empty cache window.
+ *
+ * <p>The response format is negotiated from the Accept header (Prometheus text or OpenMetrics) and
+ * is gzipped when the scraper accepts it, each snapshot being compressed at most once. Snapshots
+ * are rendered to bytes, to be shared, without building the body as a string. Requests filtering
+ * by {@code name[]} bypass the snapshots and are streamed directly to the response.
+ */
+public class PrometheusMetricsServlet extends HttpServlet {
+  private static final long serialVersionUID = 2375913520447264829L;
+  private static final String SCRAPE_DURATION_TIMER = "metrics.scrape.duration";
+  private static final String SCRAPE_BYTES_SUMMARY = "metrics.scrape.bytes";
+  private static final String NAME_FILTER_PARAM = "name[]";
+  private static final String GZIP_ENCODING = "gzip";
+
+  private final transient CollectorRegistry registry;
+  private final long cacheWindowNanos;
+  private final transient ConcurrentMap<String, Snapshot> snapshots = new ConcurrentHashMap<>();
+  // Snapshots being rendered, by content type
+  private final transient ConcurrentMap<String, CompletableFuture<Snapshot>> renders =
+      new ConcurrentHashMap<>();
+  private transient Timer scrapeTimer;
+  private transient DistributionSummary scrapeBytes;
+
+  public PrometheusMetricsServlet() {
+    this(CollectorRegistry.defaultRegistry, Duration.ZERO);
+  }
+
+  public PrometheusMetricsServlet(CollectorRegistry registry, Duration cacheWindow) {
+    this.registry = registry;
+    this.cacheWindowNanos = cacheWindow.toNanos();
+  }
+
+  @Override
+  public void init() {
+    this.scrapeTimer = PlatformMetricsRegistry.registerTimer(SCRAPE_DURATION_TIMER, Map.of());
+    this.scrapeBytes =
+        PlatformMetricsRegistry.registerDistributionSummary(SCRAPE_BYTES_SUMMARY, Map.of());
+  }
+
+  @Override
+  protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+    long startNanos = System.nanoTime();
+    String contentType = TextFormat.chooseContentType(req.getHeader("Accept"));
+    boolean gzip = acceptsGzip(req);
+
+    resp.setStatus(HttpServletResponse.SC_OK);
+    resp.setContentType(contentType);
+    resp.setHeader("Vary", "Accept, Accept-Encoding");
+    if (gzip) {
+      resp.setHeader("Content-Encoding", GZIP_ENCODING);
+    }
+
+    String[] includedNames = req.getParameterValues(NAME_FILTER_PARAM);
+    if (includedNames != null) {
+      CountingOutputStream outputStream = new CountingOutputStream(resp.getOutputStream());
+      OutputStream body = gzip ? new GZIPOutputStream(outputStream) : outputStream;
+      render(contentType, new HashSet<>(Arrays.asList(includedNames)), body);
+      record(startNanos, outputStream.getCount());
+      return;
+    }
+
+    Snapshot snapshot = snapshotFor(contentType, startNanos);
+    byte[] body = gzip ? snapshot.gzipped() : snapshot.plain;
+    resp.setContentLength(body.length);
+    resp.getOutputStream().write(body);
+    record(startNanos, body.length);
+  }
+
+  @Override
+  protected void doPost(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+    doGet(req, resp);
+  }
+
+  private Snapshot snapshotFor(String contentType, long requestNanos) throws IOException {
+    Snapshot snapshot = snapshots.get(contentType);
+    if (isFresh(snapshot, requestNanos)) {
+      return snapshot;
+    }
+    CompletableFuture<Snapshot> render = new CompletableFuture<>();
+    CompletableFuture<Snapshot> inProgress = renders.putIfAbsent(contentType, render);
+    if (inProgress != null) {
+      return await(inProgress);
+    }
+    try {
+      snapshot = snapshots.get(contentType);
+      long renderNanos = System.nanoTime();
+      // Another render may have completed meanwhile
+      if (isFresh(snapshot, renderNanos)) {
+        render.complete(snapshot);
+        return snapshot;
+      }
+      ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+      render(contentType, null, outputStream);
+      snapshot = new Snapshot(renderNanos, outputStream.toByteArray());
+      snapshots.put(contentType, snapshot);
+      render.complete(snapshot);
+      return snapshot;
+    } catch (IOException | RuntimeException | Error e) {
+      render.completeExceptionally(e);
+      throw e;
+    } finally {
+      renders.remove(contentType, render);
+    }
+  }
+
+  private static Snapshot await(CompletableFuture<Snapshot> render) throws IOException {
+    try {
+      return render.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted waiting for the metrics snapshot");
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof IOException) {
+        throw (IOException) e.getCause();
+      }
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw new IOException("Failed to render the metrics snapshot", e.getCause());
+    }
+  }
+
+  private boolean isFresh(Snapshot snapshot, long nowNanos) {
+    return snapshot != null && nowNanos - snapshot.renderNanos < cacheWindowNanos;
+  }
+
+  private void render(String contentType, Set<String> includedNames, OutputStream outputStream)
+      throws IOException {
+    try (Writer writer = new OutputStreamWriter(outputStream, StandardCharsets.UTF_8)) {
+      TextFormat.writeFormat(
+          contentType,
+          writer,
+          includedNames == null
+              ? registry.metricFamilySamples()
+              : registry.filteredMetricFamilySamples(includedNames));
+    }
+  }
+
+  private void record(long startNanos, long bytes) {
+    if (scrapeTimer != null) {
+      scrapeTimer.record(Duration.ofNanos(System.nanoTime() - startNanos));
+      scrapeBytes.record(bytes);
+    }
+  }
+
+  private static boolean acceptsGzip(HttpServletRequest req) {
+    String acceptEncoding = req.getHeader("Accept-Encoding");
+    return acceptEncoding != null
+        && acceptEncoding.toLowerCase(Locale.ROOT).contains(GZIP_ENCODING);
+  }
+
+  private static class Snapshot {
+    private final long renderNanos;
+    private final byte[] plain;
+    private byte[] gzipped;
+
+    Snapshot(long renderNanos, byte[] plain) {
+      this.renderNanos = renderNanos;
+      this.plain = plain;
+    }
+
+    synchronized byte[] gzipped() throws IOException {
+      if (gzipped == null) {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream(plain.length / 4);
+        try (GZIPOutputStream gzipOutputStream = new GZIPOutputStream(outputStream)) {
+          gzipOutputStream.write(plain);
+        }
+        gzipped = outputStream.toByteArray();
+      }
+      return gzipped;
+    }
+  }
+
+  private static class CountingOutputStream extends OutputStream {
+    private final OutputStream delegate;
+    private long count;
+
+    CountingOutputStream(OutputStream delegate) {
+      this.delegate = delegate;
+    }
+
+    long getCount() {
+      return count;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+      delegate.write(b);
+      count++;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+      delegate.write(b, off, len);
+      count += len;
+    }
+
+    @Override
+    public void flush() throws IOException {
+      delegate.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+      delegate.close();
+    }
+  }
+}
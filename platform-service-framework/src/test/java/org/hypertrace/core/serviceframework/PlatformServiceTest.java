@@ -10,6 +10,9 @@ import java.io.IOException;
 import java.net.URL;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 import org.apache.http.HttpResponse;
 import org.apache.http.client.HttpClient;
 import org.apache.http.client.methods.HttpGet;
@@ -48,25 +51,59 @@ public class PlatformServiceTest {
       return true;
     }
 
+    @Override
+    public Optional<Boolean> healthCheck(String component) {
+      return "test-component".equals(component) ? Optional.of(false) : Optional.empty();
+    }
+
     @Override
     public String getServiceName() {
       return getAppConfig().getString("service.name");
     }
   }
 
+  /** A test service which is unhealthy while stopping, and holds its stop until released. */
+  static class DrainingService extends TestService {
+    private final CountDownLatch stopStarted = new CountDownLatch(1);
+    private final CountDownLatch releaseStop = new CountDownLatch(1);
+
+    public DrainingService(ConfigClient client) {
+      super(client);
+    }
+
+    @Override
+    protected void doStop() {
+      this.stopStarted.countDown();
+      try {
+        this.releaseStop.await(10, TimeUnit.SECONDS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      super.doStop();
+    }
+
+    @Override
+    public boolean healthCheck() {
+      return getServiceState() == State.STARTED;
+    }
+  }
+
   private PlatformService getService(Map<String, Object> configs) {
-    return new TestService(
-        new ConfigClient() {
-          @Override
-          public Config getConfig() {
-            return ConfigFactory.parseMap(configs);
-          }
-
-          @Override
-          public Config getConfig(String service, String cluster, String pod, String container) {
-            return null;
-          }
-        });
+    return new TestService(configClient(configs));
+  }
+
+  private static ConfigClient configClient(Map<String, Object> configs) {
+    return new ConfigClient() {
+      @Override
+      public Config getConfig() {
+        return ConfigFactory.parseMap(configs);
+      }
+
+      @Override
+      public Config getConfig(String service, String cluster, String pod, String container) {
+        return null;
+      }
+    };
   }
 
   private void startService(final PlatformService service) {
@@ -164,6 +201,53 @@ public class PlatformServiceTest {
     service.shutdown();
   }
 
+  @Test
+  public void testHealthPaths() throws IOException {
+    PlatformService service =
+        getService(Map.of("service.name", "test-service3", "service.admin.port", "59003"));
+    startService(service);
+
+    HttpClient httpclient = HttpClients.createDefault();
+    try {
+      HttpResponse response = httpclient.execute(new HttpGet("http://localhost:59003/health"));
+      assertEquals(200, response.getStatusLine().getStatusCode());
+      assertEquals("OK", EntityUtils.toString(response.getEntity()));
+
+      response = httpclient.execute(new HttpGet("http://localhost:59003/health/test-component"));
+      assertEquals(500, response.getStatusLine().getStatusCode());
+      EntityUtils.consume(response.getEntity());
+
+      response = httpclient.execute(new HttpGet("http://localhost:59003/health/unknown"));
+      assertEquals(404, response.getStatusLine().getStatusCode());
+      EntityUtils.consume(response.getEntity());
+    } finally {
+      service.shutdown();
+    }
+  }
+
+  @Test
+  public void testHealthIsServedWhileStopping() throws Exception {
+    DrainingService service =
+        new DrainingService(
+            configClient(Map.of("service.name", "test-service4", "service.admin.port", "59004")));
+    startService(service);
+
+    Thread shutdownThread = new Thread(service::shutdown);
+    shutdownThread.start();
+    assertTrue(service.stopStarted.await(10, TimeUnit.SECONDS));
+    HttpClient httpclient = HttpClients.createDefault();
+    try {
+      // The admin server is still up while the service drains, reporting it not serving
+      HttpResponse response = httpclient.execute(new HttpGet("http://localhost:59004/health"));
+      assertEquals(500, response.getStatusLine().getStatusCode());
+      EntityUtils.consume(response.getEntity());
+    } finally {
+      service.releaseStop.countDown();
+      shutdownThread.join(10_000);
+    }
+    assertEquals(State.STOPPED, service.getServiceState());
+  }
+
   @Test
   public void testSampleAppInitialization() {
     System.setProperty("service.name", "sample-app");
@@ -0,0 +1,177 @@
+package org.hypertrace.core.serviceframework.service.servlets;
+
+import io.prometheus.client.Collector;
+import io.prometheus.client.CollectorRegistry;
+import io.prometheus.client.Counter;
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+import org.eclipse.jetty.ee10.servlet.ServletHolder;
+import org.eclipse.jetty.ee10.servlet.ServletTester;
+import org.eclipse.jetty.http.HttpStatus;
+import org.eclipse.jetty.http.HttpTester;
+import org.eclipse.jetty.http.HttpTester.Request;
+import org.eclipse.jetty.http.HttpTester.Response;
+import org.eclipse.jetty.http.HttpVersion;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+public class PrometheusMetricsServletTest {
+
+  private static final BlockingCollector blockingCollector = new BlockingCollector();
+  private static ServletTester server;
+  private static Counter counter;
+
+  @BeforeAll
+  public static void setup() throws Exception {
+    CollectorRegistry registry = new CollectorRegistry();
+    counter = Counter.build().name("test_requests").help("Test requests").register(registry);
+
+    server = new ServletTester();
+    server.setContextPath("/");
+    server
+        .getContext()
+        .addServlet(
+            new ServletHolder(new PrometheusMetricsServlet(registry, Duration.ZERO)), "/metrics");
+    server
+        .getContext()
+        .addServlet(
+            new ServletHolder(new PrometheusMetricsServlet(registry, Duration.ofMinutes(1))),
+            "/cached");
+    CollectorRegistry blockingRegistry = new CollectorRegistry();
+    blockingCollector.register(blockingRegistry);
+    server
+        .getContext()
+        .addServlet(
+            new ServletHolder(new PrometheusMetricsServlet(blockingRegistry, Duration.ZERO)),
+            "/blocking");
+    server.start();
+  }
+
+  @AfterAll
+  public static void teardown() throws Exception {
+    server.stop();
+  }
+
+  @Test
+  public void testPlainTextScrape() throws Exception {
+    final Response response = processRequest("/metrics", null, null);
+
+    Assertions.assertEquals(HttpStatus.OK_200, response.getStatus());
+    Assertions.assertTrue(response.get("Content-Type").startsWith("text/plain"));
+    Assertions.assertNull(response.get("Content-Encoding"));
+    Assertions.assertTrue(
+        response.getContent().contains("test_requests_total"),
+        "Response doesn't contain the test counter. Response received: " + response.getContent());
+  }
+
+  @Test
+  public void testGzipScrape() throws Exception {
+    final Response response = processRequest("/metrics", null, "gzip, deflate");
+
+    Assertions.assertEquals(HttpStatus.OK_200, response.getStatus());
+    Assertions.assertEquals("gzip", response.get("Content-Encoding"));
+    try (GZIPInputStream inputStream =
+        new GZIPInputStream(new ByteArrayInputStream(response.getContentBytes()))) {
+      String body = new String(inputStream.readAllBytes(), StandardCharsets.UTF_8);
+      Assertions.assertTrue(body.contains("test_requests_total"));
+    }
+  }
+
+  @Test
+  public void testOpenMetricsScrape() throws Exception {
+    final Response response =
+        processRequest("/metrics", "application/openmetrics-text; version=1.0.0", null);
+
+    Assertions.assertEquals(HttpStatus.OK_200, response.getStatus());
+    Assertions.assertTrue(response.get("Content-Type").startsWith("application/openmetrics-text"));
+    Assertions.assertTrue(response.getContent().trim().endsWith("# EOF"));
+  }
+
+  @Test
+  public void testNameFilteredScrape() throws Exception {
+    final Response response = processRequest("/metrics?name%5B%5D=unknown_metric", null, null);
+
+    Assertions.assertEquals(HttpStatus.OK_200, response.getStatus());
+    Assertions.assertFalse(response.getContent().contains("test_requests_total"));
+  }
+
+  @Test
+  public void testScrapesWithinCacheWindowShareSnapshot() throws Exception {
+    final String first = processRequest("/cached", null, null).getContent();
+    counter.inc();
+    Assertions.assertEquals(first, processRequest("/cached", null, null).getContent());
+
+    // Without a cache window, every scrape sees the latest values
+    final String uncached = processRequest("/metrics", null, null).getContent();
+    counter.inc();
+    Assertions.assertNotEquals(uncached, processRequest("/metrics", null, null).getContent());
+  }
+
+  @Test
+  public void testConcurrentScrapesShareTheRenderInProgress() throws Exception {
+    CompletableFuture<Response> first =
+        CompletableFuture.supplyAsync(() -> processUncheckedRequest("/blocking"));
+    Assertions.assertTrue(blockingCollector.collecting.await(10, TimeUnit.SECONDS));
+    CompletableFuture<Response> second =
+        CompletableFuture.supplyAsync(() -> processUncheckedRequest("/blocking"));
+    // Lets the second scrape arrive while the first one is rendering
+    Thread.sleep(200);
+    blockingCollector.release.countDown();
+
+    Assertions.assertEquals(
+        first.get(10, TimeUnit.SECONDS).getContent(),
+        second.get(10, TimeUnit.SECONDS).getContent());
+    Assertions.assertEquals(1, blockingCollector.collections.get());
+  }
+
+  private Response processUncheckedRequest(String uri) {
+    try {
+      return processRequest(uri, null, null);
+    } catch (Exception e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private Response processRequest(String uri, String accept, String acceptEncoding)
+      throws Exception {
+    final Request req = HttpTester.newRequest();
+    req.setHeader("Host", "tester");
+    if (accept != null) {
+      req.setHeader("Accept", accept);
+    }
+    if (acceptEncoding != null) {
+      req.setHeader("Accept-Encoding", acceptEncoding);
+    }
+    req.startRequest("GET", uri, HttpVersion.HTTP_1_1);
+
+    return HttpTester.parseResponse(server.getResponses(req.generate()));
+  }
+
+  /** Collector whose collections block until released. */
+  private static class BlockingCollector extends Collector {
+    private final CountDownLatch collecting = new CountDownLatch(1);
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final AtomicInteger collections = new AtomicInteger();
+
+    @Override
+    public List<MetricFamilySamples> collect() {
+      this.collections.incrementAndGet();
+      this.collecting.countDown();
+      try {
+        this.release.await(10, TimeUnit.SECONDS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      return List.of();
+    }
+  }
+}
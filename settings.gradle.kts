@@ -26,6 +26,7 @@ include(":platform-http-service-framework")
 include(":platform-hybrid-service-framework")
 include(":platform-service-framework")
 include(":platform-metrics")
+include(":platform-metrics-benchmarks")
 include(":docstore-metrics")
 include(":integrationtest-service-framework")
 include(":service-framework-spi")